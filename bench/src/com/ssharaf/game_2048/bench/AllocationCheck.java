@@ -0,0 +1,116 @@
+package com.ssharaf.game_2048.bench;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import com.ssharaf.game_2048.Game2048;
+import com.sun.management.ThreadMXBean;
+
+/**
+ * Checks that a swipe allocates nothing: seeded games play random moves,
+ * each followed by its new number and the isLost() check, and the bytes the
+ * thread allocated meanwhile (ThreadMXBean.getThreadAllocatedBytes()) must
+ * stay 0. Lost games start over with begin_game(), which is counted too.
+ *
+ * 4x4 games are checked both on move tables and on the line by line path
+ * (target number above 32768), and 5x5 games on the line by line path.
+ * Moves are warmed up first, so the JIT compiles them before counting.
+ *
+ * Exits with status 1 when a move allocates.
+ *
+ * Usage: AllocationCheck [moves]
+ *
+ * @author SAMEH SHARAF
+ *
+ */
+
+public final class AllocationCheck
+{
+	// Grid dimensions and target numbers checked, pairwise.
+	private final static int[] TILES = { 4, 4, 5 };
+	private final static int[] WINNING_NUMBERS = { 2048, 1 << 20, 2048 };
+	
+	// Moves played before counting.
+	private final static int WARMUP_MOVES = 200000;
+	
+	private AllocationCheck()
+	{
+	}
+	
+	/**
+	 * Play random moves as the game worker does: move, loss check and new number.
+	 * @param game2048 Game, begun again whenever it is lost.
+	 * @param random Move directions.
+	 * @param moves Number of moves.
+	 * @return Number of lost games, so the loop isn't optimized away.
+	 */
+	static int play(Game2048 game2048, Random random, int moves)
+	{
+		int lost = 0;
+		
+		for (int k = 0; k < moves; k++)
+		{
+			boolean isChanged = game2048.move(Game2048.MOVE_UP + random.nextInt(4));
+			
+			if (game2048.isLost())
+			{
+				game2048.begin_game();
+				lost++;
+			}
+			else if (isChanged)
+			{
+				game2048.insert_new_number();
+			}
+		}
+		
+		return lost;
+	}
+	
+	/**
+	 * Count bytes allocated by moves on one grid.
+	 * @param bean Thread allocation counter.
+	 * @param tiles Grid dimension.
+	 * @param winning_number Target number.
+	 * @param moves Moves counted.
+	 * @return Bytes allocated while playing them, less the counter's own allocation.
+	 */
+	static long allocated(ThreadMXBean bean, int tiles, int winning_number, int moves)
+	{
+		long thread = Thread.currentThread().getId();
+		Game2048 game2048 = new Game2048(tiles, winning_number, 1);
+		Random random = new Random(1);
+		
+		play(game2048, random, WARMUP_MOVES);
+		
+		// Reading the counter may allocate by itself, measure that first.
+		long start = bean.getThreadAllocatedBytes(thread);
+		long overhead = bean.getThreadAllocatedBytes(thread) - start;
+		
+		start = bean.getThreadAllocatedBytes(thread);
+		int lost = play(game2048, random, moves);
+		long bytes = bean.getThreadAllocatedBytes(thread) - start - overhead;
+		
+		System.out.println(tiles + "x" + tiles + " to " + winning_number + ": " + bytes + " bytes in " + moves + " moves ("
+				+ lost + " games lost)");
+		
+		return bytes;
+	}
+	
+	public static void main(String[] args)
+	{
+		int moves = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+		ThreadMXBean bean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long failures = 0;
+		
+		if (!bean.isThreadAllocatedMemorySupported())
+			throw new UnsupportedOperationException("JVM doesn't count allocated bytes per thread");
+		
+		bean.setThreadAllocatedMemoryEnabled(true);
+		
+		for (int t = 0; t < TILES.length; t++)
+			failures += allocated(bean, TILES[t], WINNING_NUMBERS[t], moves);
+		
+		if (failures != 0)
+			System.exit(1);
+	}
+}
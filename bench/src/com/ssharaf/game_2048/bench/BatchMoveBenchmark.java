@@ -0,0 +1,194 @@
+package com.ssharaf.game_2048.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ssharaf.game_2048.BitBoard;
+import com.ssharaf.game_2048.Game2048;
+import com.ssharaf.game_2048.MoveTables;
+import com.ssharaf.game_2048.sim.BatchMoveKernel;
+import com.ssharaf.game_2048.sim.BoardBatch;
+
+/**
+ * Moving a batch of 4x4 boards: Game2048.move() called in a loop, against
+ * the scalar and vector BatchMoveKernel and the MoveTables lookups on packed
+ * boards. Results are per board.
+ *
+ * Every benchmark first restores the batch; the restore benchmarks measure
+ * that cost alone so it can be subtracted.
+ *
+ * @author SAMEH SHARAF
+ *
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class BatchMoveBenchmark
+{
+	// Boards in batch.
+	private final static int BOARDS = 4096;
+	
+	// Highest exponent used for random tiles (1024).
+	private final static int MAX_EXPONENT = 10;
+	
+	// Prepared boards, never modified.
+	private long[] boards;
+	private BoardBatch prepared;
+	
+	// Boards modified by benchmarks.
+	private long[] packed;
+	private BoardBatch batch;
+	private Game2048 game;
+	
+	// Kernels.
+	private BatchMoveKernel scalar;
+	private BatchMoveKernel vector;
+	
+	// Next direction to move.
+	private int direction;
+	
+	@Setup
+	public void setup()
+	{
+		Random random = new Random(2048);
+		
+		boards = new long[BOARDS];
+		prepared = new BoardBatch(BOARDS);
+		
+		// Two tiles out of three filled.
+		for (int b = 0; b < BOARDS; b++)
+		{
+			for (int c = 0; c < BoardBatch.CELLS; c++)
+				if (random.nextInt(3) > 0)
+					boards[b] |= (long) (1 + random.nextInt(MAX_EXPONENT)) << (c * 4);
+			
+			prepared.set(b, boards[b], 0);
+		}
+		
+		packed = new long[BOARDS];
+		batch = new BoardBatch(BOARDS);
+		game = new Game2048(BitBoard.TILES, 2048, 0);
+		scalar = BatchMoveKernel.scalar();
+		vector = BatchMoveKernel.create();
+	}
+	
+	/**
+	 * Get next move direction, cycling through all four.
+	 */
+	private int next_direction()
+	{
+		direction = (direction & 3) + 1;
+		return direction;
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(BOARDS)
+	public BoardBatch restore_batch()
+	{
+		batch.copy_from(prepared);
+		return batch;
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(BOARDS)
+	public int scalar_kernel()
+	{
+		batch.copy_from(prepared);
+		return scalar.move(batch, next_direction());
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(BOARDS)
+	public int vector_kernel()
+	{
+		batch.copy_from(prepared);
+		return vector.move(batch, next_direction());
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(BOARDS)
+	public int restore_game()
+	{
+		int count = 0;
+		
+		for (int b = 0; b < BOARDS; b++)
+		{
+			BitBoard.unpack(boards[b], game);
+			count += game.getEmptyCount();
+		}
+		
+		return count;
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(BOARDS)
+	public int game_move()
+	{
+		int direction = next_direction();
+		int count = 0;
+		
+		for (int b = 0; b < BOARDS; b++)
+		{
+			BitBoard.unpack(boards[b], game);
+			
+			if (game.move(direction))
+				count++;
+		}
+		
+		return count;
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(BOARDS)
+	public int move_tables()
+	{
+		int direction = next_direction();
+		int count = 0;
+		
+		System.arraycopy(boards, 0, packed, 0, BOARDS);
+		
+		for (int b = 0; b < BOARDS; b++)
+		{
+			long moved;
+			
+			switch (direction)
+			{
+				case Game2048.MOVE_UP :
+					moved = MoveTables.move_up(packed[b]);
+					break;
+				case Game2048.MOVE_DOWN :
+					moved = MoveTables.move_down(packed[b]);
+					break;
+				case Game2048.MOVE_LEFT :
+					moved = MoveTables.move_left(packed[b]);
+					break;
+				default :
+					moved = MoveTables.move_right(packed[b]);
+					break;
+			}
+			
+			if (moved != packed[b])
+				count++;
+			
+			packed[b] = moved;
+		}
+		
+		return count;
+	}
+}
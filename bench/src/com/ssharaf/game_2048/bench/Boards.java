@@ -0,0 +1,101 @@
+package com.ssharaf.game_2048.bench;
+
+import java.util.Random;
+
+import com.ssharaf.game_2048.Game2048;
+import com.ssharaf.game_2048.LargeGame2048;
+
+/**
+ * Random game positions shared by benchmarks.
+ *
+ * @author SAMEH SHARAF
+ *
+ */
+
+public final class Boards
+{
+	// Highest exponent used for random tiles (1024).
+	private final static int MAX_EXPONENT = 10;
+	
+	private Boards()
+	{
+	}
+	
+	/**
+	 * Create games whose grids are filled to a given ratio with random tiles.
+	 * @param tiles Grid dimension.
+	 * @param fill Ratio of non-empty tiles, between 0 and 1.
+	 * @param count Number of games to create.
+	 * @param seed Random seed, so every run benchmarks the same positions.
+	 * @return Prepared games.
+	 */
+	public static Game2048[] random_games(int tiles, double fill, int count, long seed)
+	{
+		Random random = new Random(seed);
+		Game2048[] games = new Game2048[count];
+		int filled = (int) Math.round(fill * tiles * tiles);
+		
+		for (int n = 0; n < count; n++)
+		{
+			Game2048 game = new Game2048(tiles, 2048, random.nextLong());
+			game.clear_grid();
+			
+			// Fill first tiles of a shuffled cell order.
+			int[] cells = shuffled_cells(tiles * tiles, random);
+			
+			for (int k = 0; k < filled; k++)
+				game.set_tile(cells[k] / tiles, cells[k] % tiles, 1 << (1 + random.nextInt(MAX_EXPONENT)));
+			
+			games[n] = game;
+		}
+		
+		return games;
+	}
+	
+	/**
+	 * Copy games into big game engines holding the same tiles.
+	 * @param games Games to be copied.
+	 * @return Big games, in the same order.
+	 */
+	public static LargeGame2048[] large_games(Game2048[] games)
+	{
+		LargeGame2048[] large_games = new LargeGame2048[games.length];
+		
+		for (int n = 0; n < games.length; n++)
+		{
+			int tiles = games[n].getTiles();
+			LargeGame2048 large_game = new LargeGame2048(tiles, 11, 0);
+			large_game.clear_grid();
+			
+			for (int i = 0; i < tiles; i++)
+				for (int j = 0; j < tiles; j++)
+					if (games[n].get_tile(i, j) != 0)
+						large_game.set_exponent(i, j, Integer.numberOfTrailingZeros(games[n].get_tile(i, j)));
+			
+			large_games[n] = large_game;
+		}
+		
+		return large_games;
+	}
+	
+	/**
+	 * Shuffle cell indexes 0 .. count - 1.
+	 */
+	private static int[] shuffled_cells(int count, Random random)
+	{
+		int[] cells = new int[count];
+		
+		for (int k = 0; k < count; k++)
+			cells[k] = k;
+		
+		for (int k = count - 1; k > 0; k--)
+		{
+			int swap = random.nextInt(k + 1);
+			int temp = cells[k];
+			cells[k] = cells[swap];
+			cells[swap] = temp;
+		}
+		
+		return cells;
+	}
+}
@@ -0,0 +1,157 @@
+package com.ssharaf.game_2048.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ssharaf.game_2048.Game2048;
+
+/**
+ * Benchmarks of Game2048 hot paths: line combination, the four moves
+ * driven by swipes, new number insertion and terminal state checks.
+ *
+ * Each benchmark works on one of a fixed set of random positions. Moves and
+ * insertions modify the game, so they first restore a position with
+ * copy_from(); the restore benchmark measures that cost alone so it can be
+ * subtracted.
+ *
+ * @author SAMEH SHARAF
+ *
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EngineBenchmark
+{
+	// Number of prepared positions (power of two).
+	private final static int POSITIONS = 64;
+	
+	// Grid dimension.
+	@Param({"4", "5", "6", "8"})
+	public int tiles;
+	
+	// Ratio of non-empty tiles in prepared positions.
+	@Param({"0.25", "0.5", "0.75", "0.95"})
+	public double fill;
+	
+	// Prepared positions, never modified.
+	private Game2048[] positions;
+	
+	// Prepared rows, never modified.
+	private int[][] rows;
+	
+	// Game and row modified by benchmarks.
+	private Game2048 game;
+	private int[] row;
+	
+	// Next position to use.
+	private int next;
+	
+	@Setup
+	public void setup()
+	{
+		positions = Boards.random_games(tiles, fill, POSITIONS, 2048);
+		rows = new int[POSITIONS][];
+		
+		for (int n = 0; n < POSITIONS; n++)
+			rows[n] = positions[n].getGameGridRow(n % tiles).clone();
+		
+		game = new Game2048(tiles, 2048, 0);
+		row = new int[tiles];
+	}
+	
+	/**
+	 * Restore next prepared position into the benchmarked game.
+	 */
+	private Game2048 next_game()
+	{
+		game.copy_from(positions[next++ & (POSITIONS - 1)]);
+		return game;
+	}
+	
+	/**
+	 * Copy next prepared row into the benchmarked row.
+	 */
+	private int[] next_row()
+	{
+		System.arraycopy(rows[next++ & (POSITIONS - 1)], 0, row, 0, tiles);
+		return row;
+	}
+	
+	@Benchmark
+	public Game2048 restore()
+	{
+		return next_game();
+	}
+	
+	@Benchmark
+	public boolean combine_tiles()
+	{
+		return game.combine_tiles(next_row());
+	}
+	
+	@Benchmark
+	public boolean concat_tiles()
+	{
+		return game.concat_tiles(next_row());
+	}
+	
+	@Benchmark
+	public boolean move_up()
+	{
+		return next_game().move(Game2048.MOVE_UP);
+	}
+	
+	@Benchmark
+	public boolean move_down()
+	{
+		return next_game().move(Game2048.MOVE_DOWN);
+	}
+	
+	@Benchmark
+	public boolean move_left()
+	{
+		return next_game().move(Game2048.MOVE_LEFT);
+	}
+	
+	@Benchmark
+	public boolean move_right()
+	{
+		return next_game().move(Game2048.MOVE_RIGHT);
+	}
+	
+	@Benchmark
+	public Game2048 insert_new_number()
+	{
+		Game2048 game = next_game();
+		game.insert_new_number();
+		
+		return game;
+	}
+	
+	@Benchmark
+	public boolean isLost()
+	{
+		return positions[next++ & (POSITIONS - 1)].isLost();
+	}
+	
+	@Benchmark
+	public boolean isPlayable()
+	{
+		return positions[next++ & (POSITIONS - 1)].isPlayable();
+	}
+}
@@ -0,0 +1,133 @@
+package com.ssharaf.game_2048.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ssharaf.game_2048.Game2048;
+import com.ssharaf.game_2048.LargeGame2048;
+
+/**
+ * Moves on big grids: Game2048 against LargeGame2048, on the same random
+ * positions. Like EngineBenchmark, each move first restores a position with
+ * copy_from(), and the restore benchmarks measure that cost alone.
+ *
+ * @author SAMEH SHARAF
+ *
+ */
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LargeBoardBenchmark
+{
+	// Number of prepared positions (power of two).
+	private final static int POSITIONS = 64;
+	
+	// Grid dimension.
+	@Param({"8", "12", "16"})
+	public int tiles;
+	
+	// Ratio of non-empty tiles in prepared positions.
+	@Param({"0.5", "0.95"})
+	public double fill;
+	
+	// Prepared positions, never modified.
+	private Game2048[] positions;
+	private LargeGame2048[] large_positions;
+	
+	// Games modified by benchmarks.
+	private Game2048 game;
+	private LargeGame2048 large_game;
+	
+	// Next position to use.
+	private int next;
+	
+	@Setup
+	public void setup()
+	{
+		positions = Boards.random_games(tiles, fill, POSITIONS, 2048);
+		large_positions = Boards.large_games(positions);
+		game = new Game2048(tiles, 2048, 0);
+		large_game = new LargeGame2048(tiles, 11, 0);
+	}
+	
+	/**
+	 * Restore next prepared position into the benchmarked game.
+	 */
+	private Game2048 next_game()
+	{
+		game.copy_from(positions[next++ & (POSITIONS - 1)]);
+		return game;
+	}
+	
+	/**
+	 * Restore next prepared position into the benchmarked big game.
+	 */
+	private LargeGame2048 next_large_game()
+	{
+		large_game.copy_from(large_positions[next++ & (POSITIONS - 1)]);
+		return large_game;
+	}
+	
+	@Benchmark
+	public Game2048 restore()
+	{
+		return next_game();
+	}
+	
+	@Benchmark
+	public LargeGame2048 restore_large()
+	{
+		return next_large_game();
+	}
+	
+	@Benchmark
+	public boolean move_left()
+	{
+		return next_game().move(Game2048.MOVE_LEFT);
+	}
+	
+	@Benchmark
+	public boolean move_left_large()
+	{
+		return next_large_game().move(Game2048.MOVE_LEFT);
+	}
+	
+	@Benchmark
+	public boolean move_down()
+	{
+		return next_game().move(Game2048.MOVE_DOWN);
+	}
+	
+	@Benchmark
+	public boolean move_down_large()
+	{
+		return next_large_game().move(Game2048.MOVE_DOWN);
+	}
+	
+	@Benchmark
+	public boolean isLost()
+	{
+		return positions[next++ & (POSITIONS - 1)].isLost();
+	}
+	
+	@Benchmark
+	public boolean isLost_large()
+	{
+		return large_positions[next++ & (POSITIONS - 1)].isLost();
+	}
+}
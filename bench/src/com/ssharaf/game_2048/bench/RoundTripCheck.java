@@ -0,0 +1,284 @@
+package com.ssharaf.game_2048.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+import com.ssharaf.game_2048.Game2048;
+import com.ssharaf.game_2048.GameHistory;
+import com.ssharaf.game_2048.MoveJournal;
+import com.ssharaf.game_2048.SaveGame;
+
+/**
+ * Checks that a restored game goes on exactly as the original one: each
+ * seeded game plays some random moves, is saved and loaded back, then both
+ * copies play the same moves and must end with the same state. Undo is
+ * checked the same way: undoing a move and playing it again must give back
+ * the same grid and new number. So must replaying a game's move journal,
+ * kept across undos, redos and a restart: the replayed game must match the
+ * recorded one and go on alike.
+ *
+ * Exits with status 1 when a game diverges.
+ *
+ * Usage: RoundTripCheck [games] [moves]
+ *
+ * @author SAMEH SHARAF
+ *
+ */
+
+public final class RoundTripCheck
+{
+	// Grid dimensions checked.
+	private final static int[] TILES = { 3, 4, 5, 6, 20 };
+	
+	// Target number: high enough for games to go on, low enough for 4x4 games to use move tables.
+	private final static int WINNING_NUMBER = 32768;
+	
+	private RoundTripCheck()
+	{
+	}
+	
+	/**
+	 * Play a move, adding a new number when it changed grid.
+	 * @return Flag indicates grid changed.
+	 */
+	static boolean step(Game2048 game2048, int direction)
+	{
+		if (!game2048.move(direction))
+			return false;
+		
+		game2048.insert_new_number();
+		return true;
+	}
+	
+	/**
+	 * Get a random move direction.
+	 */
+	static int random_move(Random random)
+	{
+		return Game2048.MOVE_UP + random.nextInt(4);
+	}
+	
+	/**
+	 * Compare whole game state.
+	 * @return Flag indicates games are alike.
+	 */
+	static boolean same(Game2048 a, Game2048 b)
+	{
+		if (a.getScore() != b.getScore() || a.getMoveCount() != b.getMoveCount() || a.getRandomState() != b.getRandomState()
+				|| a.get_last_num_row() != b.get_last_num_row() || a.get_last_num_col() != b.get_last_num_col())
+			return false;
+		
+		for (int i = 0; i < a.getTiles(); i++)
+			for (int j = 0; j < a.getTiles(); j++)
+				if (a.get_tile(i, j) != b.get_tile(i, j))
+					return false;
+		
+		return true;
+	}
+	
+	/**
+	 * Save, load and go on with seeded games.
+	 * @param tiles Grid dimension.
+	 * @param games Number of games.
+	 * @param moves Moves played before saving, and again after loading.
+	 * @return Number of games that diverged.
+	 */
+	static int check_save(int tiles, int games, int moves) throws IOException
+	{
+		ByteBuffer buffer = ByteBuffer.allocate(SaveGame.size(tiles));
+		CRC32 crc = new CRC32();
+		int diverged = 0;
+		
+		for (int n = 0; n < games; n++)
+		{
+			Random random = new Random(n);
+			Game2048 original = new Game2048(tiles, WINNING_NUMBER, n + 1);
+			
+			for (int k = 0; k < moves && !original.isLost(); k++)
+				step(original, random_move(random));
+			
+			buffer.clear();
+			SaveGame.write(original, buffer, crc);
+			buffer.flip();
+			
+			Game2048 restored = SaveGame.read(buffer, crc);
+			boolean isSame = same(original, restored);
+			
+			for (int k = 0; k < moves && isSame && !original.isLost(); k++)
+			{
+				int direction = random_move(random);
+				
+				isSame = step(original, direction) == step(restored, direction) && same(original, restored);
+			}
+			
+			if (!isSame)
+				diverged++;
+		}
+		
+		return diverged;
+	}
+	
+	/**
+	 * Undo moves of seeded games and play them again.
+	 * @param tiles Grid dimension.
+	 * @param games Number of games.
+	 * @param moves Moves played by each game.
+	 * @return Number of games where a replayed move gave another state.
+	 */
+	static int check_undo(int tiles, int games, int moves)
+	{
+		Game2048 expected = new Game2048(tiles, WINNING_NUMBER, 1);
+		int diverged = 0;
+		
+		for (int n = 0; n < games; n++)
+		{
+			Random random = new Random(n);
+			Game2048 game2048 = new Game2048(tiles, WINNING_NUMBER, n + 1);
+			boolean isSame = true;
+			
+			game2048.setHistory(new GameHistory(tiles));
+			
+			for (int k = 0; k < moves && isSame && !game2048.isLost(); k++)
+			{
+				int direction = random_move(random);
+				
+				if (!step(game2048, direction))
+					continue;
+				
+				expected.copy_from(game2048);
+				isSame = game2048.undo() && step(game2048, direction) && same(expected, game2048);
+			}
+			
+			if (!isSame)
+				diverged++;
+		}
+		
+		return diverged;
+	}
+	
+	/**
+	 * Replay journals of seeded games, then go on with both recorded and replayed games.
+	 * Games also undo and redo now and then, and after moves / 2 steps are saved, loaded and
+	 * attached to their journal again, as when the application starts again: journal must go on.
+	 * @param tiles Grid dimension.
+	 * @param games Number of games.
+	 * @param moves Moves played after replay; games play a checkpoint interval more before it.
+	 * @return Number of games where journal started over or replayed game diverged.
+	 */
+	static int check_journal(int tiles, int games, int moves) throws IOException
+	{
+		File file = File.createTempFile("journal", ".jrnl");
+		ByteBuffer buffer = ByteBuffer.allocate(SaveGame.size(tiles));
+		CRC32 crc = new CRC32();
+		int steps = MoveJournal.CHECKPOINT_INTERVAL + moves;
+		int diverged = 0;
+		
+		try
+		{
+			for (int n = 0; n < games; n++)
+			{
+				Random random = new Random(n);
+				Game2048 original = new Game2048(tiles, WINNING_NUMBER, n + 1);
+				MoveJournal journal = new MoveJournal(file);
+				boolean isSame = true;
+				
+				original.setJournal(journal);
+				original.setHistory(new GameHistory(tiles));
+				
+				for (int k = 0; k < steps && !original.isLost(); k++)
+				{
+					int action = random.nextInt(10);
+					
+					if (action == 0)
+						original.undo();
+					else if (action == 1)
+						original.redo();
+					else
+						step(original, random_move(random));
+					
+					if (k != moves / 2)
+						continue;
+					
+					// Start again on saved game: journal goes on with one more entry.
+					int entries = journal.getEntryCount();
+					
+					journal.close();
+					buffer.clear();
+					SaveGame.write(original, buffer, crc);
+					buffer.flip();
+					original = SaveGame.read(buffer, crc);
+					journal = new MoveJournal(file);
+					original.setJournal(journal);
+					original.setHistory(new GameHistory(tiles));
+					isSame = journal.getEntryCount() == entries + 1;
+				}
+				
+				journal.close();
+				original.setJournal(null);
+				
+				Game2048 replayed;
+				
+				try
+				{
+					replayed = MoveJournal.replay(file, Integer.MAX_VALUE);
+				}
+				catch (IOException e)
+				{
+					// Journal doesn't match engine.
+					diverged++;
+					continue;
+				}
+				
+				isSame = isSame && same(original, replayed);
+				
+				for (int k = 0; k < moves && isSame && !original.isLost(); k++)
+				{
+					int direction = random_move(random);
+					
+					isSame = step(original, direction) == step(replayed, direction) && same(original, replayed);
+				}
+				
+				if (!isSame)
+					diverged++;
+			}
+		}
+		finally
+		{
+			file.delete();
+			new File(file.getPath() + MoveJournal.CHECKPOINT_SUFFIX).delete();
+		}
+		
+		return diverged;
+	}
+	
+	public static void main(String[] args) throws IOException
+	{
+		int games = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+		int moves = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+		int failures = 0;
+		
+		for (int t = 0; t < TILES.length; t++)
+		{
+			int diverged = check_save(TILES[t], games, moves);
+			
+			System.out.println(TILES[t] + "x" + TILES[t] + " save and load: " + diverged + " of " + games + " games diverged");
+			failures += diverged;
+			
+			diverged = check_undo(TILES[t], games, moves);
+			
+			System.out.println(TILES[t] + "x" + TILES[t] + " undo and replay: " + diverged + " of " + games + " games diverged");
+			failures += diverged;
+			
+			diverged = check_journal(TILES[t], games, moves);
+			
+			System.out.println(TILES[t] + "x" + TILES[t] + " journal replay: " + diverged + " of " + games + " games diverged");
+			failures += diverged;
+		}
+		
+		if (failures > 0)
+			System.exit(1);
+	}
+}
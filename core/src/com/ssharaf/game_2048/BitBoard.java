@@ -0,0 +1,381 @@
+package com.ssharaf.game_2048;
+
+/**
+ * 4x4 game board packed into a single 64-bit long. Each tile is stored
+ * as a 4-bit nibble holding the tile's log2 exponent (0 = empty tile,
+ * 1 = 2, 2 = 4, ... 15 = 32768), so a whole board fits in a register and
+ * copying a board is just copying a long.
+ *
+ * Tile (i, j) lives in nibble (i * 4 + j), so each row occupies 16 bits
+ * with its first column in the lowest nibble.
+ *
+ * @author SAMEH SHARAF
+ *
+ */
+
+public class BitBoard
+{
+	// Board dimension. Bitboards only cover the original 4x4 game.
+	public final static int TILES = 4;
+	
+	// Highest exponent a nibble can hold.
+	public final static int MAX_EXPONENT = 15;
+	
+	// Mask of one tile's nibble.
+	private final static long TILE_MASK = 0xFL;
+	
+	// Mask of one row's 16 bits.
+	public final static long ROW_MASK = 0xFFFFL;
+	
+	// Packed game board.
+	private long board;
+	
+	// User's score.
+	private int score;
+	
+	/**
+	 * Default constructor, creates an empty board.
+	 */
+	public BitBoard()
+	{
+		this(0L, 0);
+	}
+	
+	/**
+	 * Constructor for a packed board.
+	 * @param board Packed board.
+	 * @param score Score reached on this board.
+	 */
+	public BitBoard(long board, int score)
+	{
+		this.board = board;
+		this.score = score;
+	}
+	
+	/**
+	 * Constructor copying a 4x4 game's grid and score.
+	 * @param game2048 Game to be packed.
+	 */
+	public BitBoard(Game2048 game2048)
+	{
+		this(pack(game2048), game2048.getScore());
+	}
+	
+	/**
+	 * Get game grid tile.
+	 * @param i Row number.
+	 * @param j Column number.
+	 * @return Tile value (0 for empty tile).
+	 */
+	public int get_tile(int i, int j)
+	{
+		return to_value(get_exponent(board, i, j));
+	}
+	
+	/**
+	 * Set game grid tile value.
+	 * @param i Row number.
+	 * @param j Column number.
+	 * @param x New value to be set (0 or a power of two up to 32768).
+	 */
+	public void set_tile(int i, int j, int x)
+	{
+		board = set_exponent(board, i, j, to_exponent(x));
+	}
+	
+	/**
+	 *  Clear board.
+	 */
+	public void clear_grid()
+	{
+		board = 0L;
+	}
+	
+	/**
+	 * Get game score.
+	 * @return Game score.
+	 */
+	public int getScore()
+	{
+		return score;
+	}
+	
+	/**
+	 * Set game score.
+	 * @param score New score to be set.
+	 */
+	public void setScore(int score)
+	{
+		this.score = score;
+	}
+	
+	/**
+	 * Get packed board.
+	 * @return Board packed into a long.
+	 */
+	public long getBoard()
+	{
+		return board;
+	}
+	
+	/**
+	 * Set packed board.
+	 * @param board Board packed into a long.
+	 */
+	public void setBoard(long board)
+	{
+		this.board = board;
+	}
+	
+	/**
+	 * Get game grid dimension.
+	 * @return Grid dimension (always 4).
+	 */
+	public int getTiles()
+	{
+		return TILES;
+	}
+	
+	/**
+	 * Move all tiles left, adding merged tiles to score.
+	 * @return Flag indicates if any tile moved.
+	 */
+	public boolean move_left()
+	{
+		long moved = MoveTables.move_left(board);
+		
+		if (moved == board)
+			return false;
+		
+		score += MoveTables.score_rows(board);
+		board = moved;
+		
+		return true;
+	}
+	
+	/**
+	 * Move all tiles right, adding merged tiles to score.
+	 * @return Flag indicates if any tile moved.
+	 */
+	public boolean move_right()
+	{
+		long moved = MoveTables.move_right(board);
+		
+		if (moved == board)
+			return false;
+		
+		score += MoveTables.score_rows(board);
+		board = moved;
+		
+		return true;
+	}
+	
+	/**
+	 * Move all tiles up, adding merged tiles to score.
+	 * @return Flag indicates if any tile moved.
+	 */
+	public boolean move_up()
+	{
+		long moved = MoveTables.move_up(board);
+		
+		if (moved == board)
+			return false;
+		
+		score += MoveTables.score_columns(board);
+		board = moved;
+		
+		return true;
+	}
+	
+	/**
+	 * Move all tiles down, adding merged tiles to score.
+	 * @return Flag indicates if any tile moved.
+	 */
+	public boolean move_down()
+	{
+		long moved = MoveTables.move_down(board);
+		
+		if (moved == board)
+			return false;
+		
+		score += MoveTables.score_columns(board);
+		board = moved;
+		
+		return true;
+	}
+	
+	/**
+	 * Check if any move is possible on this board.
+	 * @return Flag whether there is possible move.
+	 */
+	public boolean isPlayable()
+	{
+		return MoveTables.move_left(board) != board || MoveTables.move_right(board) != board
+			|| MoveTables.move_up(board) != board || MoveTables.move_down(board) != board;
+	}
+	
+	/**
+	 * Copy board back into a 4x4 game, overwriting its grid and score.
+	 * @param game2048 Destination game.
+	 */
+	public void copy_to(Game2048 game2048)
+	{
+		unpack(board, game2048);
+		game2048.setScore(score);
+	}
+	
+	/**
+	 * Pack a 4x4 game's grid into a long.
+	 * @param game2048 Game to be packed.
+	 * @return Packed board.
+	 */
+	public static long pack(Game2048 game2048)
+	{
+		long board = 0L;
+		
+		for (int i = 0; i < TILES; i++)
+			for (int j = 0; j < TILES; j++)
+				board = set_exponent(board, i, j, to_exponent(game2048.get_tile(i, j)));
+		
+		return board;
+	}
+	
+	/**
+	 * Unpack a board into a 4x4 game's grid.
+	 * @param board Packed board.
+	 * @param game2048 Destination game.
+	 */
+	public static void unpack(long board, Game2048 game2048)
+	{
+		for (int i = 0; i < TILES; i++)
+			for (int j = 0; j < TILES; j++)
+				game2048.set_tile(i, j, to_value(get_exponent(board, i, j)));
+	}
+	
+	/**
+	 * Get tile exponent from a packed board.
+	 * @param board Packed board.
+	 * @param i Row number.
+	 * @param j Column number.
+	 * @return Tile exponent (0 for empty tile).
+	 */
+	public static int get_exponent(long board, int i, int j)
+	{
+		return (int) ((board >>> shift(i, j)) & TILE_MASK);
+	}
+	
+	/**
+	 * Set tile exponent on a packed board.
+	 * @param board Packed board.
+	 * @param i Row number.
+	 * @param j Column number.
+	 * @param exponent New exponent to be set.
+	 * @return Updated packed board.
+	 */
+	public static long set_exponent(long board, int i, int j, int exponent)
+	{
+		int shift = shift(i, j);
+		
+		return (board & ~(TILE_MASK << shift)) | ((exponent & TILE_MASK) << shift);
+	}
+	
+	/**
+	 * Get one packed row of a board.
+	 * @param board Packed board.
+	 * @param i Row number.
+	 * @return Row's 16 bits.
+	 */
+	public static int get_row(long board, int i)
+	{
+		return (int) ((board >>> (i * 16)) & ROW_MASK);
+	}
+	
+	/**
+	 * Get one column of a board, packed the same way as a row.
+	 * @param board Packed board.
+	 * @param j Column number.
+	 * @return Column's 16 bits, first row in the lowest nibble.
+	 */
+	public static int get_column(long board, int j)
+	{
+		return get_row(transpose(board), j);
+	}
+	
+	/**
+	 * Transpose a packed board, turning its columns into rows.
+	 * @param board Packed board.
+	 * @return Transposed board.
+	 */
+	public static long transpose(long board)
+	{
+		// Swap 1x1 blocks across each 2x2 block diagonal, then 2x2 blocks across the board diagonal.
+		long a1 = board & 0xF0F00F0FF0F00F0FL;
+		long a2 = board & 0x0000F0F00000F0F0L;
+		long a3 = board & 0x0F0F00000F0F0000L;
+		long a = a1 | (a2 << 12) | (a3 >>> 12);
+		long b1 = a & 0xFF00FF0000FF00FFL;
+		long b2 = a & 0x00FF00FF00000000L;
+		long b3 = a & 0x00000000FF00FF00L;
+		
+		return b1 | (b2 >>> 24) | (b3 << 24);
+	}
+	
+	/**
+	 * Count empty tiles of a packed board.
+	 * @param board Packed board.
+	 * @return Number of empty tiles.
+	 */
+	public static int count_empty(long board)
+	{
+		// Fold each nibble into its lowest bit, set if the nibble is non-zero.
+		long x = board | (board >>> 1);
+		x |= x >>> 2;
+		x &= 0x1111111111111111L;
+		
+		return TILES * TILES - Long.bitCount(x);
+	}
+	
+	/**
+	 * Get highest tile exponent of a packed board.
+	 * @param board Packed board.
+	 * @return Highest exponent (0 for empty board).
+	 */
+	public static int max_exponent(long board)
+	{
+		int max = 0;
+		
+		for (; board != 0; board >>>= 4)
+			if ((int) (board & TILE_MASK) > max)
+				max = (int) (board & TILE_MASK);
+		
+		return max;
+	}
+	
+	/**
+	 * Convert tile value to exponent.
+	 * @param x Tile value (0 or a power of two).
+	 * @return Tile exponent (0 for empty tile).
+	 */
+	public static int to_exponent(int x)
+	{
+		return x == 0 ? 0 : Integer.numberOfTrailingZeros(x);
+	}
+	
+	/**
+	 * Convert tile exponent to value.
+	 * @param exponent Tile exponent.
+	 * @return Tile value (0 for empty tile).
+	 */
+	public static int to_value(int exponent)
+	{
+		return exponent == 0 ? 0 : 1 << exponent;
+	}
+	
+	/**
+	 * Bit offset of a tile's nibble.
+	 */
+	private static int shift(int i, int j)
+	{
+		return (i * TILES + j) * 4;
+	}
+}
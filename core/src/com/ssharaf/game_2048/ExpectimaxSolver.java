@@ -0,0 +1,393 @@
+package com.ssharaf.game_2048;
+
+/**
+ * Expectimax player for 4x4 games, used for hints and autoplay.
+ *
+ * The search alternates player moves (best of the four directions) with
+ * chance nodes (a new number of 2 on each empty tile, equally likely), and
+ * scores leaf boards with a heuristic precomputed for every packed row.
+ * Moves go through MoveTables, so the search follows Game2048 rules exactly.
+ *
+ * Depth grows one level at a time until the time budget runs out, and the
+ * deepest fully searched level decides the move. Searched positions are kept
+ * in a fixed-size transposition table keyed on board and depth, see
+ * ParallelExpectimaxSolver for spreading the search over several threads.
+ *
+ * With an n-tuple network set, leaf boards are valued by the network
+ * instead, and the score each move gains is added along the way, as the
+ * network was trained.
+ *
+ * @author SAMEH SHARAF
+ *
+ */
+
+public class ExpectimaxSolver
+{
+	// Move directions tried at every player node.
+	private final static int[] MOVES = { Game2048.MOVE_UP, Game2048.MOVE_DOWN, Game2048.MOVE_LEFT, Game2048.MOVE_RIGHT };
+	
+	// Heuristic weights.
+	private final static float LOST_PENALTY = 200000.0f;
+	private final static float MONOTONICITY_POWER = 4.0f;
+	private final static float MONOTONICITY_WEIGHT = 47.0f;
+	private final static float SUM_POWER = 3.5f;
+	private final static float SUM_WEIGHT = 11.0f;
+	private final static float MERGES_WEIGHT = 700.0f;
+	private final static float EMPTY_WEIGHT = 270.0f;
+	
+	// Heuristic score of each packed row.
+	private final static float[] ROW_HEURISTIC = new float[1 << 16];
+	
+	// Nodes searched between two time checks.
+	private final static int TIME_CHECK_INTERVAL = 1024;
+	
+	static
+	{
+		int[] line = new int[BitBoard.TILES];
+		
+		for (int row = 0; row < ROW_HEURISTIC.length; row++)
+			ROW_HEURISTIC[row] = row_heuristic(row, line);
+	}
+	
+	// Time budget per search, in nanoseconds.
+	private long time_budget;
+	
+	// Deepest search, in player moves.
+	private int max_depth;
+	
+	// Cache of searched positions.
+	private TranspositionTable table;
+	
+	// Learned value of leaf boards, null to use heuristic.
+	private NTupleNetwork network;
+	
+	// Deadline of running search, and flag raised once it passes.
+	private long deadline;
+	private boolean isTimeUp;
+	private int nodes;
+	
+	// Depth reached by last search.
+	private int last_depth;
+	
+	/**
+	 * Default constructor: 10 ms budget, up to 6 moves deep, 64K table entries.
+	 */
+	public ExpectimaxSolver()
+	{
+		this(10, 6, 16);
+	}
+	
+	/**
+	 * Constructor for Expectimax solver.
+	 * @param time_budget_ms Time budget of each search in milliseconds, 0 to always search max_depth moves.
+	 * @param max_depth Deepest search, in player moves.
+	 * @param table_bits Transposition table holds (2 ^ table_bits) entries.
+	 */
+	public ExpectimaxSolver(int time_budget_ms, int max_depth, int table_bits)
+	{
+		this(time_budget_ms, max_depth, new TranspositionTable(table_bits));
+	}
+	
+	/**
+	 * Constructor for Expectimax solver using a given transposition table.
+	 * @param time_budget_ms Time budget of each search in milliseconds, 0 to always search max_depth moves.
+	 * @param max_depth Deepest search, in player moves.
+	 * @param table Cache of searched positions, may be shared by solvers of different threads.
+	 */
+	public ExpectimaxSolver(int time_budget_ms, int max_depth, TranspositionTable table)
+	{
+		this.time_budget = time_budget_ms * 1000000L;
+		this.max_depth = max_depth;
+		this.table = table;
+	}
+	
+	/**
+	 * Set learned value function for leaf boards. Cached values of the previous one are dropped.
+	 * @param network N-tuple network, or null to use heuristic.
+	 */
+	public void setNetwork(NTupleNetwork network)
+	{
+		this.network = network;
+		table.clear();
+	}
+	
+	/**
+	 * Find best move for a game.
+	 * @param game2048 Game to be solved (4x4 only).
+	 * @return Best move direction, or 0 when no move is possible or grid isn't 4x4.
+	 */
+	public int best_move(Game2048 game2048)
+	{
+		if (game2048.getTiles() != BitBoard.TILES)
+			return 0;
+		
+		return best_move(BitBoard.pack(game2048));
+	}
+	
+	/**
+	 * Find best move for a packed board.
+	 * @param board Packed board.
+	 * @return Best move direction, or 0 when no move is possible.
+	 */
+	public int best_move(long board)
+	{
+		begin_search(time_budget > 0 ? System.nanoTime() + time_budget : Long.MAX_VALUE);
+		last_depth = 0;
+		
+		int best = 0;
+		
+		for (int depth = 1; depth <= max_depth; depth++)
+		{
+			int move = search_root(board, depth);
+			
+			// Drop unfinished level, previous one is still the best we know.
+			if (isTimeUp)
+				break;
+			
+			best = move;
+			last_depth = depth;
+			
+			// No move possible, deeper levels won't change that.
+			if (best == 0)
+				break;
+		}
+		
+		// Even one level didn't fit in budget: fall back to first legal move.
+		if (last_depth == 0)
+			best = first_legal_move(board);
+		
+		return best;
+	}
+	
+	/**
+	 * Get depth reached by last search.
+	 * @return Number of player moves searched.
+	 */
+	public int getLastDepth()
+	{
+		return last_depth;
+	}
+	
+	/**
+	 * Reset search state before a new search.
+	 * @param deadline System.nanoTime() value after which search gives up.
+	 */
+	void begin_search(long deadline)
+	{
+		this.deadline = deadline;
+		this.isTimeUp = false;
+		this.nodes = 0;
+	}
+	
+	/**
+	 * Check if running search gave up because its deadline passed.
+	 * @return Flag indicates search values are incomplete.
+	 */
+	boolean isTimeUp()
+	{
+		return isTimeUp;
+	}
+	
+	/**
+	 * Search all root moves to a given depth.
+	 * @param board Packed board.
+	 * @param depth Player moves to search.
+	 * @return Best move, or 0 when no move is possible.
+	 */
+	private int search_root(long board, int depth)
+	{
+		int best = 0;
+		float best_value = -1.0f;
+		
+		for (int k = 0; k < MOVES.length; k++)
+		{
+			long moved = MoveTables.move(board, MOVES[k]);
+			
+			if (moved == board)
+				continue;
+			
+			float value = gain(board, MOVES[k]) + chance_node(moved, depth - 1);
+			
+			if (value > best_value)
+			{
+				best_value = value;
+				best = MOVES[k];
+			}
+		}
+		
+		return best;
+	}
+	
+	/**
+	 * Value of a board after player's move: average over all new number positions.
+	 * @param board Packed board.
+	 * @param depth Player moves left to search.
+	 * @return Expected value.
+	 */
+	float chance_node(long board, int depth)
+	{
+		if (depth == 0)
+			return network != null ? network.evaluate(board) : evaluate(board);
+		
+		float sum = 0.0f;
+		int empty = 0;
+		
+		for (int shift = 0; shift < 64; shift += 4)
+		{
+			if (((board >>> shift) & 0xFL) != 0)
+				continue;
+			
+			sum += max_node(board | (1L << shift), depth);
+			empty++;
+		}
+		
+		return empty == 0 ? max_node(board, depth) : sum / empty;
+	}
+	
+	/**
+	 * Value of a board before player's move: best of all moves.
+	 * @param board Packed board.
+	 * @param depth Player moves left to search.
+	 * @return Best value, 0 when game is lost.
+	 */
+	float max_node(long board, int depth)
+	{
+		if (isTimeUp || (++nodes % TIME_CHECK_INTERVAL == 0 && System.nanoTime() > deadline))
+		{
+			isTimeUp = true;
+			return 0.0f;
+		}
+		
+		float cached = table.get(board, depth);
+		
+		if (!Float.isNaN(cached))
+			return cached;
+		
+		float best = 0.0f;
+		
+		for (int k = 0; k < MOVES.length; k++)
+		{
+			long moved = MoveTables.move(board, MOVES[k]);
+			
+			if (moved != board)
+				best = Math.max(best, gain(board, MOVES[k]) + chance_node(moved, depth - 1));
+		}
+		
+		// Values of an interrupted search are incomplete, don't keep them.
+		if (!isTimeUp)
+			table.put(board, depth, best);
+		
+		return best;
+	}
+	
+	/**
+	 * Score gained by a move, counted only when leaf boards are valued by network.
+	 * @param board Packed board before the move.
+	 * @param direction Move direction.
+	 * @return Score delta, 0 with heuristic.
+	 */
+	private float gain(long board, int direction)
+	{
+		if (network == null)
+			return 0.0f;
+		
+		return MoveTables.gain(board, direction);
+	}
+	
+	/**
+	 * Forget all transposition table entries.
+	 */
+	public void clear_table()
+	{
+		table.clear();
+	}
+	
+	/**
+	 * Heuristic value of a board, from its rows and columns.
+	 * @param board Packed board.
+	 * @return Board value (higher is better).
+	 */
+	public static float evaluate(long board)
+	{
+		long transposed = BitBoard.transpose(board);
+		
+		return ROW_HEURISTIC[(int) (board & 0xFFFF)] + ROW_HEURISTIC[(int) ((board >>> 16) & 0xFFFF)]
+			+ ROW_HEURISTIC[(int) ((board >>> 32) & 0xFFFF)] + ROW_HEURISTIC[(int) (board >>> 48)]
+			+ ROW_HEURISTIC[(int) (transposed & 0xFFFF)] + ROW_HEURISTIC[(int) ((transposed >>> 16) & 0xFFFF)]
+			+ ROW_HEURISTIC[(int) ((transposed >>> 32) & 0xFFFF)] + ROW_HEURISTIC[(int) (transposed >>> 48)];
+	}
+	
+	/**
+	 * Get first move that changes a board.
+	 * @param board Packed board.
+	 * @return Move direction, or 0 when no move is possible.
+	 */
+	static int first_legal_move(long board)
+	{
+		for (int k = 0; k < MOVES.length; k++)
+			if (MoveTables.move(board, MOVES[k]) != board)
+				return MOVES[k];
+		
+		return 0;
+	}
+	
+	/**
+	 * Heuristic score of one packed row: rewards empty tiles, possible merges and
+	 * monotonic rows, penalizes big tiles spread around.
+	 */
+	private static float row_heuristic(int row, int[] line)
+	{
+		for (int j = 0; j < BitBoard.TILES; j++)
+			line[j] = (row >>> (j * 4)) & 0xF;
+		
+		float sum = 0.0f;
+		int empty = 0;
+		int merges = 0;
+		int previous = 0;
+		int counter = 0;
+		
+		for (int j = 0; j < BitBoard.TILES; j++)
+		{
+			int exponent = line[j];
+			sum += (float) Math.pow(exponent, SUM_POWER);
+			
+			if (exponent == 0)
+			{
+				empty++;
+				continue;
+			}
+			
+			// Count runs of equal tiles that would merge.
+			if (previous == exponent)
+				counter++;
+			else if (counter > 0)
+			{
+				merges += 1 + counter;
+				counter = 0;
+			}
+			
+			previous = exponent;
+		}
+		
+		if (counter > 0)
+			merges += 1 + counter;
+		
+		float monotonicity_left = 0.0f;
+		float monotonicity_right = 0.0f;
+		
+		for (int j = 1; j < BitBoard.TILES; j++)
+		{
+			float left = (float) Math.pow(line[j-1], MONOTONICITY_POWER);
+			float right = (float) Math.pow(line[j], MONOTONICITY_POWER);
+			
+			if (line[j-1] > line[j])
+				monotonicity_left += left - right;
+			else
+				monotonicity_right += right - left;
+		}
+		
+		return LOST_PENALTY + EMPTY_WEIGHT * empty + MERGES_WEIGHT * merges
+			- MONOTONICITY_WEIGHT * Math.min(monotonicity_left, monotonicity_right)
+			- SUM_WEIGHT * sum;
+	}
+}
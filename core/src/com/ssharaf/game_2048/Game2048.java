@@ -0,0 +1,987 @@
+package com.ssharaf.game_2048;
+
+/**
+ * 2048 game core class which manages the game's logic. 
+ * See LargeGame2048 for big grids (8x8 up to 16x16).
+ * 
+ * @author SAMEH SHARAF
+ *
+ */
+
+public class Game2048 
+{
+	// Game grid.
+	private int[][] game_grid;
+	
+	// Game number of tiles (Default: 4).
+	private int tiles;
+	
+	// Game's target number to win (Default: 2048).
+	private int winning_number;
+	
+	// User's score.
+	private int score;
+	
+	// Game's best score.
+	private static int best_score;
+	
+	// Last added number's row number.
+	private int last_num_row;
+	
+	// Last added number's column number.
+	private int last_num_col;
+	
+	// Scratch line used by moves, allocated once per game size.
+	private int[] line;
+	
+	// Empty tiles of each row, bit j set when column j is empty.
+	private int[] empty_rows;
+	
+	// Number of empty tiles.
+	private int empty_count;
+	
+	// Number of neighbor tile pairs (horizontally or vertically) holding the same non-zero value.
+	private int equal_pairs;
+	
+	// Highest tile value on grid.
+	private int max_tile;
+	
+	// Flag indicates max_tile may be too high because the highest tile was overwritten.
+	private boolean isMaxStale;
+	
+	// State of game's random number generator (xorshift64*, never zero).
+	private long random_state;
+	
+	// Tiles changed since last clear_changes(), stored as (row * tiles + column). Only the first changed_count items are used.
+	private int[] changed_cells;
+	
+	// Flag of each tile telling if it is already in changed_cells.
+	private boolean[] isCellChanged;
+	
+	// Number of changed tiles.
+	private int changed_count;
+	
+	// Grid values before a line by line move, stored as (row * tiles + column).
+	private int[] previous_grid;
+	
+	// Direction of last move that changed grid, 0 before first one.
+	private int last_move;
+	
+	// Number of moves that changed grid since game began.
+	private int move_count;
+	
+	// Journal recording moves and new numbers, null when not recorded.
+	private MoveJournal journal;
+	
+	// Undo and redo history, null when undo is off.
+	private GameHistory history;
+	
+	// Move directions (same values as SimpleGestureFilter swipe directions).
+	public final static int MOVE_UP    = 1;
+	public final static int MOVE_DOWN  = 2;
+	public final static int MOVE_LEFT  = 3;
+	public final static int MOVE_RIGHT = 4;
+	
+	// Largest grid dimension (one bit per column in empty tile masks).
+	public final static int MAX_TILES = 32;
+	
+	/**
+	 * Default constructor.
+	 * Here, we defined the game with 4 tiles and target number of 2048
+	 * which is the original. You can modify it whatever you want!
+	 */
+	public Game2048()
+	{
+		this(4, 2048);
+	}
+	
+	/**
+	 * Constructor for Game 2048.
+	 * @param tiles Number of tiles for game (Default: 4).
+	 * @param winning_number Number which is the game target (Default: 2048).
+	 */
+	public Game2048(int tiles, int winning_number)
+	{
+		this(tiles, winning_number, System.nanoTime());
+	}
+	
+	/**
+	 * Constructor for Game 2048 with a fixed random seed, so the same moves always give the same game.
+	 * @param tiles Number of tiles for game (Default: 4).
+	 * @param winning_number Number which is the game target (Default: 2048).
+	 * @param seed Seed for new numbers' positions.
+	 */
+	public Game2048(int tiles, int winning_number, long seed)
+	{
+		if (tiles < 2 || tiles > MAX_TILES)
+			throw new IllegalArgumentException("Grid dimension must be 2 to " + MAX_TILES + ": " + tiles);
+		
+		this.winning_number = winning_number;
+		this.tiles = tiles;
+		this.line = new int[tiles];
+		this.game_grid = new int[tiles][tiles];
+		this.empty_rows = new int[tiles];
+		this.changed_cells = new int[tiles * tiles];
+		this.isCellChanged = new boolean[tiles * tiles];
+		this.previous_grid = new int[tiles * tiles];
+		setSeed(seed);
+		
+		// Create new game.
+		begin_game();
+	}
+	
+	/**
+	 * Get game grid tile.
+	 * @param i Row number.
+	 * @param j Column number
+	 * @return
+	 */
+	public int get_tile(int i, int j)
+	{
+		return game_grid[i][j];
+	}
+	
+	/**
+	 * Set game grid tile value
+	 * @param i Row number.
+	 * @param j Column number.
+	 * @param x New value to be set.
+	 */
+	public void set_tile(int i, int j, int x)
+	{
+		int cell = i * tiles + j;
+		int old = game_grid[i][j];
+		
+		if (old == x)
+			return;
+		
+		// Replace old value's equal neighbor pairs by new value's ones.
+		equal_pairs += count_equal_neighbors(i, j, x) - count_equal_neighbors(i, j, old);
+		
+		if (x > max_tile)
+			max_tile = x;
+		else if (old == max_tile)
+			isMaxStale = true;
+		
+		// Keep empty tiles up to date when a tile gets filled or emptied.
+		if (old == 0)
+		{
+			empty_rows[i] &= ~(1 << j);
+			empty_count--;
+		}
+		else if (x == 0)
+		{
+			empty_rows[i] |= 1 << j;
+			empty_count++;
+		}
+		
+		game_grid[i][j] = x;
+		mark_changed(cell);
+	}
+	
+	/**
+	 * Add a tile to changed tiles, unless it is already there.
+	 * @param cell Tile stored as (row * tiles + column).
+	 */
+	private void mark_changed(int cell)
+	{
+		if (isCellChanged[cell])
+			return;
+		
+		isCellChanged[cell] = true;
+		changed_cells[changed_count++] = cell;
+	}
+	
+	/**
+	 * Mark every tile as changed, after whole grid is replaced.
+	 */
+	private void mark_all_changed()
+	{
+		for (int cell = 0; cell < tiles * tiles; cell++)
+			mark_changed(cell);
+	}
+	
+	/**
+	 * Get number of tiles changed (by moves, new numbers or set_tile()) since last clear_changes().
+	 * @return Changed tiles count.
+	 */
+	public int getChangedCount()
+	{
+		return changed_count;
+	}
+	
+	/**
+	 * Get a changed tile.
+	 * @param k Index of changed tile, between 0 and getChangedCount() - 1.
+	 * @return Tile stored as (row * tiles + column).
+	 */
+	public int getChangedCell(int k)
+	{
+		return changed_cells[k];
+	}
+	
+	/**
+	 * Forget changed tiles, once they are drawn.
+	 */
+	public void clear_changes()
+	{
+		for (int k = 0; k < changed_count; k++)
+			isCellChanged[changed_cells[k]] = false;
+		
+		changed_count = 0;
+	}
+	
+	/**
+	 *  Clear puzzle grid.
+	 */
+	public void clear_grid()
+	{
+		for (int i = 0; i < tiles; i++)
+			for (int j = 0; j < tiles; j++)
+				game_grid[i][j] = 0;
+		
+		update_counters();
+		mark_all_changed();
+	}
+	
+	/**
+	 * Count neighbors of a tile holding given value.
+	 * @param i Row number.
+	 * @param j Column number.
+	 * @param x Tile value, 0 never counts.
+	 * @return Number of equal neighbors.
+	 */
+	private int count_equal_neighbors(int i, int j, int x)
+	{
+		if (x == 0)
+			return 0;
+		
+		int count = 0;
+		
+		if (i > 0 && game_grid[i-1][j] == x)
+			count++;
+		if (i + 1 < tiles && game_grid[i+1][j] == x)
+			count++;
+		if (j > 0 && game_grid[i][j-1] == x)
+			count++;
+		if (j + 1 < tiles && game_grid[i][j+1] == x)
+			count++;
+		
+		return count;
+	}
+	
+	/**
+	 * Get highest tile value on grid.
+	 * @return Highest tile value (0 for empty grid).
+	 */
+	public int getMaxTile()
+	{
+		// Only happens when tiles are edited by hand, moves never lower the highest tile.
+		if (isMaxStale)
+			update_counters();
+		
+		return max_tile;
+	}
+	
+	/**
+	 * Get number of empty tiles.
+	 * @return Empty tiles count.
+	 */
+	public int getEmptyCount()
+	{
+		return empty_count;
+	}
+	
+	/**
+	 * Rebuild empty tiles, equal pairs and highest tile from game grid.
+	 * Needed after grid rows are modified directly.
+	 */
+	private void update_counters()
+	{
+		empty_count = 0;
+		equal_pairs = 0;
+		max_tile = 0;
+		isMaxStale = false;
+		
+		for (int i = 0; i < tiles; i++)
+		{
+			empty_rows[i] = 0;
+			
+			for (int j = 0; j < tiles; j++)
+			{
+				int x = game_grid[i][j];
+				
+				if (x == 0)
+				{
+					empty_rows[i] |= 1 << j;
+					empty_count++;
+					continue;
+				}
+				
+				if (x > max_tile)
+					max_tile = x;
+				
+				// Count each pair once, from its top or left tile.
+				if (j + 1 < tiles && game_grid[i][j+1] == x)
+					equal_pairs++;
+				if (i + 1 < tiles && game_grid[i+1][j] == x)
+					equal_pairs++;
+			}
+		}
+	}
+	
+	/**
+	 * Get next random number from game's generator.
+	 * @param bound Upper bound (exclusive), must be positive.
+	 * @return Random number between 0 and bound - 1.
+	 */
+	private int next_random(int bound)
+	{
+		random_state ^= random_state >>> 12;
+		random_state ^= random_state << 25;
+		random_state ^= random_state >>> 27;
+		
+		// Scale high 32 bits into bound, avoiding the slow modulo.
+		return (int) (((random_state * 0x2545F4914F6CDD1DL) >>> 32) * bound >>> 32);
+	}
+	
+	/**
+	 * Randomly inserting new number to puzzle grid, picking uniformly among empty tiles.
+	 * The k-th empty tile is counted row by row, so the new number's position only
+	 * depends on grid and random generator state, however the grid was built.
+	 * Does nothing when grid is full.
+	 */
+	public void insert_new_number()
+	{
+		if (empty_count == 0)
+			return;
+		
+		int k = next_random(empty_count);
+		int x = 0;
+		
+		// Find row holding k-th empty tile, then its column.
+		while (k >= Integer.bitCount(empty_rows[x]))
+			k -= Integer.bitCount(empty_rows[x++]);
+		
+		int row = empty_rows[x];
+		
+		for (; k > 0; k--)
+			row &= row - 1;
+		
+		int y = Integer.numberOfTrailingZeros(row);
+		int cell = x * tiles + y;
+		
+		// Add new number to game grid
+		set_tile(x, y, 2);
+		
+		// Store coordinates of last added number to grid
+		last_num_row = x;
+		last_num_col = y;
+		
+		if (journal != null)
+			journal.record_spawn(cell);
+		
+		if (GameTrace.ENABLED)
+			GameTrace.record(GameTrace.EVENT_SPAWN, x, y, 2);
+	}
+	
+	public int get_last_num_row()
+	{
+		return last_num_row;
+	}
+	
+	public int get_last_num_col()
+	{
+		return last_num_col;
+	}
+	
+	/**
+	 * Set coordinates of last added number (when restoring a saved game).
+	 * @param i Row number.
+	 * @param j Column number.
+	 */
+	public void set_last_num(int i, int j)
+	{
+		last_num_row = i;
+		last_num_col = j;
+	}
+	
+	/**
+	 * Get direction of last move that changed game grid.
+	 * @return Move direction, 0 when no tile moved yet.
+	 */
+	public int getLastMove()
+	{
+		return last_move;
+	}
+	
+	/**
+	 * Print game grid contents into trace output (for debugging purposes).
+	 * Does nothing unless tracing is enabled.
+	 */
+	public void print_grid()
+	{
+		if (GameTrace.ENABLED)
+			GameTrace.print_grid(this);
+	}
+	
+	/**
+	 * Check if player wins the game by checking one of grid tiles reached target number.
+	 * @return Flag indicates if player wins the game.
+	 */
+	public boolean isWin()
+	{
+		return getMaxTile() >= winning_number;
+	}
+	
+	/**
+	 * Check if player lost the game by checking all tiles are filled and no movements available.
+	 * @return Flag indicates if player lost the game.
+	 */
+	public boolean isLost()
+	{
+		// Empty tiles or equal neighbors left mean player can still move.
+		if (isPlayable())
+			return false;
+		
+		if (GameTrace.ENABLED)
+			GameTrace.record(GameTrace.EVENT_DEAD_END, score, 0, 0);
+		
+		return true;
+	}
+	
+	/**
+	 * Check if tiles can move towards given direction, without moving them.
+	 * @param direction Move direction (MOVE_UP, MOVE_DOWN, MOVE_LEFT or MOVE_RIGHT).
+	 * @return Flag indicates if move() would change game grid.
+	 */
+	public boolean can_move(int direction)
+	{
+		int di = direction == MOVE_DOWN ? 1 : (direction == MOVE_UP ? -1 : 0);
+		int dj = direction == MOVE_RIGHT ? 1 : (direction == MOVE_LEFT ? -1 : 0);
+		
+		// Some tile must have an empty or identical neighbor on the side it moves to.
+		for (int i = Math.max(0, -di); i < tiles - Math.max(0, di); i++)
+			for (int j = Math.max(0, -dj); j < tiles - Math.max(0, dj); j++)
+			{
+				int x = game_grid[i][j];
+				int neighbor = game_grid[i + di][j + dj];
+				
+				if (x != 0 && (neighbor == 0 || neighbor == x))
+					return true;
+			}
+		
+		return false;
+	}
+	
+	/**
+	 * Move all tiles towards given direction, combining each pair of identical tiles.
+	 * Works in place on game grid and allocates no objects.
+	 * @param direction Move direction (MOVE_UP, MOVE_DOWN, MOVE_LEFT or MOVE_RIGHT).
+	 * @return Flag indicates if any tile moved.
+	 */
+	public boolean move(int direction)
+	{
+		boolean isChanged = false;
+		
+		if (journal != null)
+			journal.before_move(this);
+		
+		// Grid changed since last step (previous move and its new number): keep it for undo.
+		if (history != null)
+			history.record(this);
+		
+		// 4x4 grids go through precomputed move tables, as long as every tile fits in a bitboard nibble.
+		if (tiles == BitBoard.TILES && winning_number <= BitBoard.to_value(BitBoard.MAX_EXPONENT))
+			isChanged = move_packed(direction);
+		else
+			isChanged = move_lines(direction);
+		
+		if (isChanged)
+		{
+			last_move = direction;
+			move_count++;
+			
+			if (journal != null)
+				journal.record_move(direction);
+		}
+		
+		if (GameTrace.ENABLED)
+			GameTrace.record(GameTrace.EVENT_MOVE, direction, isChanged ? 1 : 0, score);
+		
+		return isChanged;
+	}
+	
+	/**
+	 * Move all tiles one grid line at a time, through scratch line. Counters and
+	 * changed tiles are brought up to date line by line, as each line is rewritten.
+	 * @param direction Move direction.
+	 * @return Flag indicates if any tile moved.
+	 */
+	private boolean move_lines(int direction)
+	{
+		boolean isChanged = false;
+		boolean isRow = direction == MOVE_LEFT || direction == MOVE_RIGHT;
+		
+		// Keep grid as it was, to find changed tiles.
+		for (int i = 0; i < tiles; i++)
+		{
+			System.arraycopy(game_grid[i], 0, previous_grid, i * tiles, tiles);
+			empty_rows[i] = 0;
+		}
+		
+		// Counted again from scratch, line after line.
+		empty_count = 0;
+		equal_pairs = 0;
+		max_tile = 0;
+		isMaxStale = false;
+		
+		for (int k = 0; k < tiles; k++)
+		{
+			switch (direction)
+			{
+				case MOVE_RIGHT :
+					// Rows already combine from left to right.
+					isChanged = combine_tiles(game_grid[k]) || isChanged;
+					break;
+				case MOVE_LEFT :
+					copyArray(game_grid[k], line, true);
+					isChanged = combine_tiles(line) || isChanged;
+					copyArray(line, game_grid[k], true);
+					break;
+				case MOVE_DOWN :
+					copyFromColumn(line, k, false);
+					isChanged = combine_tiles(line) || isChanged;
+					copyToColumn(line, k, false);
+					break;
+				case MOVE_UP :
+					copyFromColumn(line, k, true);
+					isChanged = combine_tiles(line) || isChanged;
+					copyToColumn(line, k, true);
+					break;
+			}
+			
+			count_line(k, isRow);
+		}
+		
+		return isChanged;
+	}
+	
+	/**
+	 * Add a rewritten grid line to counters (empty tiles, equal pairs, highest tile) and
+	 * changed tiles. Lines before it must be rewritten and counted already.
+	 * @param k Row number (isRow) or column number.
+	 * @param isRow Flag indicates line is a row.
+	 */
+	private void count_line(int k, boolean isRow)
+	{
+		for (int p = 0; p < tiles; p++)
+		{
+			int i = isRow ? k : p;
+			int j = isRow ? p : k;
+			int x = game_grid[i][j];
+			
+			if (x != previous_grid[i * tiles + j])
+				mark_changed(i * tiles + j);
+			
+			if (x == 0)
+			{
+				empty_rows[i] |= 1 << j;
+				empty_count++;
+				continue;
+			}
+			
+			if (x > max_tile)
+				max_tile = x;
+			
+			// Pair with previous tile of this line, then with same tile of previous line.
+			if (p > 0 && (isRow ? game_grid[i][j-1] : game_grid[i-1][j]) == x)
+				equal_pairs++;
+			if (k > 0 && (isRow ? game_grid[i-1][j] : game_grid[i][j-1]) == x)
+				equal_pairs++;
+		}
+	}
+	
+	/**
+	 * Move all tiles of a 4x4 grid using bitboard move tables.
+	 * @param direction Move direction.
+	 * @return Flag indicates if any tile moved.
+	 */
+	private boolean move_packed(int direction)
+	{
+		long board = BitBoard.pack(this);
+		long moved = MoveTables.move(board, direction);
+		
+		if (moved == board)
+			return false;
+		
+		BitBoard.unpack(moved, this);
+		score += MoveTables.gain(board, direction);
+		
+		// Highest tile usually moved, leaving max_tile stale: take it from board instead of a rescan.
+		max_tile = BitBoard.to_value(BitBoard.max_exponent(moved));
+		isMaxStale = false;
+		
+		return true;
+	}
+	
+	/**
+	 * Combine each pair of tiles with same value and sum them into one tile.
+	 * @param arr Array which its items to be merged
+	 * @return Flag indicates if combination occurred on array. Useful for checking possible movements.
+	 */
+	public boolean combine_tiles(int[] arr)
+	{
+		// Define flag for changes in array
+		boolean isChanged = false;
+		
+		// First, concatenate array tiles to combine equal neighbors later. 
+		isChanged = concat_tiles(arr) || isChanged;
+		
+		for(int i = tiles - 1; i > 0; i--)
+		{
+			if (arr[i] != 0 && arr[i] == arr[i-1])
+			{
+				arr[i] = arr[i] * 2;
+				arr[i-1] = 0;
+				
+				// Add sum to score
+				score += arr[i];
+				
+				// Flag change in array
+				isChanged = true;
+				
+				if (GameTrace.ENABLED)
+					GameTrace.record(GameTrace.EVENT_MERGE, i, arr[i], score);
+				
+				// Skip next tile
+				i--;
+			}
+		}
+		
+		// Second concatenation after equal tiles combination.
+		isChanged = concat_tiles(arr) || isChanged;
+		
+		return isChanged;
+	}
+	
+	/**
+	 * Concatenate tiles and remove spacing between numbers.
+	 * @param arr Grid tiles to be concatenated.
+	 * @return Flag indicates if concatenation occurred on array. Useful for checking possible movements.
+	 */
+	public boolean concat_tiles(int[] arr)
+	{
+		boolean isChanged = false;
+		
+		for(int i = 0; i < tiles - 1; i++)
+			for(int j = tiles - 1; j > i; j--)
+				if (arr[j] == 0 && arr[j-1] != 0)
+				{
+					arr[j] = arr[j-1];
+					arr[j-1] = 0;
+					
+					// Flag change in array
+					isChanged = true;
+					
+					if (GameTrace.ENABLED)
+						GameTrace.record(GameTrace.EVENT_SHIFT, j - 1, j, arr[j]);
+				}
+		
+		return isChanged;
+	}
+	
+	/**
+	 * Restart game's random number generator, so next numbers' positions only depend on seed.
+	 * @param seed Seed for new numbers' positions.
+	 */
+	public void setSeed(long seed)
+	{
+		random_state = seed != 0 ? seed : 0x9E3779B97F4A7C15L;
+	}
+	
+	/**
+	 * Get state of game's random number generator. Passing it to setSeed() later
+	 * gives the same next numbers' positions again.
+	 * @return Random generator state.
+	 */
+	public long getRandomState()
+	{
+		return random_state;
+	}
+	
+	/**
+	 * Get number of moves that changed grid since game began.
+	 * @return Move count.
+	 */
+	public int getMoveCount()
+	{
+		return move_count;
+	}
+	
+	/**
+	 * Set number of moves played (when restoring a saved game).
+	 * @param move_count Move count.
+	 */
+	public void setMoveCount(int move_count)
+	{
+		this.move_count = move_count;
+	}
+	
+	/**
+	 * Copy another game's state (grid, score, last added number, random generator) into this game,
+	 * without allocating. Both games must have the same number of tiles.
+	 * @param other Game to be copied.
+	 */
+	public void copy_from(Game2048 other)
+	{
+		for (int i = 0; i < tiles; i++)
+			System.arraycopy(other.game_grid[i], 0, game_grid[i], 0, tiles);
+		
+		System.arraycopy(other.empty_rows, 0, empty_rows, 0, tiles);
+		
+		winning_number = other.winning_number;
+		score = other.score;
+		last_num_row = other.last_num_row;
+		last_num_col = other.last_num_col;
+		empty_count = other.empty_count;
+		equal_pairs = other.equal_pairs;
+		max_tile = other.max_tile;
+		isMaxStale = other.isMaxStale;
+		random_state = other.random_state;
+		last_move = other.last_move;
+		move_count = other.move_count;
+		mark_all_changed();
+	}
+	
+	/**
+	 * Begin new game
+	 */
+	public void begin_game()
+	{
+		// Initialize grid by assigning 0s to tiles
+		clear_grid();
+		
+		// Set score to zero
+		score = 0;
+		last_move = 0;
+		move_count = 0;
+		
+		// Add two numbers to begin a new game!
+		insert_new_number();
+		insert_new_number();
+		
+		// Journal and undo history start over from new game.
+		if (journal != null)
+			journal.begin(this);
+		
+		if (history != null)
+		{
+			history.clear();
+			history.record(this);
+		}
+	}
+	
+	/**
+	 * Keep this game's steps for undo and redo, starting from current state.
+	 * History starts over with each new game.
+	 * @param history Undo history for this game's grid dimension, null to turn undo off.
+	 */
+	public void setHistory(GameHistory history)
+	{
+		if (history != null && history.getTiles() != tiles)
+			throw new IllegalArgumentException("History is for " + history.getTiles() + "x" + history.getTiles() + " grids");
+		
+		this.history = history;
+		
+		if (history != null)
+		{
+			history.clear();
+			history.record(this);
+		}
+	}
+	
+	/**
+	 * Go back to state before last move (and its new number).
+	 * @return Flag indicates game went back, false when undo is off or there is nothing to undo.
+	 */
+	public boolean undo()
+	{
+		return history != null && restored(history.undo(this), true);
+	}
+	
+	/**
+	 * Play again last undone move (and its new number).
+	 * @return Flag indicates game went forward, false when undo is off or there is nothing to redo.
+	 */
+	public boolean redo()
+	{
+		return history != null && restored(history.redo(this), false);
+	}
+	
+	/**
+	 * Finish an undo or redo. A restored state isn't a move: journal records it
+	 * as an undo or redo, which replay restores from its own history.
+	 * @param isRestored Flag indicates state was restored from history.
+	 * @param isUndo Flag indicates an undo, false for a redo.
+	 * @return isRestored.
+	 */
+	private boolean restored(boolean isRestored, boolean isUndo)
+	{
+		if (!isRestored)
+			return false;
+		
+		last_move = 0;
+		
+		if (journal != null)
+		{
+			if (isUndo)
+				journal.record_undo();
+			else
+				journal.record_redo();
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Record this game's moves, new numbers, undos and redos into a journal. Journal goes
+	 * on when it ends on current state (a resumed game), else starts over from it; set
+	 * undo history afterwards, as history starts over too. Journal starts over with each new game.
+	 * @param journal Move journal, null to stop recording.
+	 */
+	public void setJournal(MoveJournal journal)
+	{
+		this.journal = journal;
+		
+		if (journal != null)
+			journal.resume(this);
+	}
+	
+	/**
+	 * Get game grid dimension (Default: 4).
+	 * @return Grid dimension. 
+	 */
+	public int getTiles()
+	{
+		return tiles;
+	}
+	
+	/**
+	 * Get game's target number to win (Default: 2048).
+	 * @return Winning number.
+	 */
+	public int getWinningNumber()
+	{
+		return winning_number;
+	}
+	
+	/**	
+	 * Get game grid row
+	 * Row is live game grid, change tiles through set_tile() so empty and changed tiles stay tracked.
+	 * @param Row number.
+	 * @return Grid row.
+	 */
+	public int[] getGameGridRow(int i)
+	{
+		return game_grid[i];
+	}
+	
+	/**
+	 * Get game score
+	 * @return game score.
+	 */
+	public int getScore()
+	{
+		return score;
+	}
+	
+	/**
+	 * Set game score
+	 * @param score New score to be set.
+	 */
+	public void setScore(int score)
+	{
+		this.score = score;
+	}
+	
+	/**
+	 * Get game's best score.
+	 * @return Best score value.
+	 */
+	public int getBestScore()
+	{
+		return best_score;
+	}
+	
+	/**
+	 * Set game's best score.
+	 * @param best_score New best score to be set.
+	 */
+	public void setBestScore(int best_score)
+	{
+		Game2048.best_score = best_score;
+	}
+	
+	/**
+	 * Copy a one-dimensional array
+	 * @param arr1 Source array.
+	 * @param arr2 Destination array.
+	 * @param size Size to be copied starting from first item.
+	 * @param isReverseCopy Choose copy mode: Normal or reversed copy.
+	 */
+	public static void copyArray(int[] arr1, int[] arr2, boolean isReverseCopy)
+	{
+		for(int i=0; i<arr1.length; i++)
+		{
+			if (isReverseCopy)
+				arr2[i] = arr1[arr1.length - i - 1];
+			else
+				arr2[i] = arr1[i];
+		}
+	}
+	
+	/**
+	 * Copy specified column in game grid to array. 
+	 * @param arr Destination array.
+	 * @param j Column number.
+	 * @param isReverseCopy Copy mode: Normal or reversed.
+	 */
+	public void copyFromColumn(int[] arr, int j, boolean isReverseCopy)
+	{
+		for(int i=0; i<tiles; i++)
+		{
+			if (isReverseCopy)
+				arr[i] = game_grid[tiles - i - 1][j];
+			else
+				arr[i] = game_grid[i][j];
+		}
+	}
+	
+	/**
+	 * Copy input array to specified grid column. 
+	 * @param arr Source array.
+	 * @param j Column number.
+	 * @param isReverseCopy Copy mode: Normal or reversed.
+	 */
+	public void copyToColumn(int[] arr, int j, boolean isReverseCopy)
+	{
+		for(int i=0; i<tiles; i++)
+		{
+			if (isReverseCopy)
+				game_grid[tiles - i - 1][j] = arr[i];
+			else
+				game_grid[i][j] = arr[i];
+		}
+	}
+	
+	/**
+	 * Check if any moves on game is possible, to determine if game has reached a dead-end.
+	 * Uses tracked empty tiles and equal neighbor pairs, so grid isn't scanned.
+	 * @return Flag whether there is possible move.
+	 */
+	public boolean isPlayable()
+	{
+		return empty_count > 0 || equal_pairs > 0;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,244 @@
+package com.ssharaf.game_2048;
+
+/**
+ * Undo and redo history of a game, within a fixed memory budget.
+ *
+ * Each step is one compact record in a ring of bytes: tile exponents (one
+ * byte per tile), score, move count, last added number and random generator
+ * state, about 34 bytes for a 4x4 grid. Ring holds as many records as fit in
+ * the budget given to the constructor; once full, recording a step evicts the
+ * oldest one, so history never grows past its budget however long a game is.
+ *
+ * Game2048 records a step when a move starts after the grid changed, so a
+ * step holds a move together with the number added after it. Undo and redo
+ * only move a cursor and copy one record back into the game. Playing a move
+ * after some undos drops the steps that could have been redone. Random state
+ * is restored too, so playing an undone move again adds its new number on the
+ * same tile.
+ *
+ * @author SAMEH SHARAF
+ *
+ */
+
+public class GameHistory
+{
+	// Default memory budget, about 30000 steps of a 4x4 game.
+	public final static int DEFAULT_MEMORY = 1 << 20;
+	
+	// Record layout: tile exponents, then score, move count, last number cell and random state.
+	private final static int FOOTER_SIZE = 4 + 4 + 2 + 8;
+	
+	// Grid dimension.
+	private int tiles;
+	
+	// Record size and number of records ring holds.
+	private int record_size;
+	private int capacity;
+	
+	// Ring of records, record of step n is stored at (n % capacity).
+	private byte[] records;
+	
+	// Oldest kept step, current step and newest step. Steps count up forever, no step is kept while last < first.
+	private long first;
+	private long cursor;
+	private long last;
+	
+	/**
+	 * Constructor for history with default memory budget.
+	 * @param tiles Grid dimension of recorded games.
+	 */
+	public GameHistory(int tiles)
+	{
+		this(tiles, DEFAULT_MEMORY);
+	}
+	
+	/**
+	 * Constructor for game history.
+	 * @param tiles Grid dimension of recorded games.
+	 * @param max_bytes Memory budget, history keeps at least 2 steps.
+	 */
+	public GameHistory(int tiles, int max_bytes)
+	{
+		this.tiles = tiles;
+		this.record_size = tiles * tiles + FOOTER_SIZE;
+		this.capacity = Math.max(2, max_bytes / record_size);
+		this.records = new byte[capacity * record_size];
+		clear();
+	}
+	
+	/**
+	 * Forget all steps.
+	 */
+	public void clear()
+	{
+		first = 0;
+		cursor = -1;
+		last = -1;
+	}
+	
+	/**
+	 * Get grid dimension of recorded games.
+	 * @return Grid dimension.
+	 */
+	public int getTiles()
+	{
+		return tiles;
+	}
+	
+	/**
+	 * Get most steps history can keep.
+	 * @return Number of steps.
+	 */
+	public int getCapacity()
+	{
+		return capacity;
+	}
+	
+	/**
+	 * Get number of steps that can be undone.
+	 * @return Undo count.
+	 */
+	public int getUndoCount()
+	{
+		return cursor < first ? 0 : (int) (cursor - first);
+	}
+	
+	/**
+	 * Get number of steps that can be redone.
+	 * @return Redo count.
+	 */
+	public int getRedoCount()
+	{
+		return (int) (last - cursor);
+	}
+	
+	/**
+	 * Record game's current state as a new step, unless current step already holds it.
+	 * Steps that could have been redone are dropped.
+	 * @param game2048 Recorded game.
+	 */
+	void record(Game2048 game2048)
+	{
+		if (cursor >= first && move_count(cursor) == game2048.getMoveCount())
+			return;
+		
+		last = ++cursor;
+		
+		// Ring is full: evict oldest step.
+		if (last - first >= capacity)
+			first++;
+		
+		int k = (int) (cursor % capacity) * record_size;
+		
+		for (int i = 0; i < tiles; i++)
+			for (int j = 0; j < tiles; j++)
+				records[k++] = (byte) exponent(game2048.get_tile(i, j));
+		
+		k = put_int(k, game2048.getScore());
+		k = put_int(k, game2048.getMoveCount());
+		
+		int cell = game2048.get_last_num_row() * tiles + game2048.get_last_num_col();
+		
+		records[k++] = (byte) (cell >>> 8);
+		records[k++] = (byte) cell;
+		
+		long random_state = game2048.getRandomState();
+		
+		k = put_int(k, (int) (random_state >>> 32));
+		put_int(k, (int) random_state);
+	}
+	
+	/**
+	 * Go back one step.
+	 * @param game2048 Recorded game.
+	 * @return Flag indicates game went back, false when there is nothing to undo.
+	 */
+	boolean undo(Game2048 game2048)
+	{
+		record(game2048);
+		
+		if (cursor <= first)
+			return false;
+		
+		restore(game2048, --cursor);
+		return true;
+	}
+	
+	/**
+	 * Go forward one undone step.
+	 * @param game2048 Recorded game.
+	 * @return Flag indicates game went forward, false when there is nothing to redo.
+	 */
+	boolean redo(Game2048 game2048)
+	{
+		// A move played since last undo already dropped redo steps.
+		record(game2048);
+		
+		if (cursor >= last)
+			return false;
+		
+		restore(game2048, ++cursor);
+		return true;
+	}
+	
+	/**
+	 * Copy a step into game.
+	 * @param game2048 Recorded game.
+	 * @param step Step to be copied.
+	 */
+	private void restore(Game2048 game2048, long step)
+	{
+		int k = (int) (step % capacity) * record_size;
+		
+		game2048.clear_grid();
+		
+		for (int i = 0; i < tiles; i++)
+			for (int j = 0; j < tiles; j++, k++)
+				if (records[k] != 0)
+					game2048.set_tile(i, j, 1 << records[k]);
+		
+		int cell = ((records[k + 8] & 0xFF) << 8) | (records[k + 9] & 0xFF);
+		
+		game2048.setScore(get_int(k));
+		game2048.setMoveCount(get_int(k + 4));
+		game2048.set_last_num(cell / tiles, cell % tiles);
+		game2048.setSeed(((long) get_int(k + 10) << 32) | (get_int(k + 14) & 0xFFFFFFFFL));
+	}
+	
+	/**
+	 * Get move count of a step.
+	 */
+	private int move_count(long step)
+	{
+		return get_int((int) (step % capacity) * record_size + tiles * tiles + 4);
+	}
+	
+	/**
+	 * Store an int (big-endian) into records.
+	 * @return Offset after int.
+	 */
+	private int put_int(int k, int x)
+	{
+		records[k] = (byte) (x >>> 24);
+		records[k + 1] = (byte) (x >>> 16);
+		records[k + 2] = (byte) (x >>> 8);
+		records[k + 3] = (byte) x;
+		return k + 4;
+	}
+	
+	/**
+	 * Read an int (big-endian) from records.
+	 */
+	private int get_int(int k)
+	{
+		return (records[k] << 24) | ((records[k + 1] & 0xFF) << 16) | ((records[k + 2] & 0xFF) << 8) | (records[k + 3] & 0xFF);
+	}
+	
+	/**
+	 * Get exponent of a tile value.
+	 */
+	private static int exponent(int value)
+	{
+		return value == 0 ? 0 : 31 - Integer.numberOfLeadingZeros(value);
+	}
+}
@@ -9,6 +9,15 @@ public class GamePuzzle {
 	private int tiles;
 	private int winning_number;
 	
+	// Empty tiles of each row, bit j set when column j is empty.
+	private int[] empty_rows;
+	
+	// Number of empty tiles.
+	private int empty_count;
+	
+	// Random generator reused for all new numbers.
+	private Random random = new Random();
+	
 	public GamePuzzle()
 	{
 		this(4, 2048);
@@ -21,11 +30,15 @@ public class GamePuzzle {
 	 */
 	public GamePuzzle(int tiles, int winning_number)
 	{
+		if (tiles < 2 || tiles > Game2048.MAX_TILES)
+			throw new IllegalArgumentException("Grid dimension must be 2 to " + Game2048.MAX_TILES + ": " + tiles);
+		
 		this.winning_number = winning_number;
 		this.tiles = tiles;
 
 		// Create new puzzle grid
 		puzzle_grid = new int[tiles][tiles];
+		empty_rows = new int[tiles];
 		
 		// Initialize grid by assigning 0s to tiles
 		clear_grid();
@@ -38,6 +51,20 @@ public class GamePuzzle {
 	
 	public void set_tile(int i, int j, int x)
 	{
+		int old = puzzle_grid[i][j];
+		
+		// Keep empty tiles up to date when a tile gets filled or emptied.
+		if (old == 0 && x != 0)
+		{
+			empty_rows[i] &= ~(1 << j);
+			empty_count--;
+		}
+		else if (old != 0 && x == 0)
+		{
+			empty_rows[i] |= 1 << j;
+			empty_count++;
+		}
+		
 		puzzle_grid[i][j] = x;
 	}
 	
@@ -49,28 +76,52 @@ public class GamePuzzle {
 		for (int i = 0; i < tiles; i++)
 			for (int j = 0; j < tiles; j++)
 				puzzle_grid[i][j] = 0;
+		
+		update_empty();
 	}
 	
 	/**
-	 * Randomly inserting new number to puzzle grid, looking for an empty tile. 
+	 * Rebuild empty tiles from puzzle grid.
+	 * Needed after grid rows are changed in place (merge_ and concat_ on getPuzzleArray() rows).
 	 */
-	public void insert_new_number()
+	public void update_empty()
 	{
-		Random random = new Random();
-		int x = 0;
-		int y = 0;
+		empty_count = 0;
 		
-		// Keep looking for an empty tile until you find it.
-		do
+		for (int i = 0; i < tiles; i++)
 		{
-			x = random.nextInt(tiles);
-			y = random.nextInt(tiles);
-		} 
-		while (puzzle_grid[x][y] != 0);
+			empty_rows[i] = 0;
+			
+			for (int j = 0; j < tiles; j++)
+				if (puzzle_grid[i][j] == 0)
+					empty_rows[i] |= 1 << j;
+			
+			empty_count += Integer.bitCount(empty_rows[i]);
+		}
+	}
+	
+	/**
+	 * Randomly inserting new number to puzzle grid, picking uniformly among empty tiles
+	 * (the k-th one, row by row, as Game2048 does). Does nothing when grid is full.
+	 */
+	public void insert_new_number()
+	{
+		if (empty_count == 0)
+			return;
+		
+		int k = random.nextInt(empty_count);
+		int i = 0;
 		
-		puzzle_grid[x][y] = 2;
+		// Find row holding k-th empty tile, then its column.
+		while (k >= Integer.bitCount(empty_rows[i]))
+			k -= Integer.bitCount(empty_rows[i++]);
 		
-		//System.out.println(x + " " + y);
+		int row = empty_rows[i];
+		
+		for (; k > 0; k--)
+			row &= row - 1;
+		
+		set_tile(i, Integer.numberOfTrailingZeros(row), 2);
 	}
 	
 	public void print_grid()
@@ -103,12 +154,7 @@ public class GamePuzzle {
 	 */
 	public boolean isLost()
 	{
-		for (int i = 0; i < tiles; i++)
-			for (int j = 0; j < tiles; j++)
-				if (puzzle_grid[i][j] == 0)
-					return false;
-		
-		return true;
+		return empty_count == 0;
 	}
 	
 	public void merge_left(int[] arr)
@@ -171,6 +217,11 @@ public class GamePuzzle {
 		return tiles;
 	}
 	
+	/**
+	 * Get puzzle grid row. Row is live puzzle grid: call update_empty() after changing it in place.
+	 * @param i Row number.
+	 * @return Grid row.
+	 */
 	public int[] getPuzzleArray(int i)
 	{
 		return puzzle_grid[i];
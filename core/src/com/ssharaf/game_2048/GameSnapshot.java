@@ -0,0 +1,151 @@
+package com.ssharaf.game_2048;
+
+/**
+ * Immutable copy of a game's state, handed from the thread playing the game
+ * to the threads drawing it.
+ *
+ * @author SAMEH SHARAF
+ *
+ */
+
+public final class GameSnapshot
+{
+	// Game grid dimension and target number.
+	private final int tiles;
+	private final int winning_number;
+	
+	// Grid tiles, stored as (row * tiles + column).
+	private final int[] grid;
+	
+	// Tiles changed since previous snapshot, stored as (row * tiles + column).
+	private final int[] changed_cells;
+	
+	private final int score;
+	private final int best_score;
+	private final int last_num_row;
+	private final int last_num_col;
+	private final int last_move;
+	
+	// Game end, as decided by game flow.
+	private final boolean isLost;
+	private final boolean isWin;
+	
+	/**
+	 * Copy a game's state. Game's changed tiles are moved into snapshot (and cleared from game).
+	 * @param game2048 Game to be copied.
+	 * @param isLost Flag indicates player lost the game.
+	 * @param isWin Flag indicates player won the game.
+	 */
+	public GameSnapshot(Game2048 game2048, boolean isLost, boolean isWin)
+	{
+		this.tiles = game2048.getTiles();
+		this.winning_number = game2048.getWinningNumber();
+		this.grid = new int[tiles * tiles];
+		this.changed_cells = new int[game2048.getChangedCount()];
+		
+		for (int i = 0; i < tiles; i++)
+			for (int j = 0; j < tiles; j++)
+				grid[i * tiles + j] = game2048.get_tile(i, j);
+		
+		for (int k = 0; k < changed_cells.length; k++)
+			changed_cells[k] = game2048.getChangedCell(k);
+		
+		game2048.clear_changes();
+		
+		this.score = game2048.getScore();
+		this.best_score = game2048.getBestScore();
+		this.last_num_row = game2048.get_last_num_row();
+		this.last_num_col = game2048.get_last_num_col();
+		this.last_move = game2048.getLastMove();
+		this.isLost = isLost;
+		this.isWin = isWin;
+	}
+	
+	/**
+	 * Get game grid tile.
+	 * @param i Row number.
+	 * @param j Column number.
+	 * @return Tile value, 0 for empty tile.
+	 */
+	public int get_tile(int i, int j)
+	{
+		return grid[i * tiles + j];
+	}
+	
+	/**
+	 * Copy grid tiles into an array.
+	 * @param target Array of (tiles * tiles) items, filled as (row * tiles + column).
+	 */
+	public void copy_grid(int[] target)
+	{
+		System.arraycopy(grid, 0, target, 0, grid.length);
+	}
+	
+	public int getTiles()
+	{
+		return tiles;
+	}
+	
+	public int getWinningNumber()
+	{
+		return winning_number;
+	}
+	
+	/**
+	 * Get number of tiles changed since previous snapshot.
+	 * @return Changed tiles count.
+	 */
+	public int getChangedCount()
+	{
+		return changed_cells.length;
+	}
+	
+	/**
+	 * Get a changed tile.
+	 * @param k Index of changed tile, between 0 and getChangedCount() - 1.
+	 * @return Tile stored as (row * tiles + column).
+	 */
+	public int getChangedCell(int k)
+	{
+		return changed_cells[k];
+	}
+	
+	public int getScore()
+	{
+		return score;
+	}
+	
+	public int getBestScore()
+	{
+		return best_score;
+	}
+	
+	public int get_last_num_row()
+	{
+		return last_num_row;
+	}
+	
+	public int get_last_num_col()
+	{
+		return last_num_col;
+	}
+	
+	/**
+	 * Get direction of last move that changed game grid.
+	 * @return Move direction, 0 when no tile moved yet.
+	 */
+	public int getLastMove()
+	{
+		return last_move;
+	}
+	
+	public boolean isLost()
+	{
+		return isLost;
+	}
+	
+	public boolean isWin()
+	{
+		return isWin;
+	}
+}
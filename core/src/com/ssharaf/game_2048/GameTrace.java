@@ -0,0 +1,159 @@
+package com.ssharaf.game_2048;
+
+/**
+ * Level-gated tracing for the game engine. Events are recorded as plain
+ * numbers into a fixed-size ring buffer and only formatted when the buffer
+ * is dumped, so tracing a move costs a few array writes.
+ *
+ * Tracing is compiled out unless ENABLED is set to true: every call site is
+ * wrapped in "if (GameTrace.ENABLED)", which the compiler drops entirely
+ * when the flag is false. Meant for debugging only, a single global trace is
+ * shared by all games.
+ *
+ * @author SAMEH SHARAF
+ *
+ */
+
+public final class GameTrace
+{
+	// Compile-time switch for all tracing. Keep false for release builds.
+	public final static boolean ENABLED = false;
+	
+	// Trace levels.
+	public final static int LEVEL_OFF    = 0;
+	public final static int LEVEL_MOVE   = 1;
+	public final static int LEVEL_DETAIL = 2;
+	
+	// Event types, with their (a, b, c) arguments:
+	// move (direction, changed, score), spawn (row, column, value),
+	// merge (index, value, score), shift (from, to, value), dead end (score, 0, 0).
+	public final static int EVENT_MOVE     = 0;
+	public final static int EVENT_SPAWN    = 1;
+	public final static int EVENT_MERGE    = 2;
+	public final static int EVENT_SHIFT    = 3;
+	public final static int EVENT_DEAD_END = 4;
+	
+	// Event names, indexed by event type.
+	private final static String[] EVENT_NAMES = { "move", "spawn", "merge", "shift", "dead end" };
+	
+	// Level each event type is recorded at, indexed by event type.
+	private final static int[] EVENT_LEVELS = { LEVEL_MOVE, LEVEL_MOVE, LEVEL_DETAIL, LEVEL_DETAIL, LEVEL_MOVE };
+	
+	// Number of events kept in ring buffer.
+	private final static int CAPACITY = 256;
+	
+	// Ring buffer, one record of (type, a, b, c) per event.
+	private final static int RECORD_SIZE = 4;
+	private final static int[] events = new int[CAPACITY * RECORD_SIZE];
+	
+	// Total number of events recorded so far.
+	private static long count;
+	
+	// Current trace level.
+	private static int level = LEVEL_MOVE;
+	
+	// Where dumps and grids are written to.
+	private static Sink sink = new Sink()
+	{
+		@Override
+		public void write(String message)
+		{
+			System.out.println(message);
+		}
+	};
+	
+	/**
+	 * Destination of trace output.
+	 */
+	public interface Sink
+	{
+		void write(String message);
+	}
+	
+	private GameTrace()
+	{
+	}
+	
+	/**
+	 * Set current trace level. Events above this level are not recorded.
+	 * @param level New level (LEVEL_OFF, LEVEL_MOVE or LEVEL_DETAIL).
+	 */
+	public static void setLevel(int level)
+	{
+		GameTrace.level = level;
+	}
+	
+	/**
+	 * Set where trace output is written to.
+	 * @param sink New trace sink.
+	 */
+	public static void setSink(Sink sink)
+	{
+		GameTrace.sink = sink;
+	}
+	
+	/**
+	 * Record an event into ring buffer, overwriting the oldest one when full.
+	 * @param type Event type.
+	 * @param a First event argument.
+	 * @param b Second event argument.
+	 * @param c Third event argument.
+	 */
+	public static synchronized void record(int type, int a, int b, int c)
+	{
+		if (EVENT_LEVELS[type] > level)
+			return;
+		
+		int offset = (int) (count++ % CAPACITY) * RECORD_SIZE;
+		
+		events[offset] = type;
+		events[offset + 1] = a;
+		events[offset + 2] = b;
+		events[offset + 3] = c;
+	}
+	
+	/**
+	 * Write all buffered events to trace sink, oldest first.
+	 */
+	public static synchronized void dump()
+	{
+		long first = count > CAPACITY ? count - CAPACITY : 0;
+		
+		sink.write("2048 Game Trace (" + (count - first) + " of " + count + " events):");
+		
+		for (long n = first; n < count; n++)
+		{
+			int offset = (int) (n % CAPACITY) * RECORD_SIZE;
+			
+			sink.write("#" + n + " " + EVENT_NAMES[events[offset]] + " "
+					+ events[offset + 1] + " " + events[offset + 2] + " " + events[offset + 3]);
+		}
+	}
+	
+	/**
+	 * Forget all buffered events.
+	 */
+	public static synchronized void clear()
+	{
+		count = 0;
+	}
+	
+	/**
+	 * Write game grid to trace sink, one line per row.
+	 * @param game2048 Game to be written.
+	 */
+	public static void print_grid(Game2048 game2048)
+	{
+		sink.write("2048 Game Grid:");
+		
+		for (int i = 0; i < game2048.getTiles(); i++)
+		{
+			StringBuilder row = new StringBuilder();
+			
+			for (int j = 0; j < game2048.getTiles(); j++)
+				row.append(game2048.get_tile(i, j)).append(' ');
+			
+			sink.write(row.toString());
+		}
+	}
+}
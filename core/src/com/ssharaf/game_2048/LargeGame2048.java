@@ -0,0 +1,473 @@
+package com.ssharaf.game_2048;
+
+/**
+ * Game engine for big grids, following Game2048 rules. Any grid from 2x2 to
+ * 16x16 plays correctly, but the engine is meant for 8x8 and larger, where
+ * it beats Game2048; smaller grids are better played by Game2048.
+ *
+ * Tiles are stored as exponents (tile value is 2 ^ exponent, 0 for an empty
+ * tile) in one flat byte array, row by row, so a 16x16 grid takes 256 bytes
+ * and tiles never overflow however far a game goes. Score is a long.
+ *
+ * A move walks each line once from the side tiles move to, writing tiles
+ * back in place as it goes and merging each pair at most once, so a move
+ * costs one read and one write per tile. Empty tile count and highest
+ * exponent are updated during that same pass; lost games are only checked
+ * for equal neighbors once the grid is full.
+ *
+ * @author SAMEH SHARAF
+ *
+ */
+
+public class LargeGame2048
+{
+	// Largest grid dimension.
+	public final static int MAX_TILES = 16;
+	
+	// Highest exponent whose tile value still fits in a long.
+	public final static int MAX_VALUE_EXPONENT = 62;
+	
+	// Tile exponents, stored at (row * tiles + column).
+	private byte[] cells;
+	
+	// Grid dimension.
+	private int tiles;
+	
+	// Exponent of game's target tile.
+	private int winning_exponent;
+	
+	// User's score.
+	private long score;
+	
+	// Number of empty tiles.
+	private int empty_count;
+	
+	// Highest exponent on grid.
+	private int max_exponent;
+	
+	// Tile of last added number, stored as (row * tiles + column), -1 before first one.
+	private int last_num;
+	
+	// Number of moves that changed grid since game began.
+	private int move_count;
+	
+	// State of game's random number generator (xorshift64*, never zero).
+	private long random_state;
+	
+	/**
+	 * Constructor for a big game.
+	 * @param tiles Grid dimension, 2 to MAX_TILES.
+	 * @param winning_exponent Exponent of target tile (11 for 2048).
+	 */
+	public LargeGame2048(int tiles, int winning_exponent)
+	{
+		this(tiles, winning_exponent, System.nanoTime());
+	}
+	
+	/**
+	 * Constructor for a big game with a fixed random seed, so the same moves always give the same game.
+	 * @param tiles Grid dimension, 2 to MAX_TILES.
+	 * @param winning_exponent Exponent of target tile (11 for 2048).
+	 * @param seed Seed for new numbers' positions.
+	 */
+	public LargeGame2048(int tiles, int winning_exponent, long seed)
+	{
+		if (tiles < 2 || tiles > MAX_TILES)
+			throw new IllegalArgumentException("Grid dimension must be 2 to " + MAX_TILES + ": " + tiles);
+		
+		this.tiles = tiles;
+		this.winning_exponent = winning_exponent;
+		this.cells = new byte[tiles * tiles];
+		setSeed(seed);
+		
+		// Create new game.
+		begin_game();
+	}
+	
+	/**
+	 * Begin new game.
+	 */
+	public void begin_game()
+	{
+		clear_grid();
+		score = 0;
+		move_count = 0;
+		
+		// Add two numbers to begin a new game!
+		insert_new_number();
+		insert_new_number();
+	}
+	
+	/**
+	 * Empty all tiles.
+	 */
+	public void clear_grid()
+	{
+		for (int cell = 0; cell < cells.length; cell++)
+			cells[cell] = 0;
+		
+		empty_count = cells.length;
+		max_exponent = 0;
+		last_num = -1;
+	}
+	
+	/**
+	 * Get grid dimension.
+	 * @return Grid dimension.
+	 */
+	public int getTiles()
+	{
+		return tiles;
+	}
+	
+	/**
+	 * Get exponent of a tile.
+	 * @param i Row number.
+	 * @param j Column number.
+	 * @return Tile exponent, 0 for an empty tile.
+	 */
+	public int get_exponent(int i, int j)
+	{
+		return cells[i * tiles + j];
+	}
+	
+	/**
+	 * Get value of a tile.
+	 * @param i Row number.
+	 * @param j Column number.
+	 * @return Tile value, 0 for an empty tile. Only exact up to MAX_VALUE_EXPONENT.
+	 */
+	public long get_tile(int i, int j)
+	{
+		int exponent = cells[i * tiles + j];
+		
+		return exponent == 0 ? 0 : 1L << Math.min(exponent, MAX_VALUE_EXPONENT);
+	}
+	
+	/**
+	 * Set exponent of a tile.
+	 * @param i Row number.
+	 * @param j Column number.
+	 * @param exponent Tile exponent, 0 to empty tile.
+	 */
+	public void set_exponent(int i, int j, int exponent)
+	{
+		int cell = i * tiles + j;
+		int old = cells[cell];
+		
+		if (old == exponent)
+			return;
+		
+		if (old == 0)
+			empty_count--;
+		else if (exponent == 0)
+			empty_count++;
+		
+		cells[cell] = (byte) exponent;
+		
+		if (exponent > max_exponent)
+			max_exponent = exponent;
+		else if (old == max_exponent)
+			update_max_exponent();
+	}
+	
+	/**
+	 * Find highest exponent again, after highest tile was overwritten.
+	 */
+	private void update_max_exponent()
+	{
+		max_exponent = 0;
+		
+		for (int cell = 0; cell < cells.length; cell++)
+			if (cells[cell] > max_exponent)
+				max_exponent = cells[cell];
+	}
+	
+	/**
+	 * Get highest exponent on grid.
+	 * @return Highest exponent, 0 for an empty grid.
+	 */
+	public int getMaxExponent()
+	{
+		return max_exponent;
+	}
+	
+	/**
+	 * Get number of empty tiles.
+	 * @return Empty tile count.
+	 */
+	public int getEmptyCount()
+	{
+		return empty_count;
+	}
+	
+	/**
+	 * Get next random number from game's generator.
+	 * @param bound Upper bound (exclusive), must be positive.
+	 * @return Random number between 0 and bound - 1.
+	 */
+	private int next_random(int bound)
+	{
+		random_state ^= random_state >>> 12;
+		random_state ^= random_state << 25;
+		random_state ^= random_state >>> 27;
+		
+		// Scale high 32 bits into bound, avoiding the slow modulo.
+		return (int) (((random_state * 0x2545F4914F6CDD1DL) >>> 32) * bound >>> 32);
+	}
+	
+	/**
+	 * Restart game's random number generator, so next numbers' positions only depend on seed.
+	 * @param seed Seed for new numbers' positions.
+	 */
+	public void setSeed(long seed)
+	{
+		random_state = seed != 0 ? seed : 0x9E3779B97F4A7C15L;
+	}
+	
+	/**
+	 * Randomly insert a new number (2) into an empty tile, picking uniformly among empty tiles.
+	 * Does nothing when grid is full.
+	 */
+	public void insert_new_number()
+	{
+		if (empty_count == 0)
+			return;
+		
+		int skip = next_random(empty_count);
+		
+		for (int cell = 0; cell < cells.length; cell++)
+		{
+			if (cells[cell] != 0 || skip-- > 0)
+				continue;
+			
+			cells[cell] = 1;
+			empty_count--;
+			last_num = cell;
+			
+			if (max_exponent == 0)
+				max_exponent = 1;
+			
+			return;
+		}
+	}
+	
+	public int get_last_num_row()
+	{
+		return last_num < 0 ? -1 : last_num / tiles;
+	}
+	
+	public int get_last_num_col()
+	{
+		return last_num < 0 ? -1 : last_num % tiles;
+	}
+	
+	/**
+	 * Move all tiles towards given direction, combining each pair of identical tiles.
+	 * @param direction Move direction (Game2048.MOVE_UP, MOVE_DOWN, MOVE_LEFT or MOVE_RIGHT).
+	 * @return Flag indicates if any tile moved.
+	 */
+	public boolean move(int direction)
+	{
+		// First tile of line k is the one tiles move to, step walks away from it.
+		int line_step;
+		int step;
+		int first;
+		
+		switch (direction)
+		{
+			case Game2048.MOVE_LEFT :
+				line_step = tiles;
+				step = 1;
+				first = 0;
+				break;
+			case Game2048.MOVE_RIGHT :
+				line_step = tiles;
+				step = -1;
+				first = tiles - 1;
+				break;
+			case Game2048.MOVE_UP :
+				line_step = 1;
+				step = tiles;
+				first = 0;
+				break;
+			case Game2048.MOVE_DOWN :
+				line_step = 1;
+				step = -tiles;
+				first = (tiles - 1) * tiles;
+				break;
+			default :
+				return false;
+		}
+		
+		boolean isChanged = false;
+		
+		for (int k = 0; k < tiles; k++, first += line_step)
+			isChanged = move_line(first, step) || isChanged;
+		
+		if (isChanged)
+			move_count++;
+		
+		return isChanged;
+	}
+	
+	/**
+	 * Slide and merge one line in a single pass. Write position never gets ahead of
+	 * read position, so tiles are written back in place.
+	 * @param first Cell tiles move to.
+	 * @param step Distance between two cells of line, walking away from first.
+	 * @return Flag indicates if line changed.
+	 */
+	private boolean move_line(int first, int step)
+	{
+		boolean isChanged = false;
+		int write = first;
+		
+		// Tile read but not written yet, as it may still merge with next one.
+		int held = 0;
+		
+		for (int k = 0, read = first; k < tiles; k++, read += step)
+		{
+			int exponent = cells[read];
+			
+			if (exponent == 0)
+				continue;
+			
+			if (held == 0)
+			{
+				held = exponent;
+				continue;
+			}
+			
+			if (held == exponent)
+			{
+				// Merge: one tile less, score gains merged tile's value.
+				int merged = exponent + 1;
+				
+				score += 1L << Math.min(merged, MAX_VALUE_EXPONENT);
+				empty_count++;
+				
+				if (merged > max_exponent)
+					max_exponent = merged;
+				
+				isChanged = write(write, merged) || isChanged;
+				held = 0;
+			}
+			else
+			{
+				isChanged = write(write, held) || isChanged;
+				held = exponent;
+			}
+			
+			write += step;
+		}
+		
+		if (held != 0)
+		{
+			isChanged = write(write, held) || isChanged;
+			write += step;
+		}
+		
+		// Empty rest of line.
+		for (int end = first + tiles * step; write != end; write += step)
+			isChanged = write(write, 0) || isChanged;
+		
+		return isChanged;
+	}
+	
+	/**
+	 * Write a tile exponent.
+	 * @return Flag indicates tile changed.
+	 */
+	private boolean write(int cell, int exponent)
+	{
+		if (cells[cell] == exponent)
+			return false;
+		
+		cells[cell] = (byte) exponent;
+		return true;
+	}
+	
+	/**
+	 * Check if player won by reaching target tile.
+	 * @return Flag indicates if player won.
+	 */
+	public boolean isWin()
+	{
+		return max_exponent >= winning_exponent;
+	}
+	
+	/**
+	 * Check if player lost: grid is full and no neighbors are equal.
+	 * @return Flag indicates if player lost the game.
+	 */
+	public boolean isLost()
+	{
+		return !isPlayable();
+	}
+	
+	/**
+	 * Check if any move is possible. Grid is only scanned when it is full.
+	 * @return Flag whether there is possible move.
+	 */
+	public boolean isPlayable()
+	{
+		if (empty_count > 0)
+			return true;
+		
+		for (int i = 0; i < tiles; i++)
+			for (int j = 0; j < tiles; j++)
+			{
+				int cell = i * tiles + j;
+				
+				if ((j + 1 < tiles && cells[cell] == cells[cell + 1])
+						|| (i + 1 < tiles && cells[cell] == cells[cell + tiles]))
+					return true;
+			}
+		
+		return false;
+	}
+	
+	/**
+	 * Copy another game's state into this game, without allocating. Both games must have the same number of tiles.
+	 * @param other Game to be copied.
+	 */
+	public void copy_from(LargeGame2048 other)
+	{
+		System.arraycopy(other.cells, 0, cells, 0, cells.length);
+		winning_exponent = other.winning_exponent;
+		score = other.score;
+		empty_count = other.empty_count;
+		max_exponent = other.max_exponent;
+		last_num = other.last_num;
+		move_count = other.move_count;
+		random_state = other.random_state;
+	}
+	
+	/**
+	 * Get user's score.
+	 * @return Score.
+	 */
+	public long getScore()
+	{
+		return score;
+	}
+	
+	/**
+	 * Get number of moves that changed grid since game began.
+	 * @return Move count.
+	 */
+	public int getMoveCount()
+	{
+		return move_count;
+	}
+	
+	/**
+	 * Get exponent of game's target tile.
+	 * @return Winning exponent.
+	 */
+	public int getWinningExponent()
+	{
+		return winning_exponent;
+	}
+}
@@ -0,0 +1,525 @@
+package com.ssharaf.game_2048;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of a game's moves, for auditing and replaying games.
+ *
+ * Journal file is memory-mapped, so recording a move is a couple of memory
+ * writes. It holds a header, the game's state when it began (SaveGame
+ * format), then one 16-bit entry per move that changed the grid, undo, redo
+ * or resume:
+ *   bits 0-2 direction (1 to 4), or 5 undo, 6 redo, 7 resume (application
+ *   started again on the saved game, undo history starts over),
+ *   bit 3 set when a number was added after the move,
+ *   bits 4-15 tile the number was added to (row * tiles + column).
+ *
+ * Every CHECKPOINT_INTERVAL entries, full game state is also written to a
+ * checkpoint file next to the journal (SaveGame records at fixed offsets),
+ * so replaying up to an entry starts from the closest checkpoint instead of
+ * from the beginning.
+ *
+ * Replay plays moves through Game2048 and adds new numbers with its random
+ * generator, as the recorded game did, checking every move changes the grid
+ * and every new number lands where the journal says. The replayed game thus
+ * goes on exactly as the recorded one, and a journal that doesn't match the
+ * engine is reported instead of silently giving another game.
+ *
+ * A journal holds one whole game: it only starts over (its files are
+ * truncated) on a new game. When attached to a resumed game at application
+ * start, it goes on if it ends on that very game, else it starts over from
+ * the game's current state. Replay undoes and redoes through a GameHistory
+ * with the default budget, as the application's, so undo and redo entries
+ * restore the same steps they did in the recorded game.
+ *
+ * A journal isn't thread-safe: moves may remap it, so flush() must be
+ * called from the thread playing moves or under the same lock (see
+ * GameWorker.flush()).
+ *
+ * @author SAMEH SHARAF
+ *
+ */
+
+public class MoveJournal
+{
+	// File signature ("JRNL") and current format version.
+	public final static int MAGIC = 0x4A524E4C;
+	public final static short VERSION = 2;
+	
+	// Entries between two checkpoints.
+	public final static int CHECKPOINT_INTERVAL = 1024;
+	
+	// Header: magic, version, grid dimension, padding, entry count.
+	private final static int HEADER_SIZE = 4 + 2 + 1 + 1 + 4;
+	private final static int COUNT_OFFSET = 8;
+	
+	// Entries added to journal mapping each time it is full.
+	private final static int GROWTH = 65536;
+	
+	// Entry bits.
+	private final static int DIRECTION_MASK = 0x7;
+	private final static int SPAWN_FLAG = 0x8;
+	private final static int SPAWN_SHIFT = 4;
+	
+	// Entries besides move directions.
+	private final static int ENTRY_UNDO = 5;
+	private final static int ENTRY_REDO = 6;
+	private final static int ENTRY_RESUME = 7;
+	
+	// Suffix of checkpoint file.
+	public final static String CHECKPOINT_SUFFIX = ".ckp";
+	
+	// Journal and checkpoint files.
+	private File journal_file;
+	private RandomAccessFile file;
+	private FileChannel channel;
+	private MappedByteBuffer map;
+	private RandomAccessFile checkpoint_file;
+	
+	// Offset of first entry, and number of entries.
+	private int entries_offset;
+	private int count;
+	
+	// Flag indicates last entry may still get its new number.
+	private boolean isEntryOpen;
+	
+	// Entry count of last written checkpoint.
+	private int last_checkpoint;
+	
+	// Checkpoint encoding buffer and checksum.
+	private ByteBuffer buffer = ByteBuffer.allocate(SaveGame.size(SaveGame.MAX_TILES));
+	private CRC32 crc = new CRC32();
+	
+	/**
+	 * Open journal files. Journal starts once attached to a game (Game2048.setJournal()).
+	 * @param journal_file Journal file, gone on with if it ends on the game it is attached to.
+	 * @throws IOException When files can't be opened.
+	 */
+	public MoveJournal(File journal_file) throws IOException
+	{
+		this.journal_file = journal_file;
+		file = new RandomAccessFile(journal_file, "rw");
+		channel = file.getChannel();
+		checkpoint_file = new RandomAccessFile(checkpoint_file(journal_file), "rw");
+	}
+	
+	/**
+	 * Start journal over from a game's current state. Called on each new game,
+	 * and when journal is attached to a game it doesn't end on.
+	 * @param game2048 Game being recorded.
+	 */
+	void begin(Game2048 game2048)
+	{
+		try
+		{
+			int tiles = game2048.getTiles();
+			
+			entries_offset = HEADER_SIZE + SaveGame.size(tiles);
+			count = 0;
+			isEntryOpen = false;
+			last_checkpoint = 0;
+			
+			file.setLength(0);
+			checkpoint_file.setLength(0);
+			map = channel.map(FileChannel.MapMode.READ_WRITE, 0, entries_offset + 2L * GROWTH);
+			
+			map.putInt(0, MAGIC);
+			map.putShort(4, VERSION);
+			map.put(6, (byte) tiles);
+			map.putInt(COUNT_OFFSET, 0);
+			
+			buffer.clear();
+			SaveGame.write(game2048, buffer, crc);
+			buffer.flip();
+			map.position(HEADER_SIZE);
+			map.put(buffer);
+		}
+		catch (IOException e)
+		{
+			// Journal stops recording, game goes on.
+			map = null;
+		}
+	}
+	
+	/**
+	 * Go on with journal when it ends on a game's current state (a resumed game),
+	 * marking that undo history starts over; else start journal over. Called when
+	 * journal is attached to a game.
+	 * @param game2048 Game being recorded.
+	 */
+	void resume(Game2048 game2048)
+	{
+		try
+		{
+			int tiles = game2048.getTiles();
+			long length = file.length();
+			
+			// Journal is checked by replaying it, from its last checkpoint.
+			if (length > HEADER_SIZE && matches(replay(journal_file, Integer.MAX_VALUE), game2048))
+			{
+				entries_offset = HEADER_SIZE + SaveGame.size(tiles);
+				map = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+				count = map.getInt(COUNT_OFFSET);
+				isEntryOpen = false;
+				last_checkpoint = count - count % CHECKPOINT_INTERVAL;
+				append(ENTRY_RESUME);
+				return;
+			}
+		}
+		catch (IOException e)
+		{
+			// Not a journal of this game, or corrupt: start over.
+		}
+		
+		begin(game2048);
+	}
+	
+	/**
+	 * Check two games hold the same state.
+	 */
+	private static boolean matches(Game2048 a, Game2048 b)
+	{
+		if (a.getTiles() != b.getTiles() || a.getWinningNumber() != b.getWinningNumber() || a.getScore() != b.getScore()
+				|| a.getMoveCount() != b.getMoveCount() || a.getRandomState() != b.getRandomState()
+				|| a.get_last_num_row() != b.get_last_num_row() || a.get_last_num_col() != b.get_last_num_col())
+			return false;
+		
+		for (int i = 0; i < a.getTiles(); i++)
+			for (int j = 0; j < a.getTiles(); j++)
+				if (a.get_tile(i, j) != b.get_tile(i, j))
+					return false;
+		
+		return true;
+	}
+	
+	/**
+	 * Write a checkpoint before a move if one is due.
+	 * @param game2048 Game being recorded, after count entries.
+	 */
+	void before_move(Game2048 game2048)
+	{
+		if (count == 0 || count % CHECKPOINT_INTERVAL != 0 || count == last_checkpoint)
+			return;
+		
+		try
+		{
+			buffer.clear();
+			SaveGame.write(game2048, buffer, crc);
+			buffer.flip();
+			
+			// Checkpoint k holds state after (k + 1) * CHECKPOINT_INTERVAL entries.
+			checkpoint_file.getChannel().write(buffer, (long) (count / CHECKPOINT_INTERVAL - 1) * buffer.limit());
+			last_checkpoint = count;
+		}
+		catch (IOException e)
+		{
+			// Checkpoints only speed replay up, journal stays complete without them.
+		}
+	}
+	
+	/**
+	 * Append a move that changed the grid.
+	 * @param direction Move direction.
+	 */
+	void record_move(int direction)
+	{
+		isEntryOpen = append(direction);
+	}
+	
+	/**
+	 * Append an undo.
+	 */
+	void record_undo()
+	{
+		append(ENTRY_UNDO);
+		isEntryOpen = false;
+	}
+	
+	/**
+	 * Append a redo.
+	 */
+	void record_redo()
+	{
+		append(ENTRY_REDO);
+		isEntryOpen = false;
+	}
+	
+	/**
+	 * Append an entry.
+	 * @param entry Entry bits.
+	 * @return Flag indicates entry was written, false when journal stopped recording.
+	 */
+	private boolean append(int entry)
+	{
+		if (map == null)
+			return false;
+		
+		int offset = entries_offset + 2 * count;
+		
+		if (offset + 2 > map.capacity())
+		{
+			grow();
+			
+			if (map == null)
+				return false;
+		}
+		
+		map.putChar(offset, (char) entry);
+		map.putInt(COUNT_OFFSET, ++count);
+		
+		return true;
+	}
+	
+	/**
+	 * Add new number's tile to last move.
+	 * @param cell Tile stored as (row * tiles + column).
+	 */
+	void record_spawn(int cell)
+	{
+		// Last entry isn't a recorded move (or journal stopped after a file error), nothing to add to.
+		if (!isEntryOpen || map == null)
+			return;
+		
+		int offset = entries_offset + 2 * (count - 1);
+		
+		map.putChar(offset, (char) (map.getChar(offset) | SPAWN_FLAG | (cell << SPAWN_SHIFT)));
+		isEntryOpen = false;
+	}
+	
+	/**
+	 * Extend journal mapping by GROWTH entries.
+	 */
+	private void grow()
+	{
+		try
+		{
+			map = channel.map(FileChannel.MapMode.READ_WRITE, 0, map.capacity() + 2L * GROWTH);
+		}
+		catch (IOException e)
+		{
+			// Journal stops recording, game goes on.
+			map = null;
+			isEntryOpen = false;
+		}
+	}
+	
+	/**
+	 * Check journal is recording: false before it is attached to a game, or after a file error.
+	 * @return Flag indicates moves are being recorded.
+	 */
+	public boolean isRecording()
+	{
+		return map != null;
+	}
+	
+	/**
+	 * Get number of entries in journal (moves, undos, redos and resumes).
+	 * @return Entry count.
+	 */
+	public int getEntryCount()
+	{
+		return count;
+	}
+	
+	/**
+	 * Write journal changes to storage. Must not run while a move is recorded.
+	 */
+	public void flush()
+	{
+		if (map != null)
+			map.force();
+	}
+	
+	/**
+	 * Write journal to storage and close its files. Journal file keeps its mapped size.
+	 * @throws IOException When files can't be closed.
+	 */
+	public void close() throws IOException
+	{
+		flush();
+		map = null;
+		channel.close();
+		file.close();
+		checkpoint_file.close();
+	}
+	
+	/**
+	 * Get checkpoint file of a journal.
+	 */
+	private static File checkpoint_file(File journal_file)
+	{
+		return new File(journal_file.getPath() + CHECKPOINT_SUFFIX);
+	}
+	
+	/**
+	 * Rebuild a recorded game as it was after some entries.
+	 * @param journal_file Journal file.
+	 * @param entries Number of entries to replay, clamped to journal's entry count.
+	 * @return Game after entries.
+	 * @throws IOException When journal can't be read, is corrupt or doesn't match engine.
+	 */
+	public static Game2048 replay(File journal_file, int entries) throws IOException
+	{
+		RandomAccessFile input = new RandomAccessFile(journal_file, "r");
+		
+		try
+		{
+			FileChannel input_channel = input.getChannel();
+			MappedByteBuffer journal = input_channel.map(FileChannel.MapMode.READ_ONLY, 0, input_channel.size());
+			
+			if (journal.capacity() < HEADER_SIZE || journal.getInt(0) != MAGIC)
+				throw new IOException("Not a move journal");
+			
+			if (journal.getShort(4) != VERSION)
+				throw new IOException("Unsupported journal version " + journal.getShort(4));
+			
+			int tiles = journal.get(6);
+			int count = journal.getInt(COUNT_OFFSET);
+			int save_size = SaveGame.size(tiles);
+			int offset = HEADER_SIZE + save_size;
+			
+			if (tiles < 2 || tiles > SaveGame.MAX_TILES || count < 0 || offset + 2L * count > journal.capacity())
+				throw new IOException("Journal is truncated");
+			
+			entries = Math.max(0, Math.min(entries, count));
+			
+			// Start from closest checkpoint, or from game's beginning.
+			ByteBuffer save = ByteBuffer.allocate(save_size);
+			CRC32 crc = new CRC32();
+			
+			ByteBuffer header = journal.duplicate();
+			header.position(HEADER_SIZE);
+			header.limit(offset);
+			save.put(header);
+			save.flip();
+			
+			Game2048 game2048 = SaveGame.read(save, crc);
+			Game2048 checkpoint = read_checkpoint(journal_file, entries / CHECKPOINT_INTERVAL, save, crc);
+			
+			if (checkpoint != null && checkpoint.getTiles() == tiles)
+			{
+				try
+				{
+					return play(journal, offset, checkpoint, entries - entries % CHECKPOINT_INTERVAL, entries);
+				}
+				catch (IOException e)
+				{
+					// Undo history before checkpoint is unknown: an undo reaching past it needs all entries.
+				}
+			}
+			
+			return play(journal, offset, game2048, 0, entries);
+		}
+		finally
+		{
+			input.close();
+		}
+	}
+	
+	/**
+	 * Play journal entries on a game.
+	 * @param journal Mapped journal.
+	 * @param offset Offset of first entry.
+	 * @param game2048 Game as it was after first entries, its undo history starts there.
+	 * @param first First entry played.
+	 * @param last Entry after last one played.
+	 * @return Game after entries, without undo history.
+	 * @throws IOException When an entry doesn't match engine.
+	 */
+	private static Game2048 play(ByteBuffer journal, int offset, Game2048 game2048, int first, int last) throws IOException
+	{
+		int tiles = game2048.getTiles();
+		GameHistory history = new GameHistory(tiles);
+		
+		game2048.setHistory(history);
+		
+		for (int k = first; k < last; k++)
+		{
+			int entry = journal.getChar(offset + 2 * k);
+			int kind = entry & DIRECTION_MASK;
+			
+			if (kind == ENTRY_RESUME)
+			{
+				game2048.setHistory(history);
+				continue;
+			}
+			
+			if (kind == ENTRY_UNDO || kind == ENTRY_REDO)
+			{
+				if (!(kind == ENTRY_UNDO ? game2048.undo() : game2048.redo()))
+					throw new IOException("Journal entry " + k + " has nothing to undo or redo");
+				
+				continue;
+			}
+			
+			if (!game2048.move(kind))
+				throw new IOException("Journal entry " + k + " doesn't move any tile");
+			
+			if ((entry & SPAWN_FLAG) == 0)
+				continue;
+			
+			// Draw new number as the game did, so random generator goes on alike.
+			int cell = entry >>> SPAWN_SHIFT;
+			
+			game2048.insert_new_number();
+			
+			if (cell != game2048.get_last_num_row() * tiles + game2048.get_last_num_col())
+				throw new IOException("Journal diverges from engine at entry " + k);
+		}
+		
+		game2048.setHistory(null);
+		
+		return game2048;
+	}
+	
+	/**
+	 * Read a checkpoint. Checkpoint files start over with their journal, so a valid
+	 * checkpoint at k's offset is the one written after k intervals.
+	 * @param journal_file Journal file.
+	 * @param k Number of checkpoint intervals the checkpoint is after.
+	 * @param save Buffer sized for one save.
+	 * @param crc Checksum.
+	 * @return Game at checkpoint, or null when there's no such (valid) checkpoint.
+	 */
+	private static Game2048 read_checkpoint(File journal_file, int k, ByteBuffer save, CRC32 crc)
+	{
+		File file = checkpoint_file(journal_file);
+		
+		if (k == 0 || !file.exists())
+			return null;
+		
+		try
+		{
+			RandomAccessFile input = new RandomAccessFile(file, "r");
+			
+			try
+			{
+				FileChannel input_channel = input.getChannel();
+				long position = (long) (k - 1) * save.capacity();
+				
+				save.clear();
+				
+				while (save.hasRemaining() && input_channel.read(save, position + save.position()) > 0)
+					;
+				
+				save.flip();
+				
+				return SaveGame.read(save, crc);
+			}
+			finally
+			{
+				input.close();
+			}
+		}
+		catch (IOException e)
+		{
+			return null;
+		}
+	}
+}
@@ -0,0 +1,258 @@
+package com.ssharaf.game_2048;
+
+/**
+ * Precomputed move tables for 4x4 bitboards. A packed row is only 16 bits,
+ * so the result of sliding and merging every possible row is computed once
+ * and a whole move becomes four table lookups. Columns are handled by
+ * transposing the board and moving its rows.
+ *
+ * Moves follow Game2048 rules: tiles slide towards the move direction and
+ * each pair of equal tiles is merged once, starting from the side the tiles
+ * move towards. Tiles of the highest exponent (32768) are never merged
+ * because the result would not fit in a nibble.
+ *
+ * @author SAMEH SHARAF
+ *
+ */
+
+public final class MoveTables
+{
+	// Number of possible packed rows.
+	private final static int ROWS = 1 << 16;
+	
+	// Row after sliding towards its first column.
+	private final static char[] ROW_LEFT = new char[ROWS];
+	
+	// Row after sliding towards its last column.
+	private final static char[] ROW_RIGHT = new char[ROWS];
+	
+	// Score gained by moving a row (same for both directions).
+	private final static int[] ROW_SCORE = new int[ROWS];
+	
+	static
+	{
+		int[] line = new int[BitBoard.TILES];
+		
+		for (int row = 0; row < ROWS; row++)
+		{
+			// Unpack row exponents.
+			for (int j = 0; j < BitBoard.TILES; j++)
+				line[j] = (row >>> (j * 4)) & 0xF;
+			
+			ROW_SCORE[row] = slide_left(line);
+			ROW_LEFT[row] = (char) pack_line(line);
+		}
+		
+		// Moving right is moving the mirrored row left.
+		for (int row = 0; row < ROWS; row++)
+			ROW_RIGHT[row] = (char) reverse_row(ROW_LEFT[reverse_row(row)]);
+	}
+	
+	private MoveTables()
+	{
+	}
+	
+	/**
+	 * Get row after moving it towards its first column.
+	 * @param row Packed row.
+	 * @return Moved row.
+	 */
+	public static int row_left(int row)
+	{
+		return ROW_LEFT[row];
+	}
+	
+	/**
+	 * Get row after moving it towards its last column.
+	 * @param row Packed row.
+	 * @return Moved row.
+	 */
+	public static int row_right(int row)
+	{
+		return ROW_RIGHT[row];
+	}
+	
+	/**
+	 * Get score gained by moving a row in either direction.
+	 * @param row Packed row.
+	 * @return Score delta.
+	 */
+	public static int row_score(int row)
+	{
+		return ROW_SCORE[row];
+	}
+	
+	/**
+	 * Move all tiles left.
+	 * @param board Packed board.
+	 * @return Moved board (equal to input if nothing moved).
+	 */
+	public static long move_left(long board)
+	{
+		return ((long) ROW_LEFT[(int) (board & 0xFFFF)])
+			| ((long) ROW_LEFT[(int) ((board >>> 16) & 0xFFFF)] << 16)
+			| ((long) ROW_LEFT[(int) ((board >>> 32) & 0xFFFF)] << 32)
+			| ((long) ROW_LEFT[(int) (board >>> 48)] << 48);
+	}
+	
+	/**
+	 * Move all tiles right.
+	 * @param board Packed board.
+	 * @return Moved board (equal to input if nothing moved).
+	 */
+	public static long move_right(long board)
+	{
+		return ((long) ROW_RIGHT[(int) (board & 0xFFFF)])
+			| ((long) ROW_RIGHT[(int) ((board >>> 16) & 0xFFFF)] << 16)
+			| ((long) ROW_RIGHT[(int) ((board >>> 32) & 0xFFFF)] << 32)
+			| ((long) ROW_RIGHT[(int) (board >>> 48)] << 48);
+	}
+	
+	/**
+	 * Move all tiles up.
+	 * @param board Packed board.
+	 * @return Moved board (equal to input if nothing moved).
+	 */
+	public static long move_up(long board)
+	{
+		return BitBoard.transpose(move_left(BitBoard.transpose(board)));
+	}
+	
+	/**
+	 * Move all tiles down.
+	 * @param board Packed board.
+	 * @return Moved board (equal to input if nothing moved).
+	 */
+	public static long move_down(long board)
+	{
+		return BitBoard.transpose(move_right(BitBoard.transpose(board)));
+	}
+	
+	/**
+	 * Score gained by a left or right move.
+	 * @param board Packed board before the move.
+	 * @return Score delta.
+	 */
+	public static int score_rows(long board)
+	{
+		return ROW_SCORE[(int) (board & 0xFFFF)]
+			+ ROW_SCORE[(int) ((board >>> 16) & 0xFFFF)]
+			+ ROW_SCORE[(int) ((board >>> 32) & 0xFFFF)]
+			+ ROW_SCORE[(int) (board >>> 48)];
+	}
+	
+	/**
+	 * Score gained by an up or down move.
+	 * @param board Packed board before the move.
+	 * @return Score delta.
+	 */
+	public static int score_columns(long board)
+	{
+		return score_rows(BitBoard.transpose(board));
+	}
+	
+	/**
+	 * Move all tiles towards given direction.
+	 * @param board Packed board.
+	 * @param direction Move direction (Game2048.MOVE_UP, MOVE_DOWN, MOVE_LEFT or MOVE_RIGHT).
+	 * @return Moved board (equal to input if nothing moved or direction is unknown).
+	 */
+	public static long move(long board, int direction)
+	{
+		switch (direction)
+		{
+			case Game2048.MOVE_UP :
+				return move_up(board);
+			case Game2048.MOVE_DOWN :
+				return move_down(board);
+			case Game2048.MOVE_LEFT :
+				return move_left(board);
+			case Game2048.MOVE_RIGHT :
+				return move_right(board);
+			default :
+				return board;
+		}
+	}
+	
+	/**
+	 * Score gained by a move towards given direction.
+	 * @param board Packed board before the move.
+	 * @param direction Move direction.
+	 * @return Score delta (0 if direction is unknown).
+	 */
+	public static int gain(long board, int direction)
+	{
+		switch (direction)
+		{
+			case Game2048.MOVE_UP :
+			case Game2048.MOVE_DOWN :
+				return score_columns(board);
+			case Game2048.MOVE_LEFT :
+			case Game2048.MOVE_RIGHT :
+				return score_rows(board);
+			default :
+				return 0;
+		}
+	}
+	
+	/**
+	 * Slide and merge exponents towards the first item.
+	 * @param line Tile exponents, modified in place.
+	 * @return Score gained.
+	 */
+	private static int slide_left(int[] line)
+	{
+		int score = 0;
+		int target = 0;
+		
+		// Last tile placed that can still be merged, -1 if none.
+		int last = -1;
+		
+		for (int j = 0; j < line.length; j++)
+		{
+			int exponent = line[j];
+			line[j] = 0;
+			
+			if (exponent == 0)
+				continue;
+			
+			if (exponent == last && exponent < BitBoard.MAX_EXPONENT)
+			{
+				line[target - 1] = exponent + 1;
+				score += 1 << (exponent + 1);
+				
+				// Merged tile can't be merged again in same move.
+				last = -1;
+			}
+			else
+			{
+				line[target++] = exponent;
+				last = exponent;
+			}
+		}
+		
+		return score;
+	}
+	
+	/**
+	 * Pack exponents into a row.
+	 */
+	private static int pack_line(int[] line)
+	{
+		int row = 0;
+		
+		for (int j = 0; j < line.length; j++)
+			row |= line[j] << (j * 4);
+		
+		return row;
+	}
+	
+	/**
+	 * Mirror a packed row.
+	 */
+	private static int reverse_row(int row)
+	{
+		return ((row >>> 12) & 0x000F) | ((row >>> 4) & 0x00F0)
+			| ((row << 4) & 0x0F00) | ((row << 12) & 0xF000);
+	}
+}
@@ -0,0 +1,428 @@
+package com.ssharaf.game_2048;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * N-tuple network: a learned value function for 4x4 packed boards.
+ *
+ * Each tuple is a fixed list of tiles. The exponents on its tiles, packed 4
+ * bits each, index a table of weights, and a board's value is the sum of
+ * the weights it indexes. Every tuple is also read on the 7 rotations and
+ * mirror images of the board, so all symmetric boards get the same value.
+ * All tables are kept in one flat float array, table after table.
+ *
+ * Values estimate the score still to be gained from a board after a move
+ * (before its new number). They are learned by temporal difference
+ * (the simulator's NTupleTrainer), and update() is only meant for that.
+ *
+ * File format (little-endian, the byte order of Android devices, so the
+ * mapped weights are read without swapping):
+ *   int magic ("2NTN"), short version, short tuple count,
+ *   for each tuple: byte length, byte tile[length] (row * 4 + column),
+ *   padding to 4 bytes, then float weights of all tables.
+ *
+ * open() memory-maps the weights instead of loading them, so even a large
+ * network is ready at once and takes no heap.
+ *
+ * @author SAMEH SHARAF
+ *
+ */
+
+public class NTupleNetwork
+{
+	// File signature ("2NTN") and current format version.
+	public final static int MAGIC = 0x324E544E;
+	public final static short VERSION = 1;
+	
+	// Number of rotations and mirror images of the board.
+	public final static int SYMMETRIES = 8;
+	
+	// Bits of one tile exponent in a table index.
+	private final static int EXPONENT_BITS = 4;
+	
+	// Straight and square 4-tuples: 5 tables of 64K weights (1.25 MB).
+	public final static int[][] SMALL_TUPLES =
+	{
+		{ 0, 1, 2, 3 }, { 4, 5, 6, 7 }, { 0, 1, 4, 5 }, { 1, 2, 5, 6 }, { 5, 6, 9, 10 }
+	};
+	
+	// Straight and rectangular 6-tuples: 4 tables of 16M weights (256 MB), much stronger.
+	public final static int[][] LARGE_TUPLES =
+	{
+		{ 0, 1, 2, 3, 4, 5 }, { 4, 5, 6, 7, 8, 9 }, { 0, 1, 2, 4, 5, 6 }, { 4, 5, 6, 8, 9, 10 }
+	};
+	
+	// Tiles of each tuple.
+	private int[][] tuples;
+	
+	// Bit shift of each tuple tile in a packed board.
+	private int[][] shifts;
+	
+	// Offset of each tuple's table.
+	private int[] offsets;
+	
+	// Number of weights.
+	private int size;
+	
+	// Weights, on the heap (trained network) or mapped (opened network).
+	private float[] weights;
+	private FloatBuffer mapped;
+	
+	/**
+	 * Constructor for a new network with all weights 0.
+	 * @param tuples Tiles of each tuple (row * 4 + column), up to 7 tiles per tuple.
+	 */
+	public NTupleNetwork(int[][] tuples)
+	{
+		layout(tuples);
+		weights = new float[size];
+	}
+	
+	/**
+	 * Constructor, use open().
+	 */
+	private NTupleNetwork(int[][] tuples, FloatBuffer mapped)
+	{
+		layout(tuples);
+		this.mapped = mapped;
+	}
+	
+	/**
+	 * Compute table offsets and tile shifts of tuples.
+	 */
+	private void layout(int[][] tuples)
+	{
+		this.tuples = tuples;
+		this.shifts = new int[tuples.length][];
+		this.offsets = new int[tuples.length];
+		
+		long total = 0;
+		
+		for (int t = 0; t < tuples.length; t++)
+		{
+			if (tuples[t].length == 0 || tuples[t].length > 7)
+				throw new IllegalArgumentException("Tuple " + t + " must have 1 to 7 tiles");
+			
+			shifts[t] = new int[tuples[t].length];
+			
+			for (int k = 0; k < tuples[t].length; k++)
+			{
+				int cell = tuples[t][k];
+				
+				if (cell < 0 || cell >= BitBoard.TILES * BitBoard.TILES)
+					throw new IllegalArgumentException("Tuple " + t + " has no tile " + cell);
+				
+				shifts[t][k] = cell * EXPONENT_BITS;
+			}
+			
+			offsets[t] = (int) total;
+			total += 1L << (EXPONENT_BITS * tuples[t].length);
+			
+			if (total > Integer.MAX_VALUE)
+				throw new IllegalArgumentException("Network has too many weights");
+		}
+		
+		size = (int) total;
+	}
+	
+	/**
+	 * Memory-map a network file.
+	 * @param file Network file.
+	 * @return Network, with read-only weights.
+	 * @throws IOException When file can't be read or isn't a valid network.
+	 */
+	public static NTupleNetwork open(File file) throws IOException
+	{
+		RandomAccessFile input = new RandomAccessFile(file, "r");
+		
+		try
+		{
+			FileChannel channel = input.getChannel();
+			
+			// Mapping stays valid once file is closed.
+			MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			map.order(ByteOrder.LITTLE_ENDIAN);
+			
+			if (map.capacity() < 8 || map.getInt(0) != MAGIC)
+				throw new IOException("Not an n-tuple network");
+			
+			if (map.getShort(4) != VERSION)
+				throw new IOException("Unsupported n-tuple network version " + map.getShort(4));
+			
+			// Counts are signed: a foreign file could make them negative.
+			int tuple_count = map.getShort(6);
+			
+			if (tuple_count < 0)
+				throw new IOException("Corrupt n-tuple network");
+			
+			int[][] tuples = new int[tuple_count][];
+			int position = 8;
+			
+			for (int t = 0; t < tuples.length; t++)
+			{
+				if (position >= map.capacity())
+					throw new IOException("N-tuple network is truncated");
+				
+				int length = map.get(position++);
+				
+				if (length < 0)
+					throw new IOException("Corrupt n-tuple network");
+				
+				tuples[t] = new int[length];
+				
+				if (position + tuples[t].length > map.capacity())
+					throw new IOException("N-tuple network is truncated");
+				
+				for (int k = 0; k < tuples[t].length; k++)
+					tuples[t][k] = map.get(position++);
+			}
+			
+			position = align(position);
+			
+			if (position > map.capacity())
+				throw new IOException("N-tuple network is truncated");
+			
+			map.position(position);
+			FloatBuffer mapped = map.slice().order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+			NTupleNetwork network;
+			
+			try
+			{
+				network = new NTupleNetwork(tuples, mapped);
+			}
+			catch (IllegalArgumentException e)
+			{
+				throw new IOException("Corrupt n-tuple network: " + e.getMessage());
+			}
+			
+			if (mapped.capacity() != network.size)
+				throw new IOException("N-tuple network is truncated");
+			
+			return network;
+		}
+		finally
+		{
+			input.close();
+		}
+	}
+	
+	/**
+	 * Read a network file into a network with heap weights, to train it further.
+	 * @param file Network file.
+	 * @return Network, with trainable weights.
+	 * @throws IOException When file can't be read or isn't a valid network.
+	 */
+	public static NTupleNetwork load(File file) throws IOException
+	{
+		NTupleNetwork opened = open(file);
+		NTupleNetwork network = new NTupleNetwork(opened.tuples);
+		
+		opened.mapped.get(network.weights);
+		
+		return network;
+	}
+	
+	/**
+	 * Write network file.
+	 * @param file Network file, replaced if it exists.
+	 * @throws IOException When file can't be written.
+	 */
+	public void save(File file) throws IOException
+	{
+		RandomAccessFile output = new RandomAccessFile(file, "rw");
+		
+		try
+		{
+			FileChannel channel = output.getChannel();
+			ByteBuffer buffer = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+			
+			output.setLength(0);
+			buffer.putInt(MAGIC);
+			buffer.putShort(VERSION);
+			buffer.putShort((short) tuples.length);
+			
+			for (int t = 0; t < tuples.length; t++)
+			{
+				buffer.put((byte) tuples[t].length);
+				
+				for (int k = 0; k < tuples[t].length; k++)
+					buffer.put((byte) tuples[t][k]);
+			}
+			
+			while (buffer.position() != align(buffer.position()))
+				buffer.put((byte) 0);
+			
+			for (int w = 0; w < size; w++)
+			{
+				if (buffer.remaining() < 4)
+					drain(buffer, channel);
+				
+				buffer.putFloat(getWeight(w));
+			}
+			
+			drain(buffer, channel);
+		}
+		finally
+		{
+			output.close();
+		}
+	}
+	
+	/**
+	 * Round a file offset up to a float boundary.
+	 */
+	private static int align(int position)
+	{
+		return (position + 3) & ~3;
+	}
+	
+	/**
+	 * Write buffer contents to channel.
+	 */
+	private static void drain(ByteBuffer buffer, FileChannel channel) throws IOException
+	{
+		buffer.flip();
+		
+		while (buffer.hasRemaining())
+			channel.write(buffer);
+		
+		buffer.clear();
+	}
+	
+	/**
+	 * Get value of a board: sum of its weights over all tuples and symmetries.
+	 * @param board Packed board, after a move and before its new number.
+	 * @return Expected score still to be gained.
+	 */
+	public float evaluate(long board)
+	{
+		long flipped = flip(board);
+		long transposed = BitBoard.transpose(board);
+		long transposed_flipped = flip(transposed);
+		
+		return value(board) + value(mirror(board)) + value(flipped) + value(mirror(flipped))
+			+ value(transposed) + value(mirror(transposed)) + value(transposed_flipped) + value(mirror(transposed_flipped));
+	}
+	
+	/**
+	 * Add to every weight a board reads, moving its value by delta * getFeatureCount().
+	 * Trainer threads may update concurrently without locking: a lost update
+	 * only costs a little learning. Weights of an opened network can't be updated.
+	 * @param board Packed board.
+	 * @param delta Change of each weight.
+	 */
+	public void update(long board, float delta)
+	{
+		long flipped = flip(board);
+		long transposed = BitBoard.transpose(board);
+		long transposed_flipped = flip(transposed);
+		
+		add(board, delta);
+		add(mirror(board), delta);
+		add(flipped, delta);
+		add(mirror(flipped), delta);
+		add(transposed, delta);
+		add(mirror(transposed), delta);
+		add(transposed_flipped, delta);
+		add(mirror(transposed_flipped), delta);
+	}
+	
+	/**
+	 * Sum of weights one board reads, without symmetries.
+	 */
+	private float value(long board)
+	{
+		float sum = 0.0f;
+		
+		if (weights != null)
+		{
+			for (int t = 0; t < shifts.length; t++)
+				sum += weights[offsets[t] + index(board, shifts[t])];
+		}
+		else
+		{
+			for (int t = 0; t < shifts.length; t++)
+				sum += mapped.get(offsets[t] + index(board, shifts[t]));
+		}
+		
+		return sum;
+	}
+	
+	/**
+	 * Add delta to weights one board reads, without symmetries.
+	 */
+	private void add(long board, float delta)
+	{
+		if (weights == null)
+			throw new IllegalStateException("Opened n-tuple network is read-only");
+		
+		for (int t = 0; t < shifts.length; t++)
+			weights[offsets[t] + index(board, shifts[t])] += delta;
+	}
+	
+	/**
+	 * Get table index of a tuple: its tile exponents packed 4 bits each, first tile lowest.
+	 */
+	private static int index(long board, int[] tuple_shifts)
+	{
+		int index = 0;
+		
+		for (int k = 0; k < tuple_shifts.length; k++)
+			index |= (int) ((board >>> tuple_shifts[k]) & 0xF) << (k * EXPONENT_BITS);
+		
+		return index;
+	}
+	
+	/**
+	 * Mirror a packed board left to right.
+	 */
+	private static long mirror(long board)
+	{
+		return ((board & 0x000F000F000F000FL) << 12) | ((board & 0x00F000F000F000F0L) << 4)
+			| ((board >>> 4) & 0x00F000F000F000F0L) | ((board >>> 12) & 0x000F000F000F000FL);
+	}
+	
+	/**
+	 * Flip a packed board upside down.
+	 */
+	private static long flip(long board)
+	{
+		return (board << 48) | ((board << 16) & 0x0000FFFF00000000L)
+			| ((board >>> 16) & 0x00000000FFFF0000L) | (board >>> 48);
+	}
+	
+	/**
+	 * Get a weight.
+	 * @param w Weight index.
+	 * @return Weight.
+	 */
+	public float getWeight(int w)
+	{
+		return weights != null ? weights[w] : mapped.get(w);
+	}
+	
+	/**
+	 * Get number of weights a board reads (tuples * symmetries).
+	 * @return Feature count.
+	 */
+	public int getFeatureCount()
+	{
+		return tuples.length * SYMMETRIES;
+	}
+	
+	/**
+	 * Get number of weights.
+	 * @return Network size.
+	 */
+	public int getSize()
+	{
+		return size;
+	}
+}
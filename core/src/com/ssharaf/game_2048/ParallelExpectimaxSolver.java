@@ -0,0 +1,255 @@
+package com.ssharaf.game_2048;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Expectimax player spreading its search over several threads. Each root
+ * move (and optionally each new number position after it) is searched as a
+ * separate task, and tasks share one striped transposition table.
+ *
+ * Tasks are joined in a fixed order and cached values are only reused for
+ * the exact same depth, so with no time budget the chosen move is always the
+ * one ExpectimaxSolver picks at the same depth, whatever the parallelism.
+ *
+ * @author SAMEH SHARAF
+ *
+ */
+
+public class ParallelExpectimaxSolver
+{
+	// Move directions tried at root.
+	private final static int[] MOVES = { Game2048.MOVE_UP, Game2048.MOVE_DOWN, Game2048.MOVE_LEFT, Game2048.MOVE_RIGHT };
+	
+	// Threads running search tasks.
+	private ExecutorService pool;
+	
+	// Time budget per search in nanoseconds, 0 for none.
+	private long time_budget;
+	
+	// Deepest search, in player moves.
+	private int max_depth;
+	
+	// Flag indicates each new number position gets its own task, not only each root move.
+	private boolean isSplittingSpawns;
+	
+	// Cache of searched positions, shared by all tasks.
+	private StripedTranspositionTable table;
+	
+	// Depth reached by last search.
+	private int last_depth;
+	
+	/**
+	 * Search task: value of one root move, or of one new number position after it.
+	 */
+	private static class SearchTask implements Callable<Float>
+	{
+		private ExpectimaxSolver solver;
+		private long board;
+		private int depth;
+		private boolean isChanceNode;
+		private long deadline;
+		private boolean isTimeUp;
+		
+		SearchTask(ExpectimaxSolver solver, long board, int depth, boolean isChanceNode, long deadline)
+		{
+			this.solver = solver;
+			this.board = board;
+			this.depth = depth;
+			this.isChanceNode = isChanceNode;
+			this.deadline = deadline;
+		}
+		
+		@Override
+		public Float call()
+		{
+			solver.begin_search(deadline);
+			
+			float value = isChanceNode ? solver.chance_node(board, depth) : solver.max_node(board, depth);
+			isTimeUp = solver.isTimeUp();
+			
+			return value;
+		}
+	}
+	
+	/**
+	 * Constructor for parallel Expectimax solver.
+	 * @param parallelism Number of search threads.
+	 * @param time_budget_ms Time budget of each search in milliseconds, 0 to always search max_depth moves.
+	 * @param max_depth Deepest search, in player moves.
+	 * @param table_bits Transposition table holds (2 ^ table_bits) entries.
+	 * @param isSplittingSpawns Flag indicates new number positions after each root move are searched as separate tasks.
+	 */
+	public ParallelExpectimaxSolver(int parallelism, int time_budget_ms, int max_depth, int table_bits, boolean isSplittingSpawns)
+	{
+		this.time_budget = time_budget_ms * 1000000L;
+		this.max_depth = max_depth;
+		this.isSplittingSpawns = isSplittingSpawns;
+		this.table = new StripedTranspositionTable(table_bits, Math.min(table_bits, 8));
+		this.pool = Executors.newFixedThreadPool(parallelism, new ThreadFactory()
+		{
+			@Override
+			public Thread newThread(Runnable runnable)
+			{
+				Thread thread = new Thread(runnable, "2048 solver");
+				thread.setDaemon(true);
+				
+				return thread;
+			}
+		});
+	}
+	
+	/**
+	 * Find best move for a game.
+	 * @param game2048 Game to be solved (4x4 only).
+	 * @return Best move direction, or 0 when no move is possible or grid isn't 4x4.
+	 */
+	public int best_move(Game2048 game2048)
+	{
+		if (game2048.getTiles() != BitBoard.TILES)
+			return 0;
+		
+		return best_move(BitBoard.pack(game2048));
+	}
+	
+	/**
+	 * Find best move for a packed board.
+	 * @param board Packed board.
+	 * @return Best move direction, or 0 when no move is possible.
+	 */
+	public int best_move(long board)
+	{
+		long deadline = time_budget > 0 ? System.nanoTime() + time_budget : Long.MAX_VALUE;
+		int best = 0;
+		last_depth = 0;
+		
+		for (int depth = 1; depth <= max_depth; depth++)
+		{
+			int move = search_root(board, depth, deadline);
+			
+			// Search gave up on this level, keep previous one.
+			if (move < 0)
+				break;
+			
+			best = move;
+			last_depth = depth;
+			
+			if (best == 0)
+				break;
+		}
+		
+		if (last_depth == 0)
+			best = ExpectimaxSolver.first_legal_move(board);
+		
+		return best;
+	}
+	
+	/**
+	 * Get depth reached by last search.
+	 * @return Number of player moves searched.
+	 */
+	public int getLastDepth()
+	{
+		return last_depth;
+	}
+	
+	/**
+	 * Stop search threads. Solver can't be used afterwards.
+	 */
+	public void shutdown()
+	{
+		pool.shutdownNow();
+	}
+	
+	/**
+	 * Search all root moves to a given depth, one task per move or per new number position.
+	 * @param board Packed board.
+	 * @param depth Player moves to search.
+	 * @param deadline System.nanoTime() value after which search gives up.
+	 * @return Best move, 0 when no move is possible, -1 when search gave up.
+	 */
+	private int search_root(long board, int depth, long deadline)
+	{
+		List<SearchTask> tasks = new ArrayList<SearchTask>();
+		
+		// Tasks of root move k are tasks[first_task[k]] to tasks[first_task[k + 1] - 1].
+		int[] first_task = new int[MOVES.length + 1];
+		
+		for (int k = 0; k < MOVES.length; k++)
+		{
+			first_task[k] = tasks.size();
+			long moved = MoveTables.move(board, MOVES[k]);
+			
+			if (moved == board)
+				continue;
+			
+			if (isSplittingSpawns && depth > 1)
+			{
+				for (int shift = 0; shift < 64; shift += 4)
+					if (((moved >>> shift) & 0xFL) == 0)
+						tasks.add(new SearchTask(new ExpectimaxSolver(0, max_depth, table), moved | (1L << shift), depth - 1, false, deadline));
+			}
+			else
+				tasks.add(new SearchTask(new ExpectimaxSolver(0, max_depth, table), moved, depth - 1, true, deadline));
+		}
+		
+		first_task[MOVES.length] = tasks.size();
+		
+		float[] values = new float[tasks.size()];
+		
+		try
+		{
+			List<Future<Float>> results = pool.invokeAll(tasks);
+			
+			for (int n = 0; n < values.length; n++)
+			{
+				values[n] = results.get(n).get();
+				
+				if (tasks.get(n).isTimeUp)
+					return -1;
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			return -1;
+		}
+		catch (ExecutionException e)
+		{
+			throw new RuntimeException(e.getCause());
+		}
+		
+		// Join values in move order, so ties always go to the same move.
+		int best = 0;
+		float best_value = -1.0f;
+		
+		for (int k = 0; k < MOVES.length; k++)
+		{
+			int count = first_task[k + 1] - first_task[k];
+			
+			if (count == 0)
+				continue;
+			
+			float sum = 0.0f;
+			
+			for (int n = first_task[k]; n < first_task[k + 1]; n++)
+				sum += values[n];
+			
+			float value = sum / count;
+			
+			if (value > best_value)
+			{
+				best_value = value;
+				best = MOVES[k];
+			}
+		}
+		
+		return best;
+	}
+}
@@ -0,0 +1,234 @@
+package com.ssharaf.game_2048;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * Compact binary save of a game in progress: grid, score, last added number,
+ * random generator state and move count, so a resumed game goes on exactly
+ * as it would have (Game2048 picks new numbers' tiles from grid and random
+ * state alone; see bench's RoundTripCheck).
+ *
+ * Format (big-endian), 49 bytes for a 4x4 grid:
+ *   int magic ("2048"), short version,
+ *   byte tiles, int winning number, int score, int move count,
+ *   long random state, byte last number row, byte last number column,
+ *   one byte per tile (tile exponent, row by row),
+ *   int CRC32 of all previous bytes.
+ *
+ * Files are written through a FileChannel into a temporary file, then
+ * renamed over the save file, so a crash leaves the previous save intact.
+ * The file isn't synced to storage, to keep saving well under a
+ * millisecond; the checksum rejects a save torn by a power loss.
+ *
+ * @author SAMEH SHARAF
+ *
+ */
+
+public class SaveGame
+{
+	// File signature ("2048") and current format version.
+	public final static int MAGIC = 0x32303438;
+	public final static short VERSION = 1;
+	
+	// Bytes before grid, and after it (checksum).
+	private final static int HEADER_SIZE = 4 + 2 + 1 + 4 + 4 + 4 + 8 + 1 + 1;
+	private final static int CHECKSUM_SIZE = 4;
+	
+	// Largest grid dimension a save can hold: any grid Game2048 plays.
+	public final static int MAX_TILES = Game2048.MAX_TILES;
+	
+	// Suffix of temporary file written before replacing save file.
+	private final static String TEMP_SUFFIX = ".tmp";
+	
+	// Reused encoding buffer and checksum.
+	private ByteBuffer buffer = ByteBuffer.allocate(size(MAX_TILES));
+	private CRC32 crc = new CRC32();
+	
+	/**
+	 * Get size of a save.
+	 * @param tiles Grid dimension.
+	 * @return Save size in bytes.
+	 */
+	public static int size(int tiles)
+	{
+		return HEADER_SIZE + tiles * tiles + CHECKSUM_SIZE;
+	}
+	
+	/**
+	 * Encode a game into a buffer, at buffer's position.
+	 * @param game2048 Game to be saved.
+	 * @param buffer Heap buffer with at least size(tiles) bytes remaining.
+	 * @param crc Checksum, reset and used for this save.
+	 */
+	public static void write(Game2048 game2048, ByteBuffer buffer, CRC32 crc)
+	{
+		int start = buffer.position();
+		int tiles = game2048.getTiles();
+		
+		buffer.putInt(MAGIC);
+		buffer.putShort(VERSION);
+		buffer.put((byte) tiles);
+		buffer.putInt(game2048.getWinningNumber());
+		buffer.putInt(game2048.getScore());
+		buffer.putInt(game2048.getMoveCount());
+		buffer.putLong(game2048.getRandomState());
+		buffer.put((byte) game2048.get_last_num_row());
+		buffer.put((byte) game2048.get_last_num_col());
+		
+		for (int i = 0; i < tiles; i++)
+			for (int j = 0; j < tiles; j++)
+			{
+				int x = game2048.get_tile(i, j);
+				buffer.put((byte) (x == 0 ? 0 : Integer.numberOfTrailingZeros(x)));
+			}
+		
+		crc.reset();
+		crc.update(buffer.array(), buffer.arrayOffset() + start, buffer.position() - start);
+		buffer.putInt((int) crc.getValue());
+	}
+	
+	/**
+	 * Decode a game from a buffer, at buffer's position.
+	 * @param buffer Heap buffer holding a save.
+	 * @param crc Checksum, reset and used for this save.
+	 * @return Restored game.
+	 * @throws IOException When save is truncated, corrupt or of an unknown version.
+	 */
+	public static Game2048 read(ByteBuffer buffer, CRC32 crc) throws IOException
+	{
+		int start = buffer.position();
+		
+		if (buffer.remaining() < HEADER_SIZE)
+			throw new IOException("Save is truncated");
+		
+		if (buffer.getInt() != MAGIC)
+			throw new IOException("Not a saved game");
+		
+		short version = buffer.getShort();
+		
+		if (version != VERSION)
+			throw new IOException("Unsupported save version " + version);
+		
+		int tiles = buffer.get();
+		
+		if (tiles < 2 || tiles > MAX_TILES)
+			throw new IOException("Bad grid dimension " + tiles);
+		
+		if (buffer.remaining() < size(tiles) - 7)
+			throw new IOException("Save is truncated");
+		
+		int winning_number = buffer.getInt();
+		int score = buffer.getInt();
+		int move_count = buffer.getInt();
+		long random_state = buffer.getLong();
+		int last_num_row = buffer.get();
+		int last_num_col = buffer.get();
+		int grid_start = buffer.position();
+		
+		// Check whole save before trusting any of it.
+		buffer.position(grid_start + tiles * tiles);
+		crc.reset();
+		crc.update(buffer.array(), buffer.arrayOffset() + start, buffer.position() - start);
+		
+		if (buffer.getInt() != (int) crc.getValue())
+			throw new IOException("Save checksum mismatch");
+		
+		if (last_num_row < 0 || last_num_row >= tiles || last_num_col < 0 || last_num_col >= tiles)
+			throw new IOException("Bad last number position");
+		
+		if (winning_number < 4 || Integer.bitCount(winning_number) != 1)
+			throw new IOException("Bad winning number " + winning_number);
+		
+		Game2048 game2048 = new Game2048(tiles, winning_number);
+		game2048.clear_grid();
+		
+		for (int i = 0; i < tiles; i++)
+			for (int j = 0; j < tiles; j++)
+			{
+				int exponent = buffer.get(grid_start + i * tiles + j);
+				
+				if (exponent < 0 || exponent > 30)
+					throw new IOException("Bad tile exponent " + exponent);
+				
+				game2048.set_tile(i, j, exponent == 0 ? 0 : 1 << exponent);
+			}
+		
+		// Constructor's new numbers used random generator: restore it last.
+		game2048.setSeed(random_state);
+		game2048.setScore(score);
+		game2048.setMoveCount(move_count);
+		game2048.set_last_num(last_num_row, last_num_col);
+		game2048.clear_changes();
+		
+		return game2048;
+	}
+	
+	/**
+	 * Save a game to a file, replacing previous save only once new one is written.
+	 * @param game2048 Game to be saved.
+	 * @param file Save file.
+	 * @throws IOException When file can't be written.
+	 */
+	public void save(Game2048 game2048, File file) throws IOException
+	{
+		buffer.clear();
+		write(game2048, buffer, crc);
+		buffer.flip();
+		
+		File temp = new File(file.getPath() + TEMP_SUFFIX);
+		FileOutputStream stream = new FileOutputStream(temp);
+		
+		try
+		{
+			FileChannel channel = stream.getChannel();
+			
+			while (buffer.hasRemaining())
+				channel.write(buffer);
+		}
+		finally
+		{
+			stream.close();
+		}
+		
+		if (!temp.renameTo(file))
+			throw new IOException("Can't replace " + file);
+	}
+	
+	/**
+	 * Load a game from a file.
+	 * @param file Save file.
+	 * @return Restored game.
+	 * @throws IOException When file can't be read, or isn't a valid save.
+	 */
+	public Game2048 load(File file) throws IOException
+	{
+		FileInputStream stream = new FileInputStream(file);
+		
+		try
+		{
+			FileChannel channel = stream.getChannel();
+			
+			if (channel.size() > buffer.capacity())
+				throw new IOException("Save is too big");
+			
+			buffer.clear();
+			
+			while (buffer.hasRemaining() && channel.read(buffer) >= 0)
+				;
+			
+			buffer.flip();
+			
+			return read(buffer, crc);
+		}
+		finally
+		{
+			stream.close();
+		}
+	}
+}
@@ -0,0 +1,67 @@
+package com.ssharaf.game_2048;
+
+/**
+ * Transposition table shared by several search threads. Entries are split
+ * into stripes of consecutive slots, each guarded by its own lock, so
+ * threads only wait for each other when they touch the same stripe.
+ *
+ * @author SAMEH SHARAF
+ *
+ */
+
+public class StripedTranspositionTable extends TranspositionTable
+{
+	// One lock per stripe.
+	private Object[] locks;
+	
+	// Shift turning an entry index into a stripe number.
+	private int stripe_shift;
+	
+	/**
+	 * Constructor for striped transposition table.
+	 * @param bits Table holds (2 ^ bits) entries.
+	 * @param stripe_bits Table is split into (2 ^ stripe_bits) stripes, at most bits.
+	 */
+	public StripedTranspositionTable(int bits, int stripe_bits)
+	{
+		super(bits);
+		
+		this.locks = new Object[1 << stripe_bits];
+		this.stripe_shift = bits - stripe_bits;
+		
+		for (int k = 0; k < locks.length; k++)
+			locks[k] = new Object();
+	}
+	
+	@Override
+	public float get(long board, int depth)
+	{
+		synchronized (locks[index(board, depth) >>> stripe_shift])
+		{
+			return super.get(board, depth);
+		}
+	}
+	
+	@Override
+	public void put(long board, int depth, float value)
+	{
+		synchronized (locks[index(board, depth) >>> stripe_shift])
+		{
+			super.put(board, depth, value);
+		}
+	}
+	
+	@Override
+	public void clear()
+	{
+		int stripe_size = 1 << stripe_shift;
+		
+		for (int k = 0; k < locks.length; k++)
+		{
+			synchronized (locks[k])
+			{
+				clear(k * stripe_size, (k + 1) * stripe_size);
+			}
+		}
+	}
+}
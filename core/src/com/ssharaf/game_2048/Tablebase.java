@@ -0,0 +1,411 @@
+package com.ssharaf.game_2048;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Perfect play for small games (2x2 and 3x3 grids), read from a tablebase
+ * file built by the simulator's TablebaseBuilder.
+ *
+ * A position is indexed by its tile exponents written in base w, w being
+ * the winning exponent: index = sum of exponent(cell) * w ^ cell. Positions
+ * holding the winning tile are won and not stored. A position and its 7
+ * rotations and mirror images play alike, so only the canonical one (the
+ * lowest index among the 8) is stored, along with its win probability under
+ * optimal play and the move reaching it.
+ *
+ * File format (big-endian):
+ *   int magic ("2TBL"), short version, byte tiles, byte winning exponent,
+ *   long index count (w ^ (tiles * tiles)), int canonical count, int padding,
+ *   int rank[words]: canonical positions before each 64 index block,
+ *   long bitmap[words]: bit set for each canonical index,
+ *   char value[canonical count]: best move in high 3 bits (0 when no move
+ *   is possible), win probability * 8191 in low 13 bits, in index order.
+ *
+ * The file is memory-mapped, so a lookup is a few reads of mapped memory:
+ * canonical index, then its rank from the rank block and a bit count, then
+ * its value. Nothing is loaded on the heap.
+ *
+ * Lookups use scratch state, so a Tablebase is used by one thread at a
+ * time; copy() gives each other thread its own, over the same mapping.
+ *
+ * @author SAMEH SHARAF
+ *
+ */
+
+public class Tablebase
+{
+	// File signature ("2TBL") and current format version.
+	public final static int MAGIC = 0x3254424C;
+	public final static short VERSION = 1;
+	
+	// Header size.
+	public final static int HEADER_SIZE = 4 + 2 + 1 + 1 + 8 + 4 + 4;
+	
+	// Number of rotations and mirror images of a square grid.
+	public final static int SYMMETRIES = 8;
+	
+	// Largest grid dimension a tablebase is built for.
+	public final static int MAX_TILES = 3;
+	
+	// Value bits: probability scale and move shift.
+	public final static int PROBABILITY_SCALE = 8191;
+	public final static int MOVE_SHIFT = 13;
+	
+	// Move direction vectors (row, column), indexed by direction.
+	private final static int[] DIRECTION_ROW = { 0, -1, 1, 0, 0 };
+	private final static int[] DIRECTION_COLUMN = { 0, 0, 0, -1, 1 };
+	
+	// Mapped file.
+	private MappedByteBuffer map;
+	
+	// Grid dimension and winning exponent (index base).
+	private int tiles;
+	private int winning_exponent;
+	
+	// Offsets of rank table, bitmap and values.
+	private int rank_offset;
+	private int bitmap_offset;
+	private int values_offset;
+	
+	// Index weight of each cell under each symmetry.
+	private long[][] weights;
+	
+	// Direction in original grid for each symmetry and direction in transformed grid.
+	private int[][] inverse_moves;
+	
+	// Scratch tile exponents.
+	private int[] exponents;
+	
+	// Value found by last lookup.
+	private int last_value;
+	
+	/**
+	 * Constructor, use open().
+	 */
+	private Tablebase(MappedByteBuffer map) throws IOException
+	{
+		this.map = map;
+		
+		if (map.capacity() < HEADER_SIZE || map.getInt(0) != MAGIC)
+			throw new IOException("Not a tablebase");
+		
+		if (map.getShort(4) != VERSION)
+			throw new IOException("Unsupported tablebase version " + map.getShort(4));
+		
+		tiles = map.get(6);
+		winning_exponent = map.get(7);
+		
+		long index_count = map.getLong(8);
+		int canonical_count = map.getInt(16);
+		
+		if (tiles < 2 || tiles > MAX_TILES || winning_exponent < 2 || index_count != index_count(tiles, winning_exponent))
+			throw new IOException("Corrupt tablebase header");
+		
+		long words = words(index_count);
+		
+		rank_offset = HEADER_SIZE;
+		bitmap_offset = (int) (rank_offset + 4 * words);
+		values_offset = (int) (bitmap_offset + 8 * words);
+		
+		if (values_offset + 2L * canonical_count != map.capacity())
+			throw new IOException("Tablebase is truncated");
+		
+		weights = weights(tiles, winning_exponent);
+		inverse_moves = new int[SYMMETRIES][Game2048.MOVE_RIGHT + 1];
+		exponents = new int[tiles * tiles];
+		
+		int[][] moves = symmetry_moves();
+		
+		for (int s = 0; s < SYMMETRIES; s++)
+			for (int d = Game2048.MOVE_UP; d <= Game2048.MOVE_RIGHT; d++)
+				inverse_moves[s][moves[s][d]] = d;
+	}
+	
+	/**
+	 * Memory-map a tablebase file.
+	 * @param file Tablebase file.
+	 * @return Tablebase.
+	 * @throws IOException When file can't be read or isn't a valid tablebase.
+	 */
+	public static Tablebase open(File file) throws IOException
+	{
+		RandomAccessFile input = new RandomAccessFile(file, "r");
+		
+		try
+		{
+			FileChannel channel = input.getChannel();
+			
+			// Mapping stays valid once file is closed.
+			return new Tablebase(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+		finally
+		{
+			input.close();
+		}
+	}
+	
+	/**
+	 * Get another tablebase reading same mapped file, for use by another thread.
+	 * @return Tablebase copy.
+	 */
+	public Tablebase copy()
+	{
+		try
+		{
+			return new Tablebase(map);
+		}
+		catch (IOException e)
+		{
+			// Mapping was already validated.
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	/**
+	 * Get grid dimension.
+	 * @return Grid dimension.
+	 */
+	public int getTiles()
+	{
+		return tiles;
+	}
+	
+	/**
+	 * Get exponent of target tile.
+	 * @return Winning exponent.
+	 */
+	public int getWinningExponent()
+	{
+		return winning_exponent;
+	}
+	
+	/**
+	 * Check if tablebase was built for a game's grid dimension and target number.
+	 * @param game2048 Game.
+	 * @return Flag indicates lookups work for game.
+	 */
+	public boolean covers(Game2048 game2048)
+	{
+		return game2048.getTiles() == tiles && game2048.getWinningNumber() == 1 << winning_exponent;
+	}
+	
+	/**
+	 * Get optimal move.
+	 * @param game2048 Game covered by tablebase.
+	 * @return Move direction maximizing win probability, 0 when game isn't covered, is over or no move is possible.
+	 */
+	public int best_move(Game2048 game2048)
+	{
+		int symmetry = lookup(game2048);
+		
+		if (symmetry < 0)
+			return 0;
+		
+		int move = last_value >>> MOVE_SHIFT;
+		
+		return move == 0 ? 0 : inverse_moves[symmetry][move];
+	}
+	
+	/**
+	 * Get win probability under optimal play.
+	 * @param game2048 Game covered by tablebase.
+	 * @return Win probability, 1 once game is won, -1 when game isn't covered.
+	 */
+	public float win_probability(Game2048 game2048)
+	{
+		if (covers(game2048) && game2048.isWin())
+			return 1.0f;
+		
+		if (lookup(game2048) < 0)
+			return -1.0f;
+		
+		return (last_value & PROBABILITY_SCALE) / (float) PROBABILITY_SCALE;
+	}
+	
+	/**
+	 * Find a game's canonical position and read its value into last_value.
+	 * @param game2048 Game.
+	 * @return Symmetry turning game into its canonical position, -1 when game isn't covered or is won.
+	 */
+	private int lookup(Game2048 game2048)
+	{
+		if (!covers(game2048))
+			return -1;
+		
+		for (int i = 0; i < tiles; i++)
+			for (int j = 0; j < tiles; j++)
+			{
+				int value = game2048.get_tile(i, j);
+				int exponent = value == 0 ? 0 : Integer.numberOfTrailingZeros(value);
+				
+				if (exponent >= winning_exponent)
+					return -1;
+				
+				exponents[i * tiles + j] = exponent;
+			}
+		
+		long canonical = Long.MAX_VALUE;
+		int symmetry = 0;
+		
+		for (int s = 0; s < SYMMETRIES; s++)
+		{
+			long index = 0;
+			
+			for (int cell = 0; cell < exponents.length; cell++)
+				index += exponents[cell] * weights[s][cell];
+			
+			if (index < canonical)
+			{
+				canonical = index;
+				symmetry = s;
+			}
+		}
+		
+		last_value = map.getChar(values_offset + 2 * rank(canonical));
+		return symmetry;
+	}
+	
+	/**
+	 * Get number of canonical positions before a canonical index.
+	 */
+	private int rank(long index)
+	{
+		int word = (int) (index >>> 6);
+		long bits = map.getLong(bitmap_offset + 8 * word) & ((1L << (index & 63)) - 1);
+		
+		return map.getInt(rank_offset + 4 * word) + Long.bitCount(bits);
+	}
+	
+	/**
+	 * Get number of indexes (positions without winning tile, canonical or not).
+	 * @param tiles Grid dimension.
+	 * @param winning_exponent Exponent of target tile.
+	 * @return winning_exponent ^ (tiles * tiles).
+	 */
+	public static long index_count(int tiles, int winning_exponent)
+	{
+		long count = 1;
+		
+		for (int cell = 0; cell < tiles * tiles; cell++)
+			count *= winning_exponent;
+		
+		return count;
+	}
+	
+	/**
+	 * Get number of 64 index blocks of rank table and bitmap.
+	 * @param index_count Number of indexes.
+	 * @return Number of blocks.
+	 */
+	public static long words(long index_count)
+	{
+		return (index_count + 63) >>> 6;
+	}
+	
+	/**
+	 * Get cell each cell goes to under each symmetry.
+	 * @param tiles Grid dimension.
+	 * @return cells[symmetry][cell], cells stored as (row * tiles + column).
+	 */
+	public static int[][] symmetry_cells(int tiles)
+	{
+		int n = tiles - 1;
+		int[][] cells = new int[SYMMETRIES][tiles * tiles];
+		
+		for (int i = 0; i < tiles; i++)
+			for (int j = 0; j < tiles; j++)
+			{
+				int cell = i * tiles + j;
+				
+				cells[0][cell] = i * tiles + j;
+				cells[1][cell] = j * tiles + (n - i);
+				cells[2][cell] = (n - i) * tiles + (n - j);
+				cells[3][cell] = (n - j) * tiles + i;
+				cells[4][cell] = i * tiles + (n - j);
+				cells[5][cell] = (n - i) * tiles + j;
+				cells[6][cell] = j * tiles + i;
+				cells[7][cell] = (n - j) * tiles + (n - i);
+			}
+		
+		return cells;
+	}
+	
+	/**
+	 * Get direction each direction turns into under each symmetry: moving a grid
+	 * towards d is moving its transformed grid towards moves[symmetry][d].
+	 * @return moves[symmetry][direction].
+	 */
+	public static int[][] symmetry_moves()
+	{
+		int[][] moves = new int[SYMMETRIES][Game2048.MOVE_RIGHT + 1];
+		
+		for (int d = Game2048.MOVE_UP; d <= Game2048.MOVE_RIGHT; d++)
+		{
+			int di = DIRECTION_ROW[d];
+			int dj = DIRECTION_COLUMN[d];
+			
+			// Same linear part as symmetry_cells().
+			moves[0][d] = direction(di, dj);
+			moves[1][d] = direction(dj, -di);
+			moves[2][d] = direction(-di, -dj);
+			moves[3][d] = direction(-dj, di);
+			moves[4][d] = direction(di, -dj);
+			moves[5][d] = direction(-di, dj);
+			moves[6][d] = direction(dj, di);
+			moves[7][d] = direction(-dj, -di);
+		}
+		
+		return moves;
+	}
+	
+	/**
+	 * Get direction of a vector.
+	 */
+	private static int direction(int di, int dj)
+	{
+		for (int d = Game2048.MOVE_UP; d <= Game2048.MOVE_RIGHT; d++)
+			if (DIRECTION_ROW[d] == di && DIRECTION_COLUMN[d] == dj)
+				return d;
+		
+		return 0;
+	}
+	
+	/**
+	 * Get index weight of each cell under each symmetry.
+	 * @param tiles Grid dimension.
+	 * @param winning_exponent Exponent of target tile (index base).
+	 * @return weights[symmetry][cell] = winning_exponent ^ (cell's transformed cell).
+	 */
+	public static long[][] weights(int tiles, int winning_exponent)
+	{
+		int[][] cells = symmetry_cells(tiles);
+		long[] powers = new long[tiles * tiles];
+		long[][] weights = new long[SYMMETRIES][tiles * tiles];
+		
+		powers[0] = 1;
+		
+		for (int cell = 1; cell < powers.length; cell++)
+			powers[cell] = powers[cell - 1] * winning_exponent;
+		
+		for (int s = 0; s < SYMMETRIES; s++)
+			for (int cell = 0; cell < powers.length; cell++)
+				weights[s][cell] = powers[cells[s][cell]];
+		
+		return weights;
+	}
+	
+	/**
+	 * Encode a position's value.
+	 * @param probability Win probability.
+	 * @param move Best move, 0 when no move is possible.
+	 * @return Stored value.
+	 */
+	public static char encode(float probability, int move)
+	{
+		return (char) ((move << MOVE_SHIFT) | Math.round(Math.max(0.0f, Math.min(1.0f, probability)) * PROBABILITY_SCALE));
+	}
+}
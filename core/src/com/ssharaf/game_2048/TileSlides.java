@@ -0,0 +1,98 @@
+package com.ssharaf.game_2048;
+
+/**
+ * Works out where every tile goes in a move, following Game2048 rules:
+ * tiles slide towards move direction, and equal tiles merge pairwise
+ * starting from the side they move to. Used to animate moves, since
+ * Game2048 itself only keeps the grid after each move.
+ *
+ * @author SAMEH SHARAF
+ *
+ */
+
+public final class TileSlides
+{
+	private TileSlides()
+	{
+	}
+	
+	/**
+	 * Move a grid, keeping each tile's destination.
+	 * @param grid Tiles before move, stored as (row * tiles + column).
+	 * @param tiles Grid dimension.
+	 * @param direction Move direction (Game2048.MOVE_UP, MOVE_DOWN, MOVE_LEFT or MOVE_RIGHT).
+	 * @param destinations Filled with each tile's destination (row * tiles + column), -1 for empty tiles.
+	 * @param moved Filled with tiles after move.
+	 * @return Flag indicates if any tile moved.
+	 */
+	public static boolean slide(int[] grid, int tiles, int direction, int[] destinations, int[] moved)
+	{
+		boolean isChanged = false;
+		
+		for (int cell = 0; cell < tiles * tiles; cell++)
+			moved[cell] = 0;
+		
+		for (int k = 0; k < tiles; k++)
+		{
+			// Next free position in line, counted from side tiles move to, and value still able to merge there.
+			int next = 0;
+			int open_value = 0;
+			
+			for (int p = 0; p < tiles; p++)
+			{
+				int cell = line_cell(tiles, direction, k, p);
+				int x = grid[cell];
+				
+				if (x == 0)
+				{
+					destinations[cell] = -1;
+					continue;
+				}
+				
+				int destination;
+				
+				if (x == open_value)
+				{
+					// Merge into previous tile, which then can't merge again.
+					destination = line_cell(tiles, direction, k, next - 1);
+					moved[destination] = x * 2;
+					open_value = 0;
+				}
+				else
+				{
+					destination = line_cell(tiles, direction, k, next++);
+					moved[destination] = x;
+					open_value = x;
+				}
+				
+				destinations[cell] = destination;
+				isChanged = isChanged || destination != cell || moved[destination] != x;
+			}
+		}
+		
+		return isChanged;
+	}
+	
+	/**
+	 * Get tile at a position of a grid line.
+	 * @param tiles Grid dimension.
+	 * @param direction Move direction.
+	 * @param k Line number (row for horizontal moves, column for vertical ones).
+	 * @param p Position in line, counted from side tiles move to.
+	 * @return Tile stored as (row * tiles + column).
+	 */
+	private static int line_cell(int tiles, int direction, int k, int p)
+	{
+		switch (direction)
+		{
+			case Game2048.MOVE_LEFT :
+				return k * tiles + p;
+			case Game2048.MOVE_RIGHT :
+				return k * tiles + (tiles - 1 - p);
+			case Game2048.MOVE_UP :
+				return p * tiles + k;
+			default :
+				return (tiles - 1 - p) * tiles + k;
+		}
+	}
+}
@@ -0,0 +1,102 @@
+package com.ssharaf.game_2048;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-size cache of searched positions for the AI player. Each entry holds
+ * a packed board, the depth it was searched to and its value. Entries are
+ * direct-mapped by a hash of board and depth, a new entry simply replaces
+ * the one in its slot.
+ *
+ * Values are only reused for the exact same depth, so a search gives the
+ * same result whatever order positions were cached in.
+ *
+ * Not thread-safe, see StripedTranspositionTable for sharing one table
+ * between search threads.
+ *
+ * @author SAMEH SHARAF
+ *
+ */
+
+public class TranspositionTable
+{
+	// Entries: board, remaining depth and value.
+	private long[] boards;
+	private byte[] depths;
+	private float[] values;
+	
+	// Mask turning a hash into an entry index.
+	protected int mask;
+	
+	/**
+	 * Constructor for transposition table.
+	 * @param bits Table holds (2 ^ bits) entries.
+	 */
+	public TranspositionTable(int bits)
+	{
+		this.boards = new long[1 << bits];
+		this.depths = new byte[1 << bits];
+		this.values = new float[1 << bits];
+		this.mask = (1 << bits) - 1;
+	}
+	
+	/**
+	 * Look up a position.
+	 * @param board Packed board.
+	 * @param depth Depth the board must have been searched to (1 or more).
+	 * @return Cached value, or NaN when position isn't cached.
+	 */
+	public float get(long board, int depth)
+	{
+		int index = index(board, depth);
+		
+		if (boards[index] == board && depths[index] == depth)
+			return values[index];
+		
+		return Float.NaN;
+	}
+	
+	/**
+	 * Cache a position, replacing whatever was in its slot.
+	 * @param board Packed board.
+	 * @param depth Depth the board was searched to (1 or more).
+	 * @param value Board value.
+	 */
+	public void put(long board, int depth, float value)
+	{
+		int index = index(board, depth);
+		
+		boards[index] = board;
+		depths[index] = (byte) depth;
+		values[index] = value;
+	}
+	
+	/**
+	 * Forget all entries.
+	 */
+	public void clear()
+	{
+		clear(0, boards.length);
+	}
+	
+	/**
+	 * Forget entries of a slot range.
+	 * @param from First slot index.
+	 * @param to Slot index after last one.
+	 */
+	protected void clear(int from, int to)
+	{
+		Arrays.fill(depths, from, to, (byte) 0);
+		Arrays.fill(boards, from, to, 0L);
+	}
+	
+	/**
+	 * Mix board and depth bits into an entry index.
+	 */
+	protected int index(long board, int depth)
+	{
+		long h = (board ^ depth) * 0x9E3779B97F4A7C15L;
+		
+		return (int) (h ^ (h >>> 29)) & mask;
+	}
+}
@@ -0,0 +1,306 @@
+package com.ssharaf.game_2048.sim;
+
+import java.nio.ByteBuffer;
+
+import com.ssharaf.game_2048.BitBoard;
+import com.ssharaf.game_2048.Game2048;
+import com.ssharaf.game_2048.MoveTables;
+
+/**
+ * Flyweight cursor over the games of a GameArena, with Game2048's game
+ * operations. seek() points the cursor at a game; every operation then reads
+ * and writes that game's slot directly, so moving between games costs
+ * nothing and a cursor can be reused for all games of an arena.
+ *
+ * Moves go through MoveTables, so games follow Game2048 rules. New numbers
+ * are placed like Game2048 places them: the same random generator (its
+ * state lives in the slot) picks the k-th empty tile, row by row, so an
+ * arena game and a Game2048 with the same seed spawn alike.
+ *
+ * @author SAMEH SHARAF
+ *
+ */
+
+public final class ArenaGame
+{
+	// Arena being walked.
+	private final GameArena arena;
+	
+	// Slab and byte offset of current game's slot.
+	private ByteBuffer slab;
+	private int offset;
+	
+	// Current game number.
+	private int game;
+	
+	/**
+	 * Constructor, use GameArena.cursor().
+	 */
+	ArenaGame(GameArena arena)
+	{
+		this.arena = arena;
+		seek(0);
+	}
+	
+	/**
+	 * Point cursor at a game.
+	 * @param game Game number.
+	 * @return This cursor.
+	 */
+	public ArenaGame seek(int game)
+	{
+		this.game = game;
+		this.slab = arena.slabs[game >>> GameArena.SLAB_BITS];
+		this.offset = (game & (GameArena.SLAB_GAMES - 1)) * GameArena.SLOT_SIZE;
+		return this;
+	}
+	
+	/**
+	 * Get current game number.
+	 * @return Game number.
+	 */
+	public int getGame()
+	{
+		return game;
+	}
+	
+	/**
+	 * Get current game's packed board (BitBoard layout).
+	 * @return Packed board.
+	 */
+	public long getBoard()
+	{
+		return slab.getLong(offset + GameArena.BOARD);
+	}
+	
+	/**
+	 * Replace current game's board.
+	 * @param board Packed board.
+	 */
+	public void setBoard(long board)
+	{
+		slab.putLong(offset + GameArena.BOARD, board);
+	}
+	
+	/**
+	 * Restart game's random number generator, so next numbers' positions only depend on seed.
+	 * @param seed Seed for new numbers' positions.
+	 */
+	public void setSeed(long seed)
+	{
+		slab.putLong(offset + GameArena.RANDOM, seed != 0 ? seed : 0x9E3779B97F4A7C15L);
+	}
+	
+	/**
+	 * Begin new game: empty board, score and move count reset, two numbers added.
+	 */
+	public void begin_game()
+	{
+		setBoard(0L);
+		slab.putInt(offset + GameArena.SCORE, 0);
+		slab.putInt(offset + GameArena.MOVES, 0);
+		slab.putShort(offset + GameArena.LAST_NUM, (short) -1);
+		
+		insert_new_number();
+		insert_new_number();
+	}
+	
+	/**
+	 * Begin new game with a seed.
+	 * @param seed Seed for new numbers' positions.
+	 */
+	public void begin_game(long seed)
+	{
+		setSeed(seed);
+		begin_game();
+	}
+	
+	/**
+	 * Get next random number from game's generator (xorshift64*, as Game2048).
+	 * @param bound Upper bound (exclusive), must be positive.
+	 * @return Random number between 0 and bound - 1.
+	 */
+	private int next_random(int bound)
+	{
+		long random_state = slab.getLong(offset + GameArena.RANDOM);
+		
+		random_state ^= random_state >>> 12;
+		random_state ^= random_state << 25;
+		random_state ^= random_state >>> 27;
+		slab.putLong(offset + GameArena.RANDOM, random_state);
+		
+		// Scale high 32 bits into bound, avoiding the slow modulo.
+		return (int) (((random_state * 0x2545F4914F6CDD1DL) >>> 32) * bound >>> 32);
+	}
+	
+	/**
+	 * Add a new number (2) to a random empty tile. Does nothing when board is full.
+	 */
+	public void insert_new_number()
+	{
+		long board = getBoard();
+		int empty = BitBoard.count_empty(board);
+		
+		if (empty == 0)
+			return;
+		
+		int skip = next_random(empty);
+		
+		for (int cell = 0; ; cell++)
+		{
+			if (((board >>> (cell * 4)) & 0xFL) != 0 || skip-- > 0)
+				continue;
+			
+			setBoard(board | (1L << (cell * 4)));
+			slab.putShort(offset + GameArena.LAST_NUM, (short) cell);
+			return;
+		}
+	}
+	
+	/**
+	 * Move all tiles towards given direction, combining each pair of identical tiles.
+	 * @param direction Move direction (Game2048.MOVE_UP, MOVE_DOWN, MOVE_LEFT or MOVE_RIGHT).
+	 * @return Flag indicates if any tile moved.
+	 */
+	public boolean move(int direction)
+	{
+		long board = getBoard();
+		long moved = MoveTables.move(board, direction);
+		
+		if (moved == board)
+			return false;
+		
+		setBoard(moved);
+		slab.putInt(offset + GameArena.SCORE, getScore() + MoveTables.gain(board, direction));
+		slab.putInt(offset + GameArena.MOVES, getMoveCount() + 1);
+		
+		return true;
+	}
+	
+	/**
+	 * Check if tiles can move towards given direction, without moving them.
+	 * @param direction Move direction.
+	 * @return Flag indicates if move() would change board.
+	 */
+	public boolean can_move(int direction)
+	{
+		long board = getBoard();
+		
+		return MoveTables.move(board, direction) != board;
+	}
+	
+	/**
+	 * Check if any move is possible: an empty tile, or (on a full board) equal neighbors.
+	 * @return Flag whether there is possible move.
+	 */
+	public boolean isPlayable()
+	{
+		long board = getBoard();
+		
+		return BitBoard.count_empty(board) > 0 || MoveTables.move_left(board) != board || MoveTables.move_up(board) != board;
+	}
+	
+	/**
+	 * Check if player lost the game.
+	 * @return Flag indicates if no move is possible.
+	 */
+	public boolean isLost()
+	{
+		return !isPlayable();
+	}
+	
+	/**
+	 * Check if player reached arena's target number.
+	 * @return Flag indicates if player won.
+	 */
+	public boolean isWin()
+	{
+		return BitBoard.max_exponent(getBoard()) >= arena.getWinningExponent();
+	}
+	
+	/**
+	 * Get a tile value.
+	 * @param i Row number.
+	 * @param j Column number.
+	 * @return Tile value, 0 for an empty tile.
+	 */
+	public int get_tile(int i, int j)
+	{
+		return BitBoard.to_value(BitBoard.get_exponent(getBoard(), i, j));
+	}
+	
+	/**
+	 * Get highest tile value.
+	 * @return Max tile, 0 for an empty board.
+	 */
+	public int getMaxTile()
+	{
+		return BitBoard.to_value(BitBoard.max_exponent(getBoard()));
+	}
+	
+	/**
+	 * Get number of empty tiles.
+	 * @return Empty tile count.
+	 */
+	public int getEmptyCount()
+	{
+		return BitBoard.count_empty(getBoard());
+	}
+	
+	public int get_last_num_row()
+	{
+		int cell = slab.getShort(offset + GameArena.LAST_NUM);
+		
+		return cell < 0 ? -1 : cell / BitBoard.TILES;
+	}
+	
+	public int get_last_num_col()
+	{
+		int cell = slab.getShort(offset + GameArena.LAST_NUM);
+		
+		return cell < 0 ? -1 : cell % BitBoard.TILES;
+	}
+	
+	/**
+	 * Get user's score.
+	 * @return Score.
+	 */
+	public int getScore()
+	{
+		return slab.getInt(offset + GameArena.SCORE);
+	}
+	
+	/**
+	 * Get number of moves that changed board since game began.
+	 * @return Move count.
+	 */
+	public int getMoveCount()
+	{
+		return slab.getInt(offset + GameArena.MOVES);
+	}
+	
+	/**
+	 * Copy current game into a 4x4 Game2048 (grid, score, move count, last added number).
+	 * @param game2048 Destination game.
+	 */
+	public void copy_to(Game2048 game2048)
+	{
+		BitBoard.unpack(getBoard(), game2048);
+		game2048.setScore(getScore());
+		game2048.setMoveCount(getMoveCount());
+		game2048.set_last_num(get_last_num_row(), get_last_num_col());
+	}
+	
+	/**
+	 * Copy a 4x4 Game2048 into current game (grid, score, move count, last added number, random state).
+	 * @param game2048 Game to be copied.
+	 */
+	public void copy_from(Game2048 game2048)
+	{
+		setBoard(BitBoard.pack(game2048));
+		slab.putInt(offset + GameArena.SCORE, game2048.getScore());
+		slab.putInt(offset + GameArena.MOVES, game2048.getMoveCount());
+		slab.putShort(offset + GameArena.LAST_NUM, (short) (game2048.get_last_num_row() * BitBoard.TILES + game2048.get_last_num_col()));
+		setSeed(game2048.getRandomState());
+	}
+}
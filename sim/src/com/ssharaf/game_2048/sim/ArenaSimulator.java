@@ -0,0 +1,200 @@
+package com.ssharaf.game_2048.sim;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.ssharaf.game_2048.Game2048;
+
+/**
+ * Keeps millions of 4x4 games alive at once in a GameArena and plays them
+ * in rounds: each round, every game plays one random legal move and gets a
+ * new number. Finished games (won or lost) begin again, so the number of
+ * live games stays constant. Reports moves per second, memory and GC time
+ * per round, to check that GC cost doesn't grow with the number of games.
+ *
+ * Moves only depend on seed, game number and round, so results don't depend
+ * on the number of threads.
+ *
+ * Usage: ArenaSimulator [games] [rounds] [threads] [winning number] [seed]
+ *
+ * @author SAMEH SHARAF
+ *
+ */
+
+public class ArenaSimulator
+{
+	// Move directions, tried in turn from a random one.
+	private final static int[] MOVES = { Game2048.MOVE_UP, Game2048.MOVE_DOWN, Game2048.MOVE_LEFT, Game2048.MOVE_RIGHT };
+	
+	// Live games.
+	private GameArena arena;
+	
+	// Number of simulation threads.
+	private int threads;
+	
+	// Seed all games' moves derive from.
+	private long seed;
+	
+	// Rounds played.
+	private int round;
+	
+	/**
+	 * Constructor for arena simulator, all games begun.
+	 * @param games Number of live games.
+	 * @param threads Number of simulation threads.
+	 * @param winning_number Target number ending a game as a win.
+	 * @param seed Seed all games' moves derive from.
+	 */
+	public ArenaSimulator(int games, int threads, int winning_number, long seed)
+	{
+		this.arena = new GameArena(games, winning_number);
+		this.threads = threads;
+		this.seed = seed;
+		
+		ArenaGame game = arena.cursor();
+		
+		for (int n = 0; n < games; n++)
+			game.seek(n).begin_game(Simulator.mix(seed + n));
+	}
+	
+	/**
+	 * Get arena holding live games.
+	 * @return Game arena.
+	 */
+	public GameArena getArena()
+	{
+		return arena;
+	}
+	
+	/**
+	 * Play one move on every game, beginning again games that end.
+	 * @return Number of games that ended this round.
+	 */
+	public long play_round()
+	{
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		List<Future<Long>> results = new ArrayList<Future<Long>>();
+		final int games = arena.getSize();
+		final long round_seed = Simulator.mix(seed ^ (++round * 0x9E3779B97F4A7C15L));
+		
+		for (int t = 0; t < threads; t++)
+		{
+			final int first = (int) ((long) games * t / threads);
+			final int last = (int) ((long) games * (t + 1) / threads);
+			
+			results.add(pool.submit(new Callable<Long>()
+			{
+				@Override
+				public Long call()
+				{
+					ArenaGame game = arena.cursor();
+					long ended = 0;
+					
+					for (int n = first; n < last; n++)
+						if (play_move(game.seek(n), (int) Simulator.mix(round_seed + n)))
+							ended++;
+					
+					return ended;
+				}
+			}));
+		}
+		
+		long ended = 0;
+		
+		try
+		{
+			for (Future<Long> result : results)
+				ended += result.get();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		catch (ExecutionException e)
+		{
+			throw new RuntimeException(e.getCause());
+		}
+		finally
+		{
+			pool.shutdownNow();
+		}
+		
+		return ended;
+	}
+	
+	/**
+	 * Play a random legal move on a game and add a new number, or begin it again once it is over.
+	 * @param game Cursor on game.
+	 * @param random Random bits choosing first direction tried.
+	 * @return Flag indicates game ended.
+	 */
+	private static boolean play_move(ArenaGame game, int random)
+	{
+		for (int k = 0; k < MOVES.length; k++)
+		{
+			if (!game.move(MOVES[(random + k) & 3]))
+				continue;
+			
+			game.insert_new_number();
+			
+			if (!game.isWin() && game.isPlayable())
+				return false;
+			
+			break;
+		}
+		
+		// Game over (or stuck): begin again, its random generator goes on.
+		game.begin_game();
+		return true;
+	}
+	
+	/**
+	 * Get total time spent in GC so far.
+	 * @return Milliseconds.
+	 */
+	private static long gc_time()
+	{
+		long time = 0;
+		
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+			time += Math.max(0, gc.getCollectionTime());
+		
+		return time;
+	}
+	
+	public static void main(String[] args)
+	{
+		int games = args.length > 0 ? Integer.parseInt(args[0]) : 10000000;
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+		int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		int winning_number = args.length > 3 ? Integer.parseInt(args[3]) : 2048;
+		long seed = args.length > 4 ? Long.parseLong(args[4]) : 2048;
+		
+		long start = System.nanoTime();
+		ArenaSimulator simulator = new ArenaSimulator(games, threads, winning_number, seed);
+		Runtime runtime = Runtime.getRuntime();
+		
+		System.out.println("Began " + games + " live games to " + winning_number + " in "
+				+ (System.nanoTime() - start) / 1000000 + " ms, " + simulator.getArena().getMemorySize() / (1024 * 1024)
+				+ " MB off heap, " + threads + " threads");
+		
+		for (int r = 1; r <= rounds; r++)
+		{
+			long gc_before = gc_time();
+			long round_start = System.nanoTime();
+			long ended = simulator.play_round();
+			long elapsed = System.nanoTime() - round_start;
+			
+			System.out.printf("Round %d: %.1f M moves/s, %d games ended, heap %d MB, GC %d ms%n", r,
+					games * 1000.0 / elapsed, ended, (runtime.totalMemory() - runtime.freeMemory()) / (1024 * 1024),
+					gc_time() - gc_before);
+		}
+	}
+}
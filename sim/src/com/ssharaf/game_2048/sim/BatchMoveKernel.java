@@ -0,0 +1,195 @@
+package com.ssharaf.game_2048.sim;
+
+import com.ssharaf.game_2048.BitBoard;
+import com.ssharaf.game_2048.Game2048;
+
+/**
+ * Applies one move direction to every board of a BoardBatch, following
+ * Game2048 rules: tiles slide towards the move, and each pair of equal
+ * tiles merges once, starting from the side tiles move to.
+ *
+ * A line is always four cells of one board, but in a BoardBatch the same
+ * line of consecutive boards is contiguous, so the vector kernel moves one
+ * line of many boards per instruction without any shuffle. Its code is
+ * branch-free: empty tiles are squeezed out with three masked sweeps, then
+ * three masked merge steps combine pairs.
+ *
+ * create() picks the vector kernel when the jdk.incubator.vector module is
+ * present (java --add-modules jdk.incubator.vector), and otherwise the
+ * scalar kernel, which runs the same steps one board at a time.
+ *
+ * @author SAMEH SHARAF
+ *
+ */
+
+public abstract class BatchMoveKernel
+{
+	// Class of vector kernel, only loaded when its module is present.
+	private final static String VECTOR_KERNEL = "com.ssharaf.game_2048.sim.VectorBatchKernel";
+	
+	// Cells of each line for each direction, first cell being the one tiles move to: LINES[direction][line][position].
+	final static int[][][] LINES = new int[Game2048.MOVE_RIGHT + 1][BitBoard.TILES][BitBoard.TILES];
+	
+	static
+	{
+		for (int k = 0; k < BitBoard.TILES; k++)
+			for (int p = 0; p < BitBoard.TILES; p++)
+			{
+				int last = BitBoard.TILES - 1 - p;
+				
+				LINES[Game2048.MOVE_LEFT][k][p] = k * BitBoard.TILES + p;
+				LINES[Game2048.MOVE_RIGHT][k][p] = k * BitBoard.TILES + last;
+				LINES[Game2048.MOVE_UP][k][p] = p * BitBoard.TILES + k;
+				LINES[Game2048.MOVE_DOWN][k][p] = last * BitBoard.TILES + k;
+			}
+	}
+	
+	/**
+	 * Create fastest kernel available on this JVM.
+	 * @return Vector kernel, or scalar kernel when Vector API isn't available.
+	 */
+	public static BatchMoveKernel create()
+	{
+		if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent())
+		{
+			try
+			{
+				return (BatchMoveKernel) Class.forName(VECTOR_KERNEL).getDeclaredConstructor().newInstance();
+			}
+			catch (ReflectiveOperationException | LinkageError e)
+			{
+				// Fall back to scalar kernel.
+			}
+		}
+		
+		return scalar();
+	}
+	
+	/**
+	 * Create scalar kernel.
+	 * @return Kernel moving one board at a time.
+	 */
+	public static BatchMoveKernel scalar()
+	{
+		return new BatchMoveKernel()
+		{
+			@Override
+			public int move(BoardBatch batch, int direction)
+			{
+				return move_boards(batch, direction, 0);
+			}
+			
+			@Override
+			public String getName()
+			{
+				return "scalar";
+			}
+		};
+	}
+	
+	/**
+	 * Move every board of a batch towards a direction, adding merges to scores and
+	 * setting each board's changed flag.
+	 * @param batch Boards to be moved.
+	 * @param direction Move direction (Game2048.MOVE_UP .. MOVE_RIGHT).
+	 * @return Number of boards that changed.
+	 */
+	public abstract int move(BoardBatch batch, int direction);
+	
+	/**
+	 * Get kernel name, for reports.
+	 * @return "vector" or "scalar".
+	 */
+	public abstract String getName();
+	
+	/**
+	 * Move boards one at a time, from a given board to end of batch.
+	 * @param batch Boards to be moved.
+	 * @param direction Move direction.
+	 * @param from First board to move.
+	 * @return Number of boards that changed.
+	 */
+	static int move_boards(BoardBatch batch, int direction, int from)
+	{
+		int[][] lines = LINES[direction];
+		int[] cells = batch.cells;
+		int size = batch.size;
+		int count = 0;
+		
+		for (int b = from; b < size; b++)
+		{
+			boolean isChanged = false;
+			int gain = 0;
+			
+			for (int k = 0; k < BitBoard.TILES; k++)
+			{
+				int i0 = lines[k][0] * size + b;
+				int i1 = lines[k][1] * size + b;
+				int i2 = lines[k][2] * size + b;
+				int i3 = lines[k][3] * size + b;
+				int a0 = cells[i0], a1 = cells[i1], a2 = cells[i2], a3 = cells[i3];
+				int x0 = a0, x1 = a1, x2 = a2, x3 = a3;
+				
+				// Squeeze out empty tiles, three sweeps move a tile across the whole line.
+				for (int sweep = 0; sweep < BitBoard.TILES - 1; sweep++)
+				{
+					if (x0 == 0)
+					{
+						x0 = x1;
+						x1 = 0;
+					}
+					if (x1 == 0)
+					{
+						x1 = x2;
+						x2 = 0;
+					}
+					if (x2 == 0)
+					{
+						x2 = x3;
+						x3 = 0;
+					}
+				}
+				
+				// Merge pairs, starting from the side tiles move to.
+				if (x0 != 0 && x0 == x1)
+				{
+					x0++;
+					gain += 1 << x0;
+					x1 = x2;
+					x2 = x3;
+					x3 = 0;
+				}
+				if (x1 != 0 && x1 == x2)
+				{
+					x1++;
+					gain += 1 << x1;
+					x2 = x3;
+					x3 = 0;
+				}
+				if (x2 != 0 && x2 == x3)
+				{
+					x2++;
+					gain += 1 << x2;
+					x3 = 0;
+				}
+				
+				if (x0 != a0 || x1 != a1 || x2 != a2 || x3 != a3)
+				{
+					cells[i0] = x0;
+					cells[i1] = x1;
+					cells[i2] = x2;
+					cells[i3] = x3;
+					isChanged = true;
+				}
+			}
+			
+			batch.scores[b] += gain;
+			batch.changed[b] = isChanged ? 1 : 0;
+			
+			if (isChanged)
+				count++;
+		}
+		
+		return count;
+	}
+}
@@ -0,0 +1,151 @@
+package com.ssharaf.game_2048.sim;
+
+import com.ssharaf.game_2048.BitBoard;
+import com.ssharaf.game_2048.Game2048;
+
+/**
+ * Batch of independent 4x4 boards stored structure-of-arrays, for moving
+ * thousands of boards at once with BatchMoveKernel.
+ *
+ * Cell c (row * 4 + column) of board b is cells[c * size + b], so one cell of
+ * consecutive boards is contiguous and a vector load reads that cell of many
+ * boards. Cells hold exponents (0 for an empty tile) as ints; each board also
+ * has a score and a flag telling if the last batch move changed it.
+ *
+ * @author SAMEH SHARAF
+ *
+ */
+
+public final class BoardBatch
+{
+	// Cells of a board.
+	public final static int CELLS = BitBoard.TILES * BitBoard.TILES;
+	
+	// Number of boards.
+	final int size;
+	
+	// Exponents, cell major: cells[c * size + b].
+	final int[] cells;
+	
+	// Score of each board.
+	final int[] scores;
+	
+	// 1 when last batch move changed board, else 0.
+	final int[] changed;
+	
+	/**
+	 * Constructor for an empty batch.
+	 * @param size Number of boards.
+	 */
+	public BoardBatch(int size)
+	{
+		this.size = size;
+		this.cells = new int[CELLS * size];
+		this.scores = new int[size];
+		this.changed = new int[size];
+	}
+	
+	/**
+	 * Get number of boards.
+	 * @return Batch size.
+	 */
+	public int getSize()
+	{
+		return size;
+	}
+	
+	/**
+	 * Store a packed board (BitBoard layout) and its score.
+	 * @param board Board number.
+	 * @param packed Packed board.
+	 * @param score Board's score.
+	 */
+	public void set(int board, long packed, int score)
+	{
+		for (int c = 0; c < CELLS; c++)
+			cells[c * size + board] = (int) ((packed >>> (c * 4)) & 0xF);
+		
+		scores[board] = score;
+		changed[board] = 0;
+	}
+	
+	/**
+	 * Store a game's board and score.
+	 * @param board Board number.
+	 * @param game2048 4x4 game.
+	 */
+	public void set(int board, Game2048 game2048)
+	{
+		set(board, BitBoard.pack(game2048), game2048.getScore());
+	}
+	
+	/**
+	 * Get a board packed in BitBoard layout (exponents above 15 are cut to 4 bits).
+	 * @param board Board number.
+	 * @return Packed board.
+	 */
+	public long get(int board)
+	{
+		long packed = 0;
+		
+		for (int c = 0; c < CELLS; c++)
+			packed |= (long) (cells[c * size + board] & 0xF) << (c * 4);
+		
+		return packed;
+	}
+	
+	/**
+	 * Copy boards, scores and changed flags of another batch of the same size.
+	 * @param other Batch to be copied.
+	 */
+	public void copy_from(BoardBatch other)
+	{
+		System.arraycopy(other.cells, 0, cells, 0, cells.length);
+		System.arraycopy(other.scores, 0, scores, 0, size);
+		System.arraycopy(other.changed, 0, changed, 0, size);
+	}
+	
+	/**
+	 * Get a tile exponent.
+	 * @param board Board number.
+	 * @param i Row number.
+	 * @param j Column number.
+	 * @return Exponent, 0 for an empty tile.
+	 */
+	public int get_exponent(int board, int i, int j)
+	{
+		return cells[(i * BitBoard.TILES + j) * size + board];
+	}
+	
+	/**
+	 * Set a tile exponent (to add new numbers between moves).
+	 * @param board Board number.
+	 * @param i Row number.
+	 * @param j Column number.
+	 * @param exponent Exponent, 0 to empty tile.
+	 */
+	public void set_exponent(int board, int i, int j, int exponent)
+	{
+		cells[(i * BitBoard.TILES + j) * size + board] = exponent;
+	}
+	
+	/**
+	 * Get a board's score.
+	 * @param board Board number.
+	 * @return Score.
+	 */
+	public int getScore(int board)
+	{
+		return scores[board];
+	}
+	
+	/**
+	 * Check if last batch move changed a board.
+	 * @param board Board number.
+	 * @return Flag indicates board changed.
+	 */
+	public boolean isChanged(int board)
+	{
+		return changed[board] != 0;
+	}
+}
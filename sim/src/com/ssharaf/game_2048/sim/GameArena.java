@@ -0,0 +1,111 @@
+package com.ssharaf.game_2048.sim;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import com.ssharaf.game_2048.BitBoard;
+
+/**
+ * Off-heap storage for millions of 4x4 games in fixed-width slots.
+ *
+ * A Game2048 object costs a few hundred bytes of heap (nested grid, empty
+ * tile and change tracking arrays) and every one is an object the GC has to
+ * trace. An arena slot is 32 bytes of direct memory holding only what a game
+ * needs: packed board (BitBoard layout), random generator state, score, move
+ * count and last added number. The heap holds a handful of slab buffers, so
+ * GC work doesn't grow with the number of games.
+ *
+ * Slabs hold SLAB_GAMES slots each, so an arena isn't limited by the 2 GB
+ * size of a single ByteBuffer. Games are played through an ArenaGame cursor.
+ *
+ * Slot layout (native byte order):
+ *   long board, long random state, int score, int move count,
+ *   short last added number (row * 4 + column, -1 before first one), 6 bytes padding.
+ *
+ * @author SAMEH SHARAF
+ *
+ */
+
+public final class GameArena
+{
+	// Bytes per game.
+	public final static int SLOT_SIZE = 32;
+	
+	// Field offsets within a slot.
+	final static int BOARD = 0;
+	final static int RANDOM = 8;
+	final static int SCORE = 16;
+	final static int MOVES = 20;
+	final static int LAST_NUM = 24;
+	
+	// Games per slab (power of two), 64 MB slabs.
+	final static int SLAB_BITS = 21;
+	public final static int SLAB_GAMES = 1 << SLAB_BITS;
+	
+	// Number of games.
+	private final int size;
+	
+	// Exponent of target tile, shared by all games.
+	private final int winning_exponent;
+	
+	// Direct buffers holding slots.
+	final ByteBuffer[] slabs;
+	
+	/**
+	 * Constructor for an arena, all games empty until begun.
+	 * @param size Number of games.
+	 * @param winning_number Target number of all games (up to 32768, packed tiles hold exponents up to 15).
+	 */
+	public GameArena(int size, int winning_number)
+	{
+		if (winning_number > BitBoard.to_value(BitBoard.MAX_EXPONENT))
+			throw new IllegalArgumentException("Winning number must fit a packed tile: " + winning_number);
+		
+		this.size = size;
+		this.winning_exponent = BitBoard.to_exponent(winning_number);
+		this.slabs = new ByteBuffer[(size + SLAB_GAMES - 1) >>> SLAB_BITS];
+		
+		for (int s = 0; s < slabs.length; s++)
+		{
+			int games = Math.min(SLAB_GAMES, size - (s << SLAB_BITS));
+			slabs[s] = ByteBuffer.allocateDirect(games * SLOT_SIZE).order(ByteOrder.nativeOrder());
+		}
+	}
+	
+	/**
+	 * Get number of games.
+	 * @return Arena size.
+	 */
+	public int getSize()
+	{
+		return size;
+	}
+	
+	/**
+	 * Get exponent of target tile.
+	 * @return Winning exponent.
+	 */
+	public int getWinningExponent()
+	{
+		return winning_exponent;
+	}
+	
+	/**
+	 * Get off-heap memory used by slots.
+	 * @return Bytes.
+	 */
+	public long getMemorySize()
+	{
+		return (long) size * SLOT_SIZE;
+	}
+	
+	/**
+	 * Create a cursor over this arena's games, positioned on game 0. Each thread
+	 * uses its own cursor; a cursor holds no game state of its own.
+	 * @return New cursor.
+	 */
+	public ArenaGame cursor()
+	{
+		return new ArenaGame(this);
+	}
+}
@@ -0,0 +1,332 @@
+package com.ssharaf.game_2048.sim;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.ssharaf.game_2048.BitBoard;
+import com.ssharaf.game_2048.ExpectimaxSolver;
+import com.ssharaf.game_2048.Game2048;
+import com.ssharaf.game_2048.MoveTables;
+import com.ssharaf.game_2048.NTupleNetwork;
+import com.ssharaf.game_2048.Tablebase;
+
+/**
+ * Built-in move policies for the simulator.
+ *
+ * @author SAMEH SHARAF
+ *
+ */
+
+public final class MovePolicies
+{
+	// Names accepted by create().
+	public final static String RANDOM = "random";
+	public final static String GREEDY = "greedy";
+	public final static String CORNER = "corner";
+	public final static String AI     = "ai";
+	public final static String PERFECT = "perfect";
+	public final static String NTUPLE = "ntuple";
+	
+	// System properties naming tablebase file of perfect policy and network file of ntuple policy.
+	public final static String TABLEBASE_PROPERTY = "tablebase";
+	public final static String NETWORK_PROPERTY = "network";
+	
+	// Move directions, in the order policies try them.
+	private final static int[] MOVES = { Game2048.MOVE_UP, Game2048.MOVE_DOWN, Game2048.MOVE_LEFT, Game2048.MOVE_RIGHT };
+	
+	// Tablebase of perfect policy, mapped once and copied for each thread.
+	private static Tablebase tablebase;
+	
+	// Network of ntuple policy, mapped once and shared by all threads (lookups are read-only).
+	private static NTupleNetwork network;
+	
+	private MovePolicies()
+	{
+	}
+	
+	/**
+	 * Create a policy by name.
+	 * @param name Policy name (random, greedy, corner, ai, perfect or ntuple).
+	 * @param tiles Grid dimension of simulated games.
+	 * @return New policy, to be used by a single thread.
+	 */
+	public static MovePolicy create(String name, int tiles)
+	{
+		if (RANDOM.equals(name))
+			return new RandomPolicy();
+		if (GREEDY.equals(name))
+			return new GreedyPolicy(tiles);
+		if (CORNER.equals(name))
+			return new CornerPolicy();
+		if (AI.equals(name))
+			return new ExpectimaxPolicy(tiles);
+		if (PERFECT.equals(name))
+			return new TablebasePolicy(tiles, shared_tablebase().copy());
+		if (NTUPLE.equals(name))
+			return new NetworkPolicy(tiles, shared_network());
+		
+		throw new IllegalArgumentException("Unknown move policy: " + name);
+	}
+	
+	/**
+	 * Get tablebase named by tablebase system property, mapping it on first use.
+	 */
+	private static synchronized Tablebase shared_tablebase()
+	{
+		if (tablebase == null)
+		{
+			String path = System.getProperty(TABLEBASE_PROPERTY);
+			
+			if (path == null)
+				throw new IllegalArgumentException("Perfect policy needs a tablebase file: -D" + TABLEBASE_PROPERTY + "=<file>");
+			
+			try
+			{
+				tablebase = Tablebase.open(new File(path));
+			}
+			catch (IOException e)
+			{
+				throw new IllegalArgumentException("Can't open tablebase " + path + ": " + e.getMessage());
+			}
+		}
+		
+		return tablebase;
+	}
+	
+	/**
+	 * Get network named by network system property, mapping it on first use.
+	 */
+	private static synchronized NTupleNetwork shared_network()
+	{
+		if (network == null)
+		{
+			String path = System.getProperty(NETWORK_PROPERTY);
+			
+			if (path == null)
+				throw new IllegalArgumentException("Ntuple policy needs a network file: -D" + NETWORK_PROPERTY + "=<file>");
+			
+			try
+			{
+				network = NTupleNetwork.open(new File(path));
+			}
+			catch (IOException e)
+			{
+				throw new IllegalArgumentException("Can't open network " + path + ": " + e.getMessage());
+			}
+		}
+		
+		return network;
+	}
+	
+	/**
+	 * Uniformly random choice among moves that change the grid.
+	 */
+	static class RandomPolicy implements MovePolicy
+	{
+		private long random_state;
+		
+		@Override
+		public void reset(long seed)
+		{
+			random_state = seed != 0 ? seed : 1;
+		}
+		
+		@Override
+		public int choose_move(Game2048 game2048)
+		{
+			// xorshift64, only a few bits are needed per move.
+			random_state ^= random_state << 13;
+			random_state ^= random_state >>> 7;
+			random_state ^= random_state << 17;
+			
+			// Try directions from a random starting point.
+			int first = (int) ((random_state >>> 32) & 3);
+			
+			for (int k = 0; k < MOVES.length; k++)
+			{
+				int direction = MOVES[(first + k) & 3];
+				
+				if (game2048.can_move(direction))
+					return direction;
+			}
+			
+			return 0;
+		}
+	}
+	
+	/**
+	 * Move gaining most score, then leaving most empty tiles.
+	 */
+	static class GreedyPolicy implements MovePolicy
+	{
+		// Scratch game for trying moves.
+		private Game2048 trial;
+		
+		GreedyPolicy(int tiles)
+		{
+			trial = new Game2048(tiles, 2048, 1);
+		}
+		
+		@Override
+		public void reset(long seed)
+		{
+		}
+		
+		@Override
+		public int choose_move(Game2048 game2048)
+		{
+			int best = 0;
+			long best_value = -1;
+			
+			for (int k = 0; k < MOVES.length; k++)
+			{
+				trial.copy_from(game2048);
+				
+				if (!trial.move(MOVES[k]))
+					continue;
+				
+				long value = (long) (trial.getScore() - game2048.getScore()) * 256 + trial.getEmptyCount();
+				
+				if (value > best_value)
+				{
+					best_value = value;
+					best = MOVES[k];
+				}
+			}
+			
+			return best;
+		}
+	}
+	
+	/**
+	 * Keeps big tiles in bottom-left corner: down, then left, then right, and up only when stuck.
+	 */
+	static class CornerPolicy implements MovePolicy
+	{
+		private final static int[] PREFERENCE = { Game2048.MOVE_DOWN, Game2048.MOVE_LEFT, Game2048.MOVE_RIGHT, Game2048.MOVE_UP };
+		
+		@Override
+		public void reset(long seed)
+		{
+		}
+		
+		@Override
+		public int choose_move(Game2048 game2048)
+		{
+			for (int k = 0; k < PREFERENCE.length; k++)
+				if (game2048.can_move(PREFERENCE[k]))
+					return PREFERENCE[k];
+			
+			return 0;
+		}
+	}
+	
+	/**
+	 * Expectimax search at a fixed depth, so results don't depend on machine speed.
+	 * Grids other than 4x4 fall back to greedy moves.
+	 */
+	static class ExpectimaxPolicy implements MovePolicy
+	{
+		private ExpectimaxSolver solver;
+		private GreedyPolicy fallback;
+		
+		ExpectimaxPolicy(int tiles)
+		{
+			solver = new ExpectimaxSolver(0, 2, 16);
+			fallback = new GreedyPolicy(tiles);
+		}
+		
+		@Override
+		public void reset(long seed)
+		{
+		}
+		
+		@Override
+		public int choose_move(Game2048 game2048)
+		{
+			if (game2048.getTiles() != 4)
+				return fallback.choose_move(game2048);
+			
+			return solver.best_move(game2048);
+		}
+	}
+	
+	/**
+	 * Optimal moves read from a tablebase. Games it doesn't cover fall back to expectimax.
+	 */
+	static class TablebasePolicy implements MovePolicy
+	{
+		private Tablebase tablebase;
+		private ExpectimaxPolicy fallback;
+		
+		TablebasePolicy(int tiles, Tablebase tablebase)
+		{
+			this.tablebase = tablebase;
+			fallback = new ExpectimaxPolicy(tiles);
+		}
+		
+		@Override
+		public void reset(long seed)
+		{
+		}
+		
+		@Override
+		public int choose_move(Game2048 game2048)
+		{
+			if (!tablebase.covers(game2048))
+				return fallback.choose_move(game2048);
+			
+			return tablebase.best_move(game2048);
+		}
+	}
+	
+	/**
+	 * Move maximizing score gained plus network value of the board it leaves,
+	 * as played while training. Grids other than 4x4 fall back to greedy moves.
+	 */
+	static class NetworkPolicy implements MovePolicy
+	{
+		private NTupleNetwork network;
+		private GreedyPolicy fallback;
+		
+		NetworkPolicy(int tiles, NTupleNetwork network)
+		{
+			this.network = network;
+			fallback = new GreedyPolicy(tiles);
+		}
+		
+		@Override
+		public void reset(long seed)
+		{
+		}
+		
+		@Override
+		public int choose_move(Game2048 game2048)
+		{
+			if (game2048.getTiles() != BitBoard.TILES)
+				return fallback.choose_move(game2048);
+			
+			long board = BitBoard.pack(game2048);
+			int best = 0;
+			float best_value = Float.NEGATIVE_INFINITY;
+			
+			for (int k = 0; k < MOVES.length; k++)
+			{
+				long moved = MoveTables.move(board, MOVES[k]);
+				
+				if (moved == board)
+					continue;
+				
+				float value = MoveTables.gain(board, MOVES[k]) + network.evaluate(moved);
+				
+				if (value > best_value)
+				{
+					best_value = value;
+					best = MOVES[k];
+				}
+			}
+			
+			return best;
+		}
+	}
+}
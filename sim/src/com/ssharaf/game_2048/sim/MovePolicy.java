@@ -0,0 +1,27 @@
+package com.ssharaf.game_2048.sim;
+
+import com.ssharaf.game_2048.Game2048;
+
+/**
+ * Strategy choosing moves for simulated games. A policy is only used by
+ * one simulation thread at a time, so it can keep scratch state.
+ *
+ * @author SAMEH SHARAF
+ *
+ */
+
+public interface MovePolicy
+{
+	/**
+	 * Prepare for a new game.
+	 * @param seed Seed for policy's own random choices.
+	 */
+	void reset(long seed);
+	
+	/**
+	 * Choose next move.
+	 * @param game2048 Game being played, must not be modified.
+	 * @return Move direction that changes game grid, or 0 when there is none.
+	 */
+	int choose_move(Game2048 game2048);
+}
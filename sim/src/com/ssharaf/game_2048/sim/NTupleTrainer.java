@@ -0,0 +1,310 @@
+package com.ssharaf.game_2048.sim;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.ssharaf.game_2048.BitBoard;
+import com.ssharaf.game_2048.Game2048;
+import com.ssharaf.game_2048.MoveTables;
+import com.ssharaf.game_2048.NTupleNetwork;
+
+/**
+ * Trains an n-tuple network by TD(0) on afterstates, playing 4x4 games
+ * until they are lost.
+ *
+ * Each move is the one maximizing score gained plus network value of the
+ * board it leaves (before its new number). Once the next move is chosen,
+ * the value of the previous afterstate is moved towards the score gained by
+ * the next move plus the value of its afterstate, and towards 0 when the
+ * game ends.
+ *
+ * Threads play their own games and update the shared weights without any
+ * locking (Hogwild): two threads rarely touch the same weight at once, and
+ * a lost update only costs a little learning. Training results therefore
+ * depend on thread timing, not only on the seed.
+ *
+ * Usage: NTupleTrainer [games] [threads] [small|large] [learning rate] [file] [seed]
+ *
+ * @author SAMEH SHARAF
+ *
+ */
+
+public class NTupleTrainer
+{
+	// Games handed to a thread at once.
+	private final static int CHUNK = 64;
+	
+	// Seconds between two progress reports.
+	private final static int REPORT_INTERVAL = 10;
+	
+	// Exponent of 2048 tile.
+	private final static int GOAL_EXPONENT = 11;
+	
+	// Move directions, in the order they are tried.
+	private final static int[] MOVES = { Game2048.MOVE_UP, Game2048.MOVE_DOWN, Game2048.MOVE_LEFT, Game2048.MOVE_RIGHT };
+	
+	// Network being trained, shared by all threads.
+	private NTupleNetwork network;
+	
+	// Number of training threads.
+	private int threads;
+	
+	// Change of a board's value per unit of TD error, split over all weights it reads.
+	private float step;
+	
+	// Seed all games' seeds derive from.
+	private long seed;
+	
+	// Progress of running training: games, moves, sum of scores and games reaching 2048.
+	private final AtomicLong played_games = new AtomicLong();
+	private final AtomicLong played_moves = new AtomicLong();
+	private final AtomicLong score_sum = new AtomicLong();
+	private final AtomicLong goal_games = new AtomicLong();
+	
+	/**
+	 * Constructor for n-tuple network trainer.
+	 * @param network Network to be trained, its weights are updated in place.
+	 * @param threads Number of training threads.
+	 * @param learning_rate Fraction of TD error corrected by one update.
+	 * @param seed Seed all games' seeds derive from.
+	 */
+	public NTupleTrainer(NTupleNetwork network, int threads, float learning_rate, long seed)
+	{
+		this.network = network;
+		this.threads = threads;
+		this.step = learning_rate / network.getFeatureCount();
+		this.seed = seed;
+	}
+	
+	/**
+	 * Play and learn from games, reporting progress every few seconds.
+	 * @param games Number of games to play.
+	 */
+	public void train(final long games)
+	{
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		final AtomicLong next_game = new AtomicLong();
+		List<Future<Void>> results = new ArrayList<Future<Void>>();
+		
+		for (int t = 0; t < threads; t++)
+		{
+			results.add(pool.submit(new Callable<Void>()
+			{
+				@Override
+				public Void call()
+				{
+					long first;
+					
+					// Claim games a chunk at a time until all are played.
+					while ((first = next_game.getAndAdd(CHUNK)) < games)
+						for (long n = first; n < Math.min(first + CHUNK, games); n++)
+							play(Simulator.mix(seed + n));
+					
+					return null;
+				}
+			}));
+		}
+		
+		pool.shutdown();
+		
+		long start = System.nanoTime();
+		long last_time = start;
+		long last_games = 0;
+		long last_moves = 0;
+		long last_scores = 0;
+		long last_goals = 0;
+		
+		try
+		{
+			boolean isDone = false;
+			
+			while (!isDone)
+			{
+				isDone = pool.awaitTermination(REPORT_INTERVAL, TimeUnit.SECONDS);
+				
+				long time = System.nanoTime();
+				long game_count = played_games.get();
+				long move_count = played_moves.get();
+				long scores = score_sum.get();
+				long goals = goal_games.get();
+				long window = Math.max(1, game_count - last_games);
+				double seconds = (time - last_time) / 1e9;
+				
+				System.out.printf("%,d games: %.0f games/s, %.0f moves/s, mean score %.0f, 2048 reached %.1f%%%n",
+						game_count, (game_count - last_games) / seconds, (move_count - last_moves) / seconds,
+						(double) (scores - last_scores) / window, 100.0 * (goals - last_goals) / window);
+				
+				last_time = time;
+				last_games = game_count;
+				last_moves = move_count;
+				last_scores = scores;
+				last_goals = goals;
+			}
+			
+			for (Future<Void> result : results)
+				result.get();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		catch (ExecutionException e)
+		{
+			throw new RuntimeException(e.getCause());
+		}
+		finally
+		{
+			pool.shutdownNow();
+		}
+		
+		double seconds = (System.nanoTime() - start) / 1e9;
+		
+		System.out.printf("Trained on %,d games in %.1f s (%.0f games/s, %.0f moves/s) on %d threads%n",
+				played_games.get(), seconds, played_games.get() / seconds, played_moves.get() / seconds, threads);
+	}
+	
+	/**
+	 * Play one game to its end, learning after each move.
+	 * @param random_state Seed of game's new numbers.
+	 */
+	private void play(long random_state)
+	{
+		random_state = random_state != 0 ? random_state : 1;
+		
+		long board = 0;
+		long last_after = 0;
+		boolean isLearning = false;
+		int score = 0;
+		int moves = 0;
+		
+		for (int k = 0; k < 2; k++)
+		{
+			random_state = next(random_state);
+			board = add_number(board, random_state);
+		}
+		
+		while (true)
+		{
+			long best_after = 0;
+			int best_gain = 0;
+			float best_value = Float.NEGATIVE_INFINITY;
+			
+			for (int k = 0; k < MOVES.length; k++)
+			{
+				long after = MoveTables.move(board, MOVES[k]);
+				
+				if (after == board)
+					continue;
+				
+				int gain = MoveTables.gain(board, MOVES[k]);
+				float value = gain + network.evaluate(after);
+				
+				if (value > best_value)
+				{
+					best_value = value;
+					best_after = after;
+					best_gain = gain;
+				}
+			}
+			
+			// Game lost: nothing more to gain after last move.
+			float target = best_value == Float.NEGATIVE_INFINITY ? 0.0f : best_value;
+			
+			if (isLearning)
+				network.update(last_after, step * (target - network.evaluate(last_after)));
+			
+			if (best_value == Float.NEGATIVE_INFINITY)
+				break;
+			
+			last_after = best_after;
+			isLearning = true;
+			score += best_gain;
+			moves++;
+			
+			random_state = next(random_state);
+			board = add_number(best_after, random_state);
+		}
+		
+		played_games.incrementAndGet();
+		played_moves.addAndGet(moves);
+		score_sum.addAndGet(score);
+		
+		if (BitBoard.max_exponent(board) >= GOAL_EXPONENT)
+			goal_games.incrementAndGet();
+	}
+	
+	/**
+	 * Put a new number (always 2, as in Game2048) on a random empty tile.
+	 * @param board Packed board with at least one empty tile.
+	 * @param random Random bits.
+	 * @return Board with new number.
+	 */
+	private static long add_number(long board, long random)
+	{
+		int empty = BitBoard.count_empty(board);
+		int target = (int) (((random >>> 32) * empty) >>> 32);
+		
+		for (int shift = 0; shift < 64; shift += 4)
+		{
+			if (((board >>> shift) & 0xFL) != 0)
+				continue;
+			
+			if (target-- == 0)
+				return board | (1L << shift);
+		}
+		
+		return board;
+	}
+	
+	/**
+	 * Next xorshift64 state.
+	 */
+	private static long next(long x)
+	{
+		x ^= x << 13;
+		x ^= x >>> 7;
+		x ^= x << 17;
+		
+		return x;
+	}
+	
+	public static void main(String[] args) throws IOException
+	{
+		long games = args.length > 0 ? Long.parseLong(args[0]) : 100000;
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		String tuples = args.length > 2 ? args[2] : "small";
+		float learning_rate = args.length > 3 ? Float.parseFloat(args[3]) : 0.1f;
+		File file = new File(args.length > 4 ? args[4] : "ntuple.net");
+		long seed = args.length > 5 ? Long.parseLong(args[5]) : 2048;
+		
+		NTupleNetwork network;
+		
+		// Keep training an existing network.
+		if (file.exists())
+		{
+			network = NTupleNetwork.load(file);
+			System.out.println("Resuming " + file + " (" + network.getSize() + " weights)");
+		}
+		else if ("small".equals(tuples) || "large".equals(tuples))
+			network = new NTupleNetwork("small".equals(tuples) ? NTupleNetwork.SMALL_TUPLES : NTupleNetwork.LARGE_TUPLES);
+		else
+			throw new IllegalArgumentException("Unknown tuples: " + tuples + " (small or large)");
+		
+		System.out.println("Training " + network.getSize() + " weights on " + games + " games, " + threads
+				+ " threads, learning rate " + learning_rate);
+		
+		new NTupleTrainer(network, threads, learning_rate, seed).train(games);
+		network.save(file);
+		
+		System.out.println("Written " + file + " (" + file.length() / 1024 + " KB)");
+	}
+}
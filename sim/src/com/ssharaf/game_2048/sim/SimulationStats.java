@@ -0,0 +1,128 @@
+package com.ssharaf.game_2048.sim;
+
+import com.ssharaf.game_2048.Game2048;
+
+/**
+ * Aggregate results of simulated games. Each simulation thread fills its own
+ * stats, which are merged once all games are played.
+ *
+ * @author SAMEH SHARAF
+ *
+ */
+
+public class SimulationStats
+{
+	// Number of histogram buckets (one per power of two).
+	private final static int BUCKETS = 32;
+	
+	private long games;
+	private long wins;
+	private long moves;
+	private long total_score;
+	private long max_score;
+	
+	// Games per final score bucket: bucket k holds scores from 2^k to 2^(k+1) - 1, bucket 0 also holds 0.
+	private long[] score_buckets = new long[BUCKETS];
+	
+	// Games per highest tile reached, indexed by tile exponent.
+	private long[] max_tiles = new long[BUCKETS];
+	
+	/**
+	 * Add a finished game.
+	 * @param game2048 Finished game.
+	 * @param game_moves Moves played in game.
+	 */
+	public void add(Game2048 game2048, int game_moves)
+	{
+		int score = game2048.getScore();
+		
+		games++;
+		moves += game_moves;
+		total_score += score;
+		max_score = Math.max(max_score, score);
+		score_buckets[score == 0 ? 0 : 31 - Integer.numberOfLeadingZeros(score)]++;
+		max_tiles[Integer.numberOfTrailingZeros(game2048.getMaxTile())]++;
+		
+		if (game2048.isWin())
+			wins++;
+	}
+	
+	/**
+	 * Add another thread's results to these ones.
+	 * @param other Results to be added.
+	 */
+	public void merge(SimulationStats other)
+	{
+		games += other.games;
+		wins += other.wins;
+		moves += other.moves;
+		total_score += other.total_score;
+		max_score = Math.max(max_score, other.max_score);
+		
+		for (int k = 0; k < BUCKETS; k++)
+		{
+			score_buckets[k] += other.score_buckets[k];
+			max_tiles[k] += other.max_tiles[k];
+		}
+	}
+	
+	public long getGames()
+	{
+		return games;
+	}
+	
+	public long getWins()
+	{
+		return wins;
+	}
+	
+	public long getMoves()
+	{
+		return moves;
+	}
+	
+	public long getTotalScore()
+	{
+		return total_score;
+	}
+	
+	/**
+	 * Get number of games that ended with a given highest tile.
+	 * @param exponent Tile exponent (11 for 2048).
+	 * @return Number of games.
+	 */
+	public long getMaxTileCount(int exponent)
+	{
+		return max_tiles[exponent];
+	}
+	
+	/**
+	 * Format results as a text report.
+	 * @param elapsed_nanos Time taken by simulation.
+	 * @return Report lines.
+	 */
+	public String report(long elapsed_nanos)
+	{
+		double seconds = elapsed_nanos / 1e9;
+		StringBuilder report = new StringBuilder();
+		
+		report.append(String.format("Games: %d in %.2f s (%.0f games/s, %.0f moves/s)%n",
+				games, seconds, games / seconds, moves / seconds));
+		report.append(String.format("Win rate: %.4f%%%n", games == 0 ? 0.0 : 100.0 * wins / games));
+		report.append(String.format("Score: mean %.1f, max %d%n", games == 0 ? 0.0 : (double) total_score / games, max_score));
+		
+		report.append("Score distribution:\n");
+		
+		for (int k = 0; k < BUCKETS; k++)
+			if (score_buckets[k] != 0)
+				report.append(String.format("  %10d - %-10d %8.4f%%%n", k == 0 ? 0 : 1L << k, (1L << (k + 1)) - 1, 100.0 * score_buckets[k] / games));
+		
+		report.append("Max tile distribution:\n");
+		
+		for (int k = 0; k < BUCKETS; k++)
+			if (max_tiles[k] != 0)
+				report.append(String.format("  %10d %8.4f%%%n", k == 0 ? 0 : 1L << k, 100.0 * max_tiles[k] / games));
+		
+		return report.toString();
+	}
+}
@@ -0,0 +1,180 @@
+package com.ssharaf.game_2048.sim;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.ssharaf.game_2048.Game2048;
+
+/**
+ * Headless batch simulator: plays many games across a thread pool and
+ * reports games per second, win rate, and score and max tile distributions.
+ *
+ * Each thread reuses one game and one policy for all games it plays. Game
+ * number n is always seeded from (seed, n), so results only depend on the
+ * seed, not on the number of threads or how games were spread among them.
+ *
+ * Usage: Simulator [games] [threads] [tiles] [winning number] [policy] [seed]
+ *
+ * @author SAMEH SHARAF
+ *
+ */
+
+public class Simulator
+{
+	// Games handed to a thread at once.
+	private final static int CHUNK = 256;
+	
+	// Number of simulation threads.
+	private int threads;
+	
+	// Grid dimension and target number of simulated games.
+	private int tiles;
+	private int winning_number;
+	
+	// Move policy name.
+	private String policy;
+	
+	// Seed all games' seeds derive from.
+	private long seed;
+	
+	/**
+	 * Constructor for simulator.
+	 * @param threads Number of simulation threads.
+	 * @param tiles Grid dimension.
+	 * @param winning_number Target number ending a game as a win.
+	 * @param policy Move policy name, see MovePolicies.
+	 * @param seed Seed all games' seeds derive from.
+	 */
+	public Simulator(int threads, int tiles, int winning_number, String policy, long seed)
+	{
+		this.threads = threads;
+		this.tiles = tiles;
+		this.winning_number = winning_number;
+		this.policy = policy;
+		this.seed = seed;
+		
+		// Fail early on a bad policy name.
+		MovePolicies.create(policy, tiles);
+	}
+	
+	/**
+	 * Play games until each one is won or lost.
+	 * @param games Number of games to play.
+	 * @return Aggregate results.
+	 */
+	public SimulationStats run(final long games)
+	{
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		final AtomicLong next_game = new AtomicLong();
+		List<Future<SimulationStats>> results = new ArrayList<Future<SimulationStats>>();
+		
+		for (int t = 0; t < threads; t++)
+		{
+			results.add(pool.submit(new Callable<SimulationStats>()
+			{
+				@Override
+				public SimulationStats call()
+				{
+					SimulationStats stats = new SimulationStats();
+					Game2048 game = new Game2048(tiles, winning_number, 1);
+					MovePolicy move_policy = MovePolicies.create(policy, tiles);
+					long first;
+					
+					// Claim games a chunk at a time until all are played.
+					while ((first = next_game.getAndAdd(CHUNK)) < games)
+						for (long n = first; n < Math.min(first + CHUNK, games); n++)
+							play(game, move_policy, n, stats);
+					
+					return stats;
+				}
+			}));
+		}
+		
+		SimulationStats total = new SimulationStats();
+		
+		try
+		{
+			for (Future<SimulationStats> result : results)
+				total.merge(result.get());
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		catch (ExecutionException e)
+		{
+			throw new RuntimeException(e.getCause());
+		}
+		finally
+		{
+			pool.shutdownNow();
+		}
+		
+		return total;
+	}
+	
+	/**
+	 * Play one game to its end.
+	 * @param game Reused game object.
+	 * @param move_policy Reused move policy.
+	 * @param n Game number.
+	 * @param stats Results game is added to.
+	 */
+	private void play(Game2048 game, MovePolicy move_policy, long n, SimulationStats stats)
+	{
+		game.setSeed(mix(seed + 2 * n));
+		game.begin_game();
+		move_policy.reset(mix(seed + 2 * n + 1));
+		
+		int moves = 0;
+		
+		while (!game.isLost() && !game.isWin())
+		{
+			int direction = move_policy.choose_move(game);
+			
+			if (direction == 0 || !game.move(direction))
+				break;
+			
+			game.insert_new_number();
+			moves++;
+		}
+		
+		stats.add(game, moves);
+	}
+	
+	/**
+	 * Scramble a number into a well spread seed (SplitMix64 finalizer).
+	 */
+	static long mix(long x)
+	{
+		x = (x ^ (x >>> 30)) * 0xBF58476D1CE4E5B9L;
+		x = (x ^ (x >>> 27)) * 0x94D049BB133111EBL;
+		
+		return x ^ (x >>> 31);
+	}
+	
+	public static void main(String[] args)
+	{
+		long games = args.length > 0 ? Long.parseLong(args[0]) : 1000000;
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		int tiles = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+		int winning_number = args.length > 3 ? Integer.parseInt(args[3]) : 2048;
+		String policy = args.length > 4 ? args[4] : MovePolicies.RANDOM;
+		long seed = args.length > 5 ? Long.parseLong(args[5]) : 2048;
+		
+		System.out.println("Simulating " + games + " games of " + tiles + "x" + tiles + " to " + winning_number
+				+ " with " + policy + " policy on " + threads + " threads");
+		
+		Simulator simulator = new Simulator(threads, tiles, winning_number, policy, seed);
+		long start = System.nanoTime();
+		SimulationStats stats = simulator.run(games);
+		
+		System.out.print(stats.report(System.nanoTime() - start));
+	}
+}
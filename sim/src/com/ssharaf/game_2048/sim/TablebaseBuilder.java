@@ -0,0 +1,603 @@
+package com.ssharaf.game_2048.sim;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.ssharaf.game_2048.Game2048;
+import com.ssharaf.game_2048.Tablebase;
+
+/**
+ * Builds a Tablebase file by retrograde analysis: the exact win probability
+ * under optimal play, and the move reaching it, of every canonical position
+ * of a small game (2x2 or 3x3 grid).
+ *
+ * A move keeps the sum of tiles, and a new number adds 2 to it, so the
+ * positions reached after a move and a new number always sum 2 more than
+ * where they came from. Positions are sorted into layers by tile sum and
+ * solved from the highest layer down: each layer only reads the layer above
+ * it, and positions of a layer are solved in parallel on all threads.
+ *
+ * Position value (player to move, new numbers always 2 on a uniformly
+ * random empty tile): 1 once a move reaches the winning tile, 0 when no move
+ * is possible, else the best over moves of the average value over where the
+ * new number lands.
+ *
+ * Usage: TablebaseBuilder [tiles] [winning number] [threads] [file]
+ *
+ * @author SAMEH SHARAF
+ *
+ */
+
+public class TablebaseBuilder
+{
+	// Positions solved by a thread at once.
+	private final static int CHUNK = 4096;
+	
+	// Grid dimension, winning exponent (index base) and cell count.
+	private final int tiles;
+	private final int base;
+	private final int cells;
+	
+	// Number of indexes and 64 index blocks.
+	private final long index_count;
+	private final int words;
+	
+	// Number of simulation threads.
+	private final int threads;
+	
+	// Canonical positions: bitmap over indexes, and canonical positions before each block.
+	private long[] bitmap;
+	private int[] rank;
+	private int canonical_count;
+	
+	// First position of each layer in sorted positions, plus end.
+	private int[] layer_starts;
+	
+	// Threads solving positions, while building.
+	private ExecutorService pool;
+	
+	// Value and best move of each canonical position, in index order.
+	private float[] values;
+	private byte[] moves;
+	
+	// Index weight of each cell under each symmetry.
+	private final long[][] weights;
+	
+	// Move directions: cells of each line, first cell being the one tiles move to.
+	private final int[][][] lines;
+	
+	// Line moves for every line of exponents (line index = sum of exponent * base ^ position).
+	private final int[][] line_results;
+	private final boolean[] isLineWin;
+	
+	/**
+	 * Constructor for tablebase builder.
+	 * @param tiles Grid dimension (2 or 3).
+	 * @param winning_number Target number (a power of two).
+	 * @param threads Number of threads.
+	 */
+	public TablebaseBuilder(int tiles, int winning_number, int threads)
+	{
+		if (tiles < 2 || tiles > Tablebase.MAX_TILES)
+			throw new IllegalArgumentException("Tablebases are built for 2x2 and 3x3 grids only");
+		
+		if (Integer.bitCount(winning_number) != 1 || winning_number < 4)
+			throw new IllegalArgumentException("Winning number must be a power of two: " + winning_number);
+		
+		this.tiles = tiles;
+		this.base = Integer.numberOfTrailingZeros(winning_number);
+		this.cells = tiles * tiles;
+		this.index_count = Tablebase.index_count(tiles, base);
+		this.threads = threads;
+		
+		if (index_count > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("Too many positions: " + index_count);
+		
+		this.words = (int) Tablebase.words(index_count);
+		this.weights = Tablebase.weights(tiles, base);
+		this.lines = new int[Game2048.MOVE_RIGHT + 1][tiles][tiles];
+		
+		for (int k = 0; k < tiles; k++)
+			for (int p = 0; p < tiles; p++)
+			{
+				int last = tiles - 1 - p;
+				
+				lines[Game2048.MOVE_LEFT][k][p] = k * tiles + p;
+				lines[Game2048.MOVE_RIGHT][k][p] = k * tiles + last;
+				lines[Game2048.MOVE_UP][k][p] = p * tiles + k;
+				lines[Game2048.MOVE_DOWN][k][p] = last * tiles + k;
+			}
+		
+		int line_count = 1;
+		
+		for (int p = 0; p < tiles; p++)
+			line_count *= base;
+		
+		this.line_results = new int[line_count][tiles];
+		this.isLineWin = new boolean[line_count];
+		
+		for (int line = 0; line < line_count; line++)
+			isLineWin[line] = move_line(line, line_results[line]);
+	}
+	
+	/**
+	 * Slide and merge one line towards its first position, following Game2048 rules.
+	 * @param line Line index.
+	 * @param result Exponents after move.
+	 * @return Flag indicates a merge reached winning tile.
+	 */
+	private boolean move_line(int line, int[] result)
+	{
+		boolean isWin = false;
+		int count = 0;
+		int held = 0;
+		
+		for (int p = 0; p < tiles; p++, line /= base)
+		{
+			int exponent = line % base;
+			
+			if (exponent == 0)
+				continue;
+			
+			if (held == exponent)
+			{
+				result[count++] = exponent + 1;
+				isWin |= exponent + 1 >= base;
+				held = 0;
+			}
+			else
+			{
+				if (held != 0)
+					result[count++] = held;
+				
+				held = exponent;
+			}
+		}
+		
+		if (held != 0)
+			result[count++] = held;
+		
+		while (count < tiles)
+			result[count++] = 0;
+		
+		return isWin;
+	}
+	
+	/**
+	 * Build tablebase.
+	 * @throws InterruptedException When interrupted, tablebase is then incomplete and mustn't be written.
+	 */
+	public void build() throws InterruptedException
+	{
+		pool = Executors.newFixedThreadPool(threads);
+		
+		try
+		{
+			find_canonical();
+			
+			final int[] layers = sort_layers();
+			
+			values = new float[canonical_count];
+			moves = new byte[canonical_count];
+			
+			// Highest sum first: every layer reads the one above it.
+			for (int layer = layer_starts.length - 2; layer >= 0; layer--)
+			{
+				final int first = layer_starts[layer];
+				
+				parallel(layer_starts[layer + 1] - first, new RangeTask()
+				{
+					@Override
+					public void run(int from, int to, int[] exponents, int[] moved, long[] moved_indexes)
+					{
+						for (int k = first + from; k < first + to; k++)
+							solve(layers[k], exponents, moved, moved_indexes);
+					}
+				});
+			}
+		}
+		finally
+		{
+			pool.shutdownNow();
+		}
+	}
+	
+	/**
+	 * Solve one position.
+	 * @param index Canonical index.
+	 * @param exponents Scratch, exponents of position.
+	 * @param moved Scratch, exponents after a move.
+	 * @param moved_indexes Scratch, index of moved position under each symmetry.
+	 */
+	private void solve(int index, int[] exponents, int[] moved, long[] moved_indexes)
+	{
+		for (int cell = 0, x = index; cell < cells; cell++, x /= base)
+			exponents[cell] = x % base;
+		
+		float best = 0.0f;
+		int best_move = 0;
+		
+		for (int d = Game2048.MOVE_UP; d <= Game2048.MOVE_RIGHT; d++)
+		{
+			boolean isChanged = false;
+			boolean isWin = false;
+			
+			for (int k = 0; k < tiles; k++)
+			{
+				int[] line_cells = lines[d][k];
+				int line = 0;
+				
+				for (int p = tiles - 1; p >= 0; p--)
+					line = line * base + exponents[line_cells[p]];
+				
+				int[] result = line_results[line];
+				isWin |= isLineWin[line];
+				
+				for (int p = 0; p < tiles; p++)
+				{
+					moved[line_cells[p]] = result[p];
+					isChanged |= result[p] != exponents[line_cells[p]];
+				}
+			}
+			
+			if (!isChanged)
+				continue;
+			
+			float value = isWin ? 1.0f : expected_value(moved, moved_indexes);
+			
+			if (best_move == 0 || value > best)
+			{
+				best = value;
+				best_move = d;
+			}
+		}
+		
+		int r = rank(index);
+		values[r] = best;
+		moves[r] = (byte) best_move;
+	}
+	
+	/**
+	 * Average value over where new number lands.
+	 * @param moved Exponents after move.
+	 * @param moved_indexes Scratch, index of moved position under each symmetry.
+	 * @return Expected value.
+	 */
+	private float expected_value(int[] moved, long[] moved_indexes)
+	{
+		for (int s = 0; s < Tablebase.SYMMETRIES; s++)
+		{
+			long index = 0;
+			
+			for (int cell = 0; cell < cells; cell++)
+				index += moved[cell] * weights[s][cell];
+			
+			moved_indexes[s] = index;
+		}
+		
+		float sum = 0.0f;
+		int empty = 0;
+		
+		for (int cell = 0; cell < cells; cell++)
+		{
+			if (moved[cell] != 0)
+				continue;
+			
+			// New number (exponent 1) adds cell's weight to every symmetric index.
+			long canonical = Long.MAX_VALUE;
+			
+			for (int s = 0; s < Tablebase.SYMMETRIES; s++)
+				canonical = Math.min(canonical, moved_indexes[s] + weights[s][cell]);
+			
+			sum += values[rank(canonical)];
+			empty++;
+		}
+		
+		return sum / empty;
+	}
+	
+	/**
+	 * Get number of canonical positions before a canonical index.
+	 */
+	private int rank(long index)
+	{
+		int word = (int) (index >>> 6);
+		
+		return rank[word] + Long.bitCount(bitmap[word] & ((1L << (index & 63)) - 1));
+	}
+	
+	/**
+	 * Mark canonical indexes (lowest index among a position's symmetries) and count them.
+	 */
+	private void find_canonical() throws InterruptedException
+	{
+		bitmap = new long[words];
+		rank = new int[words];
+		
+		parallel(words, new RangeTask()
+		{
+			@Override
+			public void run(int from, int to, int[] exponents, int[] moved, long[] moved_indexes)
+			{
+				long index = (long) from << 6;
+				long end = Math.min((long) to << 6, index_count);
+				
+				for (int cell = 0; cell < cells; cell++)
+					exponents[cell] = (int) ((index / weights[0][cell]) % base);
+				
+				for (; index < end; index++)
+				{
+					if (isCanonical(index, exponents))
+						bitmap[(int) (index >>> 6)] |= 1L << (index & 63);
+					
+					// Next index: increment exponents as base digits.
+					for (int cell = 0; cell < cells && ++exponents[cell] == base; cell++)
+						exponents[cell] = 0;
+				}
+			}
+		});
+		
+		for (int word = 0; word < words; word++)
+		{
+			rank[word] = canonical_count;
+			canonical_count += Long.bitCount(bitmap[word]);
+		}
+	}
+	
+	/**
+	 * Check no symmetry of a position has a lower index.
+	 */
+	private boolean isCanonical(long index, int[] exponents)
+	{
+		for (int s = 1; s < Tablebase.SYMMETRIES; s++)
+		{
+			long other = 0;
+			
+			for (int cell = 0; cell < cells; cell++)
+				other += exponents[cell] * weights[s][cell];
+			
+			if (other < index)
+				return false;
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Sort canonical indexes by layer (tile sum / 2), counting sort.
+	 * @return Canonical indexes, layer by layer.
+	 */
+	private int[] sort_layers()
+	{
+		int layer_count = cells * (1 << (base - 1)) / 2 + 1;
+		int[] counts = new int[layer_count + 1];
+		int[] exponents = new int[cells];
+		
+		for (int pass = 0; pass < 2; pass++)
+		{
+			int[] sorted = pass == 0 ? null : new int[canonical_count];
+			int[] next = pass == 0 ? null : counts.clone();
+			
+			for (int word = 0; word < words; word++)
+				for (long bits = bitmap[word]; bits != 0; bits &= bits - 1)
+				{
+					int index = (word << 6) + Long.numberOfTrailingZeros(bits);
+					int layer = layer(index, exponents);
+					
+					if (pass == 0)
+						counts[layer + 1]++;
+					else
+						sorted[next[layer]++] = index;
+				}
+			
+			if (pass == 0)
+			{
+				for (int layer = 0; layer < layer_count; layer++)
+					counts[layer + 1] += counts[layer];
+				
+				layer_starts = counts;
+			}
+			else
+				return sorted;
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Get layer of a position: sum of its tiles / 2.
+	 */
+	private int layer(int index, int[] exponents)
+	{
+		int sum = 0;
+		
+		for (int cell = 0; cell < cells; cell++, index /= base)
+			if (index % base != 0)
+				sum += 1 << (index % base - 1);
+		
+		return sum;
+	}
+	
+	/**
+	 * Work on a range of items, with its own scratch arrays.
+	 */
+	private interface RangeTask
+	{
+		void run(int from, int to, int[] exponents, int[] moved, long[] moved_indexes);
+	}
+	
+	/**
+	 * Run a task over items 0 .. count - 1, CHUNK items at a time on all threads.
+	 */
+	private void parallel(final int count, final RangeTask task) throws InterruptedException
+	{
+		// Small layers aren't worth handing out.
+		if (threads == 1 || count <= CHUNK)
+		{
+			task.run(0, count, new int[cells], new int[cells], new long[Tablebase.SYMMETRIES]);
+			return;
+		}
+		
+		List<Future<Void>> results = new ArrayList<Future<Void>>();
+		
+		for (int from = 0; from < count; from += CHUNK)
+		{
+			final int first = from;
+			
+			results.add(pool.submit(new Callable<Void>()
+			{
+				@Override
+				public Void call()
+				{
+					task.run(first, Math.min(first + CHUNK, count), new int[cells], new int[cells], new long[Tablebase.SYMMETRIES]);
+					return null;
+				}
+			}));
+		}
+		
+		try
+		{
+			for (Future<Void> result : results)
+				result.get();
+		}
+		catch (ExecutionException e)
+		{
+			throw new RuntimeException(e.getCause());
+		}
+		finally
+		{
+			// Interrupted or failed: don't leave chunks running, values are incomplete anyway.
+			for (Future<Void> result : results)
+				result.cancel(true);
+		}
+	}
+	
+	/**
+	 * Get number of canonical positions.
+	 * @return Canonical count.
+	 */
+	public int getCanonicalCount()
+	{
+		return canonical_count;
+	}
+	
+	/**
+	 * Write built tablebase.
+	 * @param file Tablebase file.
+	 * @throws IOException When file can't be written.
+	 */
+	public void write(File file) throws IOException
+	{
+		RandomAccessFile output = new RandomAccessFile(file, "rw");
+		
+		try
+		{
+			FileChannel channel = output.getChannel();
+			ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+			
+			output.setLength(0);
+			buffer.putInt(Tablebase.MAGIC);
+			buffer.putShort(Tablebase.VERSION);
+			buffer.put((byte) tiles);
+			buffer.put((byte) base);
+			buffer.putLong(index_count);
+			buffer.putInt(canonical_count);
+			buffer.putInt(0);
+			
+			for (int word = 0; word < words; word++)
+			{
+				if (buffer.remaining() < 4)
+					drain(buffer, channel);
+				
+				buffer.putInt(rank[word]);
+			}
+			
+			for (int word = 0; word < words; word++)
+			{
+				if (buffer.remaining() < 8)
+					drain(buffer, channel);
+				
+				buffer.putLong(bitmap[word]);
+			}
+			
+			for (int k = 0; k < canonical_count; k++)
+			{
+				if (buffer.remaining() < 2)
+					drain(buffer, channel);
+				
+				buffer.putChar(Tablebase.encode(values[k], moves[k]));
+			}
+			
+			drain(buffer, channel);
+		}
+		finally
+		{
+			output.close();
+		}
+	}
+	
+	/**
+	 * Write buffer contents to channel.
+	 */
+	private static void drain(ByteBuffer buffer, FileChannel channel) throws IOException
+	{
+		buffer.flip();
+		
+		while (buffer.hasRemaining())
+			channel.write(buffer);
+		
+		buffer.clear();
+	}
+	
+	/**
+	 * Get win probability of a new game (two numbers on an empty grid) under optimal play.
+	 * @return Average value over starting positions.
+	 */
+	public float getStartProbability()
+	{
+		float sum = 0.0f;
+		int count = 0;
+		
+		for (int a = 0; a < cells; a++)
+			for (int b = a + 1; b < cells; b++)
+			{
+				long canonical = Long.MAX_VALUE;
+				
+				for (int s = 0; s < Tablebase.SYMMETRIES; s++)
+					canonical = Math.min(canonical, weights[s][a] + weights[s][b]);
+				
+				sum += values[rank(canonical)];
+				count++;
+			}
+		
+		return sum / count;
+	}
+	
+	public static void main(String[] args) throws IOException, InterruptedException
+	{
+		int tiles = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+		int winning_number = args.length > 1 ? Integer.parseInt(args[1]) : 256;
+		int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		File file = new File(args.length > 3 ? args[3] : "tablebase_" + tiles + "x" + tiles + "_" + winning_number + ".tb");
+		
+		long start = System.nanoTime();
+		TablebaseBuilder builder = new TablebaseBuilder(tiles, winning_number, threads);
+		builder.build();
+		builder.write(file);
+		
+		System.out.printf("%dx%d to %d: %d canonical positions of %d, built in %.1f s on %d threads%n", tiles, tiles,
+				winning_number, builder.getCanonicalCount(), builder.index_count, (System.nanoTime() - start) / 1e9, threads);
+		System.out.printf("Win probability of a new game under optimal play: %.4f%n", builder.getStartProbability());
+		System.out.println("Written " + file + " (" + file.length() / 1024 + " KB)");
+	}
+}
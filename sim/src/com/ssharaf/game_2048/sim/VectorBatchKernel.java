@@ -0,0 +1,111 @@
+package com.ssharaf.game_2048.sim;
+
+import com.ssharaf.game_2048.BitBoard;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * BatchMoveKernel on the Vector API: each vector holds one cell of as many
+ * boards as the CPU's widest int vector fits (8 with AVX2, 16 with AVX-512).
+ * Boards left over after the last full vector go through the scalar code.
+ *
+ * Only loaded through BatchMoveKernel.create(), and needs
+ * --add-modules jdk.incubator.vector to compile and run.
+ *
+ * @author SAMEH SHARAF
+ *
+ */
+
+final class VectorBatchKernel extends BatchMoveKernel
+{
+	private final static VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+	
+	private final static IntVector ZERO = IntVector.zero(SPECIES);
+	private final static IntVector ONE = IntVector.broadcast(SPECIES, 1);
+	
+	@Override
+	public int move(BoardBatch batch, int direction)
+	{
+		int[][] lines = LINES[direction];
+		int[] cells = batch.cells;
+		int size = batch.size;
+		int bound = SPECIES.loopBound(size);
+		int count = 0;
+		
+		for (int b = 0; b < bound; b += SPECIES.length())
+		{
+			IntVector gain = ZERO;
+			VectorMask<Integer> changed = SPECIES.maskAll(false);
+			
+			for (int k = 0; k < BitBoard.TILES; k++)
+			{
+				int i0 = lines[k][0] * size + b;
+				int i1 = lines[k][1] * size + b;
+				int i2 = lines[k][2] * size + b;
+				int i3 = lines[k][3] * size + b;
+				IntVector a0 = IntVector.fromArray(SPECIES, cells, i0);
+				IntVector a1 = IntVector.fromArray(SPECIES, cells, i1);
+				IntVector a2 = IntVector.fromArray(SPECIES, cells, i2);
+				IntVector a3 = IntVector.fromArray(SPECIES, cells, i3);
+				IntVector x0 = a0, x1 = a1, x2 = a2, x3 = a3;
+				VectorMask<Integer> m;
+				
+				// Squeeze out empty tiles, three sweeps move a tile across the whole line.
+				for (int sweep = 0; sweep < BitBoard.TILES - 1; sweep++)
+				{
+					m = x0.compare(VectorOperators.EQ, 0);
+					x0 = x0.blend(x1, m);
+					x1 = x1.blend(ZERO, m);
+					m = x1.compare(VectorOperators.EQ, 0);
+					x1 = x1.blend(x2, m);
+					x2 = x2.blend(ZERO, m);
+					m = x2.compare(VectorOperators.EQ, 0);
+					x2 = x2.blend(x3, m);
+					x3 = x3.blend(ZERO, m);
+				}
+				
+				// Merge pairs, starting from the side tiles move to.
+				m = x0.compare(VectorOperators.NE, 0).and(x0.compare(VectorOperators.EQ, x1));
+				x0 = x0.add(ONE, m);
+				gain = gain.add(ONE.lanewise(VectorOperators.LSHL, x0), m);
+				x1 = x1.blend(x2, m);
+				x2 = x2.blend(x3, m);
+				x3 = x3.blend(ZERO, m);
+				
+				m = x1.compare(VectorOperators.NE, 0).and(x1.compare(VectorOperators.EQ, x2));
+				x1 = x1.add(ONE, m);
+				gain = gain.add(ONE.lanewise(VectorOperators.LSHL, x1), m);
+				x2 = x2.blend(x3, m);
+				x3 = x3.blend(ZERO, m);
+				
+				m = x2.compare(VectorOperators.NE, 0).and(x2.compare(VectorOperators.EQ, x3));
+				x2 = x2.add(ONE, m);
+				gain = gain.add(ONE.lanewise(VectorOperators.LSHL, x2), m);
+				x3 = x3.blend(ZERO, m);
+				
+				changed = changed.or(x0.compare(VectorOperators.NE, a0)).or(x1.compare(VectorOperators.NE, a1))
+						.or(x2.compare(VectorOperators.NE, a2)).or(x3.compare(VectorOperators.NE, a3));
+				
+				x0.intoArray(cells, i0);
+				x1.intoArray(cells, i1);
+				x2.intoArray(cells, i2);
+				x3.intoArray(cells, i3);
+			}
+			
+			IntVector.fromArray(SPECIES, batch.scores, b).add(gain).intoArray(batch.scores, b);
+			ZERO.blend(ONE, changed).intoArray(batch.changed, b);
+			count += changed.trueCount();
+		}
+		
+		return count + move_boards(batch, direction, bound);
+	}
+	
+	@Override
+	public String getName()
+	{
+		return "vector " + SPECIES.length() + " lanes";
+	}
+}
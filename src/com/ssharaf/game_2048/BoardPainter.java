@@ -0,0 +1,431 @@
+package com.ssharaf.game_2048;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Paint.FontMetrics;
+import android.graphics.Paint.Style;
+import android.graphics.Rect;
+import android.graphics.RectF;
+
+/**
+ * Draws game's board parts (background, tiles, score board) on a canvas.
+ * Shared by GameView and GameSurfaceView.
+ *
+ * Colors are resolved once, paints and text positions are set up once per
+ * size, and drawing allocates no objects.
+ *
+ * Tile faces (background and number) are rasterized once per size into an
+ * atlas bitmap, one face per tile reachable before the winning number, in
+ * normal and new number colors. Each tile then costs a single drawBitmap()
+ * instead of a rectangle and anti-aliased text.
+ *
+ * @author SAMEH SHARAF
+ *
+ */
+
+public class BoardPainter
+{
+	// Number of tile exponents drawn (any int tile).
+	private final static int EXPONENTS = 32;
+	
+	// Score labels.
+	private final static String SCORE = "Score: ";
+	private final static String BEST_SCORE = "Best Score: ";
+	
+	// Paints used to draw background, board and tiles, created in set_size().
+	private Paint background_paint;
+	private Paint tile_paint;
+	private Paint numbers_paint;
+	private Paint board_text_paint;
+	
+	// Tile colors indexed by tile exponent, text colors.
+	private int[] tile_colors;
+	private int background_color;
+	private int text_color;
+	private int new_number_color;
+	
+	// Tile labels indexed by tile exponent.
+	private String[] tile_labels = new String[EXPONENTS];
+	
+	// Score texts, label followed by digits written at each draw.
+	private char[] score_text = new char[SCORE.length() + 11];
+	private char[] best_score_text = new char[BEST_SCORE.length() + 11];
+	
+	// Screen's width & height.
+	private int width;
+	private int height;
+	
+	// Game tile dimension.
+	private int tiles;
+	
+	// Tile size.
+	private int tile_size;
+	
+	// Tile's margin
+	private int margin = 5;
+	
+	// Text scale to tile.
+	private float text_scale = 0.55f;
+	
+	// Text scale to board.
+	private float board_scale = 0.25f;
+	
+	// Number offsets inside a tile.
+	private float number_x;
+	private float number_y;
+	
+	// Score board text positions.
+	private float board_x;
+	private float score_y;
+	private float best_score_y;
+	
+	// Score board area.
+	private Rect score_bounds = new Rect();
+	
+	// Highest tile exponent in atlas.
+	private int max_exponent;
+	
+	// Tile faces, (max_exponent + 1) faces for each text color, in atlas_columns columns.
+	private Bitmap atlas;
+	private int atlas_columns;
+	
+	// Atlas face and screen tile of current drawBitmap().
+	private Rect atlas_source = new Rect();
+	private RectF atlas_target = new RectF();
+	private Paint atlas_paint;
+	
+	/**
+	 * Constructor for board painter.
+	 * @param resources Resources holding game colors.
+	 * @param tiles Game grid dimension.
+	 * @param winning_number Game's target number, highest tile number ever drawn from atlas.
+	 */
+	public BoardPainter(Resources resources, int tiles, int winning_number)
+	{
+		this.tiles = tiles;
+		
+		// Game ends on first tile reaching winning number, no higher tile is reachable.
+		this.max_exponent = Math.min(EXPONENTS - 1, 32 - Integer.numberOfLeadingZeros(Math.max(1, winning_number - 1)));
+		
+		// Resolve colors and score labels once
+		init_colors(resources);
+		SCORE.getChars(0, SCORE.length(), score_text, 0);
+		BEST_SCORE.getChars(0, BEST_SCORE.length(), best_score_text, 0);
+	}
+	
+	/**
+	 * Resolve colors of all tile exponents once, so drawing never looks up resources.
+	 */
+	private void init_colors(Resources resources)
+	{
+		tile_colors = new int[EXPONENTS];
+		
+		for (int exponent = 0; exponent < EXPONENTS; exponent++)
+			tile_colors[exponent] = resources.getColor(R.color.tile_normal);
+		
+		tile_colors[3] = resources.getColor(R.color.tile_8);
+		tile_colors[4] = resources.getColor(R.color.tile_16);
+		tile_colors[5] = resources.getColor(R.color.tile_32);
+		tile_colors[6] = resources.getColor(R.color.tile_64);
+		tile_colors[7] = resources.getColor(R.color.tile_128);
+		tile_colors[8] = resources.getColor(R.color.tile_256);
+		tile_colors[9] = resources.getColor(R.color.tile_512);
+		tile_colors[10] = resources.getColor(R.color.tile_1024);
+		tile_colors[11] = resources.getColor(R.color.tile_2048);
+		
+		background_color = resources.getColor(R.color.background);
+		text_color = resources.getColor(R.color.text_normal);
+		new_number_color = resources.getColor(R.color.new_number);
+	}
+	
+	/**
+	 * Create paints and measure text positions for a drawing area size.
+	 * @param width Drawing area width.
+	 * @param height Drawing area height.
+	 */
+	public void set_size(int width, int height)
+	{
+		this.width = width;
+		this.height = height;
+		this.tile_size = (width < height ? width : height) / tiles;
+		
+		background_paint = new Paint();
+		background_paint.setColor(background_color);
+		
+		tile_paint = new Paint();
+		
+		/* 
+		 * Define default color and style for numbers
+		 */
+		numbers_paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+		numbers_paint.setColor(text_color);
+		numbers_paint.setStyle(Style.FILL);
+		numbers_paint.setTextSize(tile_size * text_scale);
+		numbers_paint.setTextScaleX(1.0f);
+		numbers_paint.setTextAlign(Paint.Align.CENTER);
+		
+		// Set number in center of the tile
+		FontMetrics fontMetrics = numbers_paint.getFontMetrics();
+		
+		// Centering in X: use alignment (and X at midpoint)
+		number_x = tile_size / 2;
+		
+		// Centering in Y: measure ascent/descent first
+		number_y = tile_size / 2 - (fontMetrics.ascent + fontMetrics.descent) / 2;
+		
+		// Display Score board
+		float board_height = height - (tile_size * tiles + margin * (tiles + 1));
+		float board_width = width - (tile_size * tiles + margin * (tiles + 1));
+		
+		// Define color and style for numbers
+		board_text_paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+		board_text_paint.setColor(Color.BLACK); // #### Must be added to resources
+		board_text_paint.setStyle(Style.FILL);
+		board_text_paint.setTextSize(tile_size * board_scale);
+		board_text_paint.setTextScaleX(1.0f);
+		board_text_paint.setTextAlign(Paint.Align.CENTER);
+		
+		FontMetrics board_fontMetrics = board_text_paint.getFontMetrics();
+		
+		// Centering in X: use alignment (and X at midpoint)
+		board_x = (width < height ? (width / 2) 
+				: ((width - board_width * 2 / 3) - (board_fontMetrics.ascent + board_fontMetrics.descent) / 2) );
+		
+		// Centering in Y: measure ascent/descent first
+		score_y = (width < height ? (height - board_height * 2 / 3) - (board_fontMetrics.ascent + board_fontMetrics.descent) / 2
+				: (height / 3));
+		best_score_y = (width < height ? (height - board_height / 3) - (board_fontMetrics.ascent + board_fontMetrics.descent) / 2
+				: height * 2 / 3);
+		
+		// Score board fills the space below (portrait) or beside (landscape) game grid.
+		if (width < height)
+			score_bounds.set(0, tile_size * tiles, width, height);
+		else
+			score_bounds.set(tile_size * tiles, 0, width, height);
+		
+		init_atlas();
+	}
+	
+	/**
+	 * Rasterize all reachable tile faces for current tile size.
+	 */
+	private void init_atlas()
+	{
+		if (atlas != null)
+		{
+			atlas.recycle();
+			atlas = null;
+		}
+		
+		if (tile_size == 0)
+			return;
+		
+		// Keep atlas roughly square: two faces (normal and new number) for each exponent.
+		int faces = 2 * (max_exponent + 1);
+		atlas_columns = (int) Math.ceil(Math.sqrt(faces));
+		
+		atlas = Bitmap.createBitmap(atlas_columns * tile_size, ((faces + atlas_columns - 1) / atlas_columns) * tile_size, Bitmap.Config.ARGB_8888);
+		atlas_paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+		
+		Canvas canvas = new Canvas(atlas);
+		
+		for (int face = 0; face < faces; face++)
+		{
+			int exponent = face % (max_exponent + 1);
+			
+			draw_tile_face(canvas, (face % atlas_columns) * tile_size, (face / atlas_columns) * tile_size,
+					exponent == 0 ? 0 : 1 << exponent, face > max_exponent);
+		}
+	}
+	
+	/**
+	 * Check if painter is ready to draw.
+	 * @return Flag indicates a non-empty size was set.
+	 */
+	public boolean isReady()
+	{
+		return tile_size > 0;
+	}
+	
+	/**
+	 * Get tile size.
+	 * @return Tile size in pixels, margins included.
+	 */
+	public int getTileSize()
+	{
+		return tile_size;
+	}
+	
+	/**
+	 * Get score board area.
+	 * @return Score board bounds (don't modify).
+	 */
+	public Rect getScoreBounds()
+	{
+		return score_bounds;
+	}
+	
+	/**
+	 * Fill an area with background color.
+	 * @param canvas Canvas to draw on.
+	 * @param bounds Area to be filled.
+	 */
+	public void draw_background(Canvas canvas, Rect bounds)
+	{
+		canvas.drawRect(bounds, background_paint);
+	}
+	
+	/**
+	 * Fill whole drawing area with background color.
+	 * @param canvas Canvas to draw on.
+	 */
+	public void draw_background(Canvas canvas)
+	{
+		canvas.drawRect(0.0f, 0.0f, width, height, background_paint);
+	}
+	
+	/**
+	 * Draw one tile with its number.
+	 * @param canvas Canvas to draw on.
+	 * @param x Left side of tile, margins included.
+	 * @param y Top side of tile, margins included.
+	 * @param number Tile number, 0 for empty tile.
+	 * @param isNewNumber Flag indicates number was just added to grid.
+	 * @param scale Tile scale around its center (1 for normal size).
+	 */
+	public void draw_tile(Canvas canvas, float x, float y, int number, boolean isNewNumber, float scale)
+	{
+		int exponent = exponent(number);
+		
+		if (atlas != null && exponent <= max_exponent)
+		{
+			int face = exponent + (isNewNumber ? max_exponent + 1 : 0);
+			int left = (face % atlas_columns) * tile_size;
+			int top = (face / atlas_columns) * tile_size;
+			float inset = tile_size * (1.0f - scale) / 2;
+			
+			atlas_source.set(left, top, left + tile_size, top + tile_size);
+			atlas_target.set(x + inset, y + inset, x + tile_size - inset, y + tile_size - inset);
+			canvas.drawBitmap(atlas, atlas_source, atlas_target, atlas_paint);
+			
+			return;
+		}
+		
+		// Tiles missing from atlas are drawn the slow way.
+		if (scale != 1.0f)
+		{
+			canvas.save();
+			canvas.scale(scale, scale, x + tile_size / 2, y + tile_size / 2);
+		}
+		
+		draw_tile_face(canvas, x, y, number, isNewNumber);
+		
+		if (scale != 1.0f)
+			canvas.restore();
+	}
+	
+	/**
+	 * Draw one tile's background and number.
+	 * @param canvas Canvas to draw on.
+	 * @param x Left side of tile, margins included.
+	 * @param y Top side of tile, margins included.
+	 * @param number Tile number, 0 for empty tile.
+	 * @param isNewNumber Flag indicates number was just added to grid.
+	 */
+	private void draw_tile_face(Canvas canvas, float x, float y, int number, boolean isNewNumber)
+	{
+		tile_paint.setColor(tile_colors[exponent(number)]);
+		canvas.drawRect(x + margin, y + margin, x + tile_size - margin, y + tile_size - margin, tile_paint);
+		
+		if (number != 0)
+		{
+			// Apply unique text color on new number added to game grid.
+			numbers_paint.setColor(isNewNumber ? new_number_color : text_color);
+			
+			// Draw number on screen
+			canvas.drawText(tile_label(number), x + number_x, y + number_y, numbers_paint);
+		}
+	}
+	
+	/**
+	 * Draw score and best score on score board.
+	 * @param canvas Canvas to draw on.
+	 * @param score Game score.
+	 * @param best_score Best score.
+	 */
+	public void draw_scores(Canvas canvas, int score, int best_score)
+	{
+		// Draw Score Text
+		int length = format_number(score_text, SCORE.length(), score);
+		canvas.drawText(score_text, 0, length, board_x, score_y, board_text_paint);
+		
+		// Draw Best Score Text
+		length = format_number(best_score_text, BEST_SCORE.length(), best_score);
+		canvas.drawText(best_score_text, 0, length, board_x, best_score_y, board_text_paint);
+	}
+	
+	/**
+	 * Get exponent of a tile number.
+	 * @param number Tile number (power of 2), or 0 for empty tile.
+	 * @return Exponent, 0 for empty tile.
+	 */
+	private static int exponent(int number)
+	{
+		return number == 0 ? 0 : Integer.numberOfTrailingZeros(number);
+	}
+	
+	/**
+	 * Get text of a tile number. Each label is created once, on first use.
+	 * @param number Tile number (power of 2).
+	 * @return Tile label.
+	 */
+	private String tile_label(int number)
+	{
+		int exponent = exponent(number);
+		
+		if (tile_labels[exponent] == null)
+			tile_labels[exponent] = String.valueOf(number);
+		
+		return tile_labels[exponent];
+	}
+	
+	/**
+	 * Write a number's digits in a text buffer.
+	 * @param text Text buffer, long enough for any int.
+	 * @param start Index of first digit.
+	 * @return Text length after number.
+	 */
+	private static int format_number(char[] text, int start, int number)
+	{
+		int end = start;
+		long value = number;
+		
+		if (value < 0)
+		{
+			text[end++] = '-';
+			value = -value;
+		}
+		
+		int first = end;
+		
+		do
+		{
+			text[end++] = (char) ('0' + value % 10);
+			value /= 10;
+		}
+		while (value != 0);
+		
+		// Digits were written lowest first.
+		for (int k = first, l = end - 1; k < l; k++, l--)
+		{
+			char temp = text[k];
+			text[k] = text[l];
+			text[l] = temp;
+		}
+		
+		return end;
+	}
+}
@@ -2,8 +2,10 @@ package com.ssharaf.game_2048;
 
 import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.FileWriter;
+import java.io.IOException;
 import java.util.ArrayList;
 import android.os.Environment;
 import android.util.Log;
@@ -12,6 +14,12 @@ import android.util.Log;
  * This class is responsible for reading from and writing 
  * into application's log file.
  * 
+ * Best scores are written behind: saveBestScore() only keeps the latest
+ * score, and a background thread writes it at most once every
+ * FLUSH_INTERVAL_MS (or at once on flush()). Each write goes to a
+ * temporary file which then replaces log file, so a crash never leaves
+ * a half written log file.
+ * 
  * @author SAMEH SHARAF
  *
  */
@@ -27,10 +35,37 @@ public class FileManager {
 	// Constants for folder and file names for application.
 	private static final String FOLDER_NAME = "Game 2048";
 	private static final String FILE_NAME = "game.log";
+	private static final String SAVE_FILE_NAME = "game.sav";
+	private static final String JOURNAL_FILE_NAME = "game.jnl";
+	private static final String TABLEBASE_FILE_FORMAT = "tablebase_%dx%d_%d.tb";
+	private static final String NETWORK_FILE_NAME = "ntuple.net";
 	
 	// Tag name for debugging purposes.
 	private static final String TAG = "2048 Game File Manager";
 	
+	// Shortest time between two best score writes, in milliseconds.
+	private static final long FLUSH_INTERVAL_MS = 2000;
+	
+	// Suffix of temporary file written before replacing log file.
+	private static final String TEMP_SUFFIX = ".tmp";
+	
+	// Best score waiting to be written, and flag telling there is one.
+	private int pending_best_score;
+	private boolean isPending;
+	
+	// Time of last best score write (System.currentTimeMillis()).
+	private long last_write_time;
+	
+	// Background writer thread, started with first best score.
+	private Thread writer;
+	private boolean isRunning;
+	
+	// Guards pending score, writer state and last write time.
+	private final Object lock = new Object();
+	
+	// Held while taking a pending score and writing it, so an older score never overwrites a newer one.
+	private final Object file_lock = new Object();
+	
 	/**
 	 * Default constructor
 	 */
@@ -63,7 +98,7 @@ public class FileManager {
 				Log.i(TAG, "Create log file");
 				
 				// Initialize best score.
-				writeFile("0", false);
+				writeFileAtomic("0");
 			} 
 			catch(Exception e)
 			{
@@ -121,4 +156,212 @@ public class FileManager {
 			Log.e(TAG, e.getMessage());
 		}
 	}
+	
+	/**
+	 * Get file holding saved game in progress.
+	 * @return Save file (may not exist yet).
+	 */
+	public File getSaveFile()
+	{
+		return new File(folderPath, SAVE_FILE_NAME);
+	}
+	
+	/**
+	 * Get file holding move journal of game being played.
+	 * @return Journal file (may not exist yet).
+	 */
+	public File getJournalFile()
+	{
+		return new File(folderPath, JOURNAL_FILE_NAME);
+	}
+	
+	/**
+	 * Get tablebase file for a grid dimension and target number, as named by TablebaseBuilder.
+	 * @param tiles Grid dimension.
+	 * @param winning_number Target number.
+	 * @return Tablebase file (may not exist).
+	 */
+	public File getTablebaseFile(int tiles, int winning_number)
+	{
+		return new File(folderPath, String.format(TABLEBASE_FILE_FORMAT, tiles, tiles, winning_number));
+	}
+	
+	/**
+	 * Get n-tuple network file, as written by NTupleTrainer.
+	 * @return Network file (may not exist).
+	 */
+	public File getNetworkFile()
+	{
+		return new File(folderPath, NETWORK_FILE_NAME);
+	}
+	
+	/**
+	 * Queue best score to be written by background thread. Returns at once;
+	 * only the latest of scores saved close together is written.
+	 * @param best_score Best score to be written.
+	 */
+	public void saveBestScore(int best_score)
+	{
+		synchronized (lock)
+		{
+			pending_best_score = best_score;
+			isPending = true;
+			
+			if (writer == null)
+			{
+				isRunning = true;
+				writer = new Thread("2048 best score writer")
+				{
+					@Override
+					public void run()
+					{
+						write_loop();
+					}
+				};
+				writer.setDaemon(true);
+				writer.start();
+			}
+			
+			lock.notifyAll();
+		}
+	}
+	
+	/**
+	 * Write pending best score now, on calling thread (call from onPause).
+	 */
+	public void flush()
+	{
+		write_pending();
+	}
+	
+	/**
+	 * Write pending best score and stop background writer.
+	 */
+	public void close()
+	{
+		synchronized (lock)
+		{
+			isRunning = false;
+			lock.notifyAll();
+		}
+		
+		write_pending();
+	}
+	
+	/**
+	 * Background writer: wait for a best score, wait out rest of flush interval
+	 * (collecting newer scores meanwhile), then write latest one.
+	 */
+	private void write_loop()
+	{
+		try
+		{
+			while (true)
+			{
+				synchronized (lock)
+				{
+					while (isRunning && !isPending)
+						lock.wait();
+					
+					if (!isRunning)
+						return;
+					
+					long wait = last_write_time + FLUSH_INTERVAL_MS - System.currentTimeMillis();
+					
+					while (isRunning && wait > 0)
+					{
+						lock.wait(wait);
+						wait = last_write_time + FLUSH_INTERVAL_MS - System.currentTimeMillis();
+					}
+				}
+				
+				write_pending();
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Log.e(TAG, "Best score writer interrupted");
+		}
+		finally
+		{
+			synchronized (lock)
+			{
+				writer = null;
+			}
+		}
+	}
+	
+	/**
+	 * Write pending best score, if any, replacing log file.
+	 */
+	private void write_pending()
+	{
+		synchronized (file_lock)
+		{
+			int best_score;
+			
+			synchronized (lock)
+			{
+				if (!isPending)
+					return;
+				
+				best_score = pending_best_score;
+				isPending = false;
+				last_write_time = System.currentTimeMillis();
+			}
+			
+			writeFileAtomic(String.valueOf(best_score));
+		}
+	}
+	
+	/**
+	 * Replace log file contents with input text: text is written and synced to a
+	 * temporary file first, which is then renamed over log file.
+	 * @param text Input text to be written in text file.
+	 * @return Flag indicates log file was replaced.
+	 */
+	public boolean writeFileAtomic(String text)
+	{
+		File temp = new File(logFilePath + TEMP_SUFFIX);
+		FileOutputStream stream = null;
+		
+		try
+		{
+			stream = new FileOutputStream(temp);
+			stream.write((text + "\r\n").getBytes("UTF-8"));
+			stream.flush();
+			
+			// Make sure data reached storage before rename makes it the log file.
+			stream.getFD().sync();
+			stream.close();
+			stream = null;
+			
+			if (!temp.renameTo(new File(logFilePath)))
+			{
+				Log.e(TAG, "Can't replace log file");
+				return false;
+			}
+			
+			return true;
+		}
+		catch (IOException e)
+		{
+			Log.e(TAG, String.valueOf(e.getMessage()));
+			return false;
+		}
+		finally
+		{
+			if (stream != null)
+			{
+				try
+				{
+					stream.close();
+				}
+				catch (IOException e)
+				{
+					// Already failed, nothing more to do.
+				}
+			}
+		}
+	}
 }
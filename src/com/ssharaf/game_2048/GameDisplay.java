@@ -0,0 +1,32 @@
+package com.ssharaf.game_2048;
+
+import android.view.View;
+
+/**
+ * Screen showing a game, implemented by GameView (drawn on UI thread) and
+ * GameSurfaceView (animated, drawn on its own thread).
+ *
+ * @author SAMEH SHARAF
+ *
+ */
+
+public interface GameDisplay
+{
+	/**
+	 * Show a game state, redrawing what changed since previous one. Called on UI thread.
+	 * @param snapshot Game state to be shown.
+	 */
+	public void show(GameSnapshot snapshot);
+	
+	/**
+	 * Set screen orientation in order to re-draw game grid
+	 * @param orientation Orientation of screen.
+	 */
+	public void setOrientation(int orientation);
+	
+	/**
+	 * Get view to be set as activity's content.
+	 * @return Display's view.
+	 */
+	public View getView();
+}
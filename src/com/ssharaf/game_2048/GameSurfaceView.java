@@ -0,0 +1,480 @@
+package com.ssharaf.game_2048;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.util.Log;
+import android.view.SurfaceHolder;
+import android.view.SurfaceView;
+import android.view.View;
+
+/**
+ * Animated game screen. Drawing happens on a dedicated render thread, so the
+ * UI thread only handles input and publishes game states.
+ *
+ * Each published state is compared with the previous one: when it follows
+ * from the game's last move (plus a new number), tiles slide from their old
+ * tiles to their new ones, then merged tiles pop and the new number grows.
+ * Any other change (new game, loaded game) is shown at once.
+ *
+ * Frames are paced to 60 per second while animating. lockCanvas() and
+ * unlockCanvasAndPost() wait for the display's buffers, which keeps drawing
+ * in step with screen refreshes. The thread sleeps while nothing changes.
+ *
+ * @author SAMEH SHARAF
+ *
+ */
+
+public class GameSurfaceView extends SurfaceView implements SurfaceHolder.Callback, GameDisplay
+{
+	// Tag name for debugging.
+	private static final String TAG = "2048 GameSurfaceView";
+	
+	// Frame period (60 frames per second), in nanoseconds.
+	private final static long FRAME_NANOS = 1000000000L / 60;
+	
+	// Tiles slide duration, then merged tiles pop and new number grows, in nanoseconds.
+	private final static long SLIDE_NANOS = 100000000L;
+	private final static long POP_NANOS = 100000000L;
+	
+	// Extra scale of merged tiles in middle of their pop.
+	private final static float POP_SCALE = 0.2f;
+	
+	// Game tile dimension.
+	private int tiles;
+	
+	// Game's target number, sets tiles in painter's atlas.
+	private int winning_number;
+	
+	// Draws background, board and tiles. Created by UI thread with first state, then only used by render thread.
+	private BoardPainter painter;
+	
+	// Thread drawing frames while surface exists.
+	private RenderThread render_thread;
+	
+	// Guards everything shared by UI and render threads below.
+	private final Object lock = new Object();
+	
+	// State published by UI thread, and state drawn by render thread.
+	private Frame pending_frame;
+	private Frame frame;
+	private boolean isFramePending;
+	
+	// Surface size to be applied by render thread.
+	private int pending_width;
+	private int pending_height;
+	private boolean isSizePending;
+	
+	// Flag indicates render thread should keep running.
+	private boolean isRunning;
+	
+	// Grid last published, and scratch grid, stored as (row * tiles + column). Only used by UI thread.
+	private int[] shown_grid;
+	private int[] grid;
+	
+	// Flag indicates next published state must not be animated (new buffers).
+	private boolean isFullRedraw;
+	
+	// Screen orientation.
+	private int screen_orientation;
+	
+	/**
+	 * One game state to be drawn, with the move leading to it.
+	 */
+	private static class Frame
+	{
+		// Grid dimension.
+		int tiles;
+		
+		// Grid before move, where each of its tiles goes, grid after move and new number.
+		int[] before;
+		int[] destinations;
+		int[] after;
+		
+		// Flag of each tile telling if two tiles merged into it.
+		boolean[] isMerged;
+		
+		// New number's tile, as highlighted and as just added by this move (-1 when none).
+		int new_number;
+		int spawned;
+		
+		int score;
+		int best_score;
+		
+		// Flag indicates tiles slide from before to after, and animation start time.
+		boolean isAnimated;
+		long start;
+		
+		Frame(int tiles)
+		{
+			int cells = tiles * tiles;
+			
+			this.tiles = tiles;
+			before = new int[cells];
+			destinations = new int[cells];
+			after = new int[cells];
+			isMerged = new boolean[cells];
+		}
+		
+		/**
+		 * Copy another frame, without allocating.
+		 */
+		void copy_from(Frame other)
+		{
+			System.arraycopy(other.before, 0, before, 0, before.length);
+			System.arraycopy(other.destinations, 0, destinations, 0, destinations.length);
+			System.arraycopy(other.after, 0, after, 0, after.length);
+			System.arraycopy(other.isMerged, 0, isMerged, 0, isMerged.length);
+			new_number = other.new_number;
+			spawned = other.spawned;
+			score = other.score;
+			best_score = other.best_score;
+			isAnimated = other.isAnimated;
+			start = other.start;
+		}
+	}
+	
+	/**
+	 * Thread drawing frames until surface is destroyed.
+	 */
+	private class RenderThread extends Thread
+	{
+		RenderThread()
+		{
+			super("2048 render");
+		}
+		
+		@Override
+		public void run()
+		{
+			render_loop();
+		}
+	}
+	
+	/**
+	 * GameSurfaceView constructor
+	 * @param context Application context
+	 */
+	public GameSurfaceView(Context context)
+	{
+		super(context);
+		
+		getHolder().addCallback(this);
+	}
+	
+	/**
+	 * Publish a game state to render thread, animating last move when state follows from previous one.
+	 * @param snapshot Game state to be shown.
+	 */
+	public void show(GameSnapshot snapshot)
+	{
+		// First state, or grid size or reachable tiles changed: start over with new buffers and atlas.
+		if (painter == null || snapshot.getTiles() != tiles || snapshot.getWinningNumber() != winning_number)
+		{
+			synchronized (lock)
+			{
+				tiles = snapshot.getTiles();
+				winning_number = snapshot.getWinningNumber();
+				painter = new BoardPainter(getResources(), tiles, winning_number);
+				pending_frame = new Frame(tiles);
+				frame = new Frame(tiles);
+				shown_grid = new int[tiles * tiles];
+				grid = new int[tiles * tiles];
+				
+				if (pending_width > 0)
+					isSizePending = true;
+			}
+			
+			isFullRedraw = true;
+		}
+		
+		snapshot.copy_grid(grid);
+		
+		synchronized (lock)
+		{
+			Frame next = pending_frame;
+			
+			System.arraycopy(shown_grid, 0, next.before, 0, shown_grid.length);
+			next.isAnimated = !isFullRedraw && snapshot.getLastMove() != 0
+					&& TileSlides.slide(shown_grid, tiles, snapshot.getLastMove(), next.destinations, next.after)
+					&& find_spawn(next);
+			
+			System.arraycopy(grid, 0, next.after, 0, grid.length);
+			
+			if (next.isAnimated)
+				find_merges(next);
+			
+			next.new_number = snapshot.get_last_num_row() * tiles + snapshot.get_last_num_col();
+			next.score = snapshot.getScore();
+			next.best_score = snapshot.getBestScore();
+			next.start = System.nanoTime();
+			
+			isFramePending = true;
+			lock.notifyAll();
+		}
+		
+		System.arraycopy(grid, 0, shown_grid, 0, grid.length);
+		isFullRedraw = false;
+	}
+	
+	/**
+	 * Check that current grid is a frame's moved grid plus at most one new number, and find that number.
+	 * @param next Frame holding moved grid in after.
+	 * @return Flag indicates current grid follows from move.
+	 */
+	private boolean find_spawn(Frame next)
+	{
+		next.spawned = -1;
+		
+		for (int cell = 0; cell < grid.length; cell++)
+		{
+			if (grid[cell] == next.after[cell])
+				continue;
+			
+			if (next.after[cell] != 0 || next.spawned != -1)
+				return false;
+			
+			next.spawned = cell;
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Flag tiles that two tiles merged into.
+	 * @param next Animated frame.
+	 */
+	private void find_merges(Frame next)
+	{
+		for (int cell = 0; cell < next.isMerged.length; cell++)
+			next.isMerged[cell] = false;
+		
+		for (int cell = 0; cell < next.before.length; cell++)
+		{
+			int destination = next.destinations[cell];
+			
+			if (destination >= 0 && next.after[destination] != next.before[cell])
+				next.isMerged[destination] = true;
+		}
+	}
+	
+	@Override
+	public void surfaceCreated(SurfaceHolder holder)
+	{
+		Log.i(TAG, "Surface created");
+		
+		synchronized (lock)
+		{
+			isRunning = true;
+		}
+		
+		render_thread = new RenderThread();
+		render_thread.start();
+	}
+	
+	@Override
+	public void surfaceChanged(SurfaceHolder holder, int format, int width, int height)
+	{
+		synchronized (lock)
+		{
+			pending_width = width;
+			pending_height = height;
+			isSizePending = true;
+			lock.notifyAll();
+		}
+	}
+	
+	@Override
+	public void surfaceDestroyed(SurfaceHolder holder)
+	{
+		Log.i(TAG, "Surface destroyed");
+		
+		synchronized (lock)
+		{
+			isRunning = false;
+			lock.notifyAll();
+		}
+		
+		// Surface can't be used once this returns: wait for last frame.
+		boolean isJoined = false;
+		
+		while (!isJoined)
+		{
+			try
+			{
+				render_thread.join();
+				isJoined = true;
+			}
+			catch (InterruptedException e)
+			{
+				// Keep waiting.
+			}
+		}
+		
+		render_thread = null;
+	}
+	
+	/**
+	 * Draw frames while surface exists: as fast as frame rate allows while animating,
+	 * then wait for a new state or size.
+	 */
+	private void render_loop()
+	{
+		SurfaceHolder holder = getHolder();
+		boolean isAnimating = false;
+		
+		// Painter and frame being drawn, replaced together with game object.
+		BoardPainter drawn_painter;
+		Frame drawn_frame;
+		
+		while (true)
+		{
+			synchronized (lock)
+			{
+				try
+				{
+					while (isRunning && !isAnimating && !isFramePending && !isSizePending)
+						lock.wait();
+				}
+				catch (InterruptedException e)
+				{
+					return;
+				}
+				
+				if (!isRunning)
+					return;
+				
+				// Size is applied again to painter created with first state.
+				if (isSizePending && painter != null)
+					painter.set_size(pending_width, pending_height);
+				
+				isSizePending = false;
+				
+				if (isFramePending)
+				{
+					frame.copy_from(pending_frame);
+					isFramePending = false;
+				}
+				
+				drawn_painter = painter;
+				drawn_frame = frame;
+			}
+			
+			// No game state shown yet.
+			if (drawn_painter == null)
+				continue;
+			
+			long frame_start = System.nanoTime();
+			Canvas canvas = holder.lockCanvas();
+			
+			if (canvas == null)
+				continue;
+			
+			try
+			{
+				isAnimating = draw_frame(canvas, drawn_painter, drawn_frame, frame_start);
+			}
+			finally
+			{
+				holder.unlockCanvasAndPost(canvas);
+			}
+			
+			// Don't draw faster than frame rate while animating.
+			long wait = FRAME_NANOS - (System.nanoTime() - frame_start);
+			
+			if (isAnimating && wait > 0)
+			{
+				try
+				{
+					Thread.sleep(wait / 1000000, (int) (wait % 1000000));
+				}
+				catch (InterruptedException e)
+				{
+					return;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Draw a frame of current state.
+	 * @param canvas Canvas to draw on.
+	 * @param painter Painter sized for canvas.
+	 * @param frame State to be drawn.
+	 * @param now Frame time, from System.nanoTime().
+	 * @return Flag indicates animation isn't over, so more frames are needed.
+	 */
+	private boolean draw_frame(Canvas canvas, BoardPainter painter, Frame frame, long now)
+	{
+		if (!painter.isReady())
+			return false;
+		
+		int tiles = frame.tiles;
+		int tile_size = painter.getTileSize();
+		long elapsed = now - frame.start;
+		
+		painter.draw_background(canvas);
+		painter.draw_scores(canvas, frame.score, frame.best_score);
+		
+		// Tiles sliding over an empty grid.
+		if (frame.isAnimated && elapsed < SLIDE_NANOS)
+		{
+			float t = elapsed / (float) SLIDE_NANOS;
+			
+			// Ease out: fast start, slow end.
+			t = t * (2.0f - t);
+			
+			for (int cell = 0; cell < frame.before.length; cell++)
+				painter.draw_tile(canvas, (cell % tiles) * tile_size, (cell / tiles) * tile_size, 0, false, 1.0f);
+			
+			for (int cell = 0; cell < frame.before.length; cell++)
+			{
+				int destination = frame.destinations[cell];
+				
+				if (frame.before[cell] == 0 || destination < 0)
+					continue;
+				
+				float x = (cell % tiles) + ((destination % tiles) - (cell % tiles)) * t;
+				float y = (cell / tiles) + ((destination / tiles) - (cell / tiles)) * t;
+				painter.draw_tile(canvas, x * tile_size, y * tile_size, frame.before[cell], false, 1.0f);
+			}
+			
+			return true;
+		}
+		
+		// Final grid, merged tiles popping and new number growing.
+		float pop = frame.isAnimated && elapsed < SLIDE_NANOS + POP_NANOS ? (elapsed - SLIDE_NANOS) / (float) POP_NANOS : 1.0f;
+		
+		for (int cell = 0; cell < frame.after.length; cell++)
+		{
+			float x = (cell % tiles) * tile_size;
+			float y = (cell / tiles) * tile_size;
+			float scale = 1.0f;
+			
+			if (pop < 1.0f && cell == frame.spawned)
+			{
+				painter.draw_tile(canvas, x, y, 0, false, 1.0f);
+				scale = pop;
+			}
+			else if (pop < 1.0f && frame.isMerged[cell])
+				scale = 1.0f + POP_SCALE * (float) Math.sin(Math.PI * pop);
+			
+			painter.draw_tile(canvas, x, y, frame.after[cell], cell == frame.new_number, scale);
+		}
+		
+		return pop < 1.0f;
+	}
+	
+	public View getView()
+	{
+		return this;
+	}
+	
+	/**
+	 * Set screen orientation in order to re-draw game grid
+	 * @param orientation Orientation of screen.
+	 */
+	public void setOrientation(int orientation)
+	{
+		this.screen_orientation = orientation;
+	}
+}
@@ -2,10 +2,7 @@ package com.ssharaf.game_2048;
 
 import android.content.Context;
 import android.graphics.Canvas;
-import android.graphics.Color;
-import android.graphics.Paint;
-import android.graphics.Paint.FontMetrics;
-import android.graphics.Paint.Style;
+import android.graphics.Rect;
 import android.util.Log;
 import android.view.View;
 
@@ -17,7 +14,7 @@ import android.view.View;
  *
  */
 
-public class GameView extends View
+public class GameView extends View implements GameDisplay
 {	
 	// Tag name for debugging.
 	private static final String TAG = "2048 GameView";
@@ -28,33 +25,34 @@ public class GameView extends View
 	// Application's interface canvas.
 	private Canvas canvas;
 	
-	// Paints used to draw background, board and tiles.
-	private Paint background_paint;
-	private Paint numbers_paint;
-	private Paint board_text_paint;
+	// Draws background, board and tiles.
+	private BoardPainter painter;
+	
+	// Area being drawn.
+	private Rect clip_bounds = new Rect();
+	
+	// Scores and new number tile (row * tiles + column) as last invalidated, to find what must be redrawn.
+	private int drawn_score;
+	private int drawn_best_score;
+	private int drawn_new_number;
+	
+	// Flag indicates whole view must be redrawn (new game object).
+	private boolean isFullRedraw = true;
 	
 	// Screen's width & height.
 	private int width;
 	private int height;
 	
-	// Game's core class.
-	private Game2048 game2048;
+	// Game state being shown, from game worker.
+	private GameSnapshot snapshot;
 	
-	// Tile's margin
-	private int margin;
-	
-	// Game tile dimension.
+	// Game tile dimension and target number.
 	private int tiles;
+	private int winning_number;
 	
 	// Tile size.
 	private int tile_size;
 	
-	// Text scale to tile.
-	private float text_scale;
-	
-	// Text scale to board.
-	private float board_scale = 0.25f;
-	
 	// Board's left margin. 
 	private int board_margin_x = 20;
 	
@@ -75,37 +73,11 @@ public class GameView extends View
 		// Set application context
 		this.context = context;
 		
-		// Create puzzle grid
-		game2048 = new Game2048();
-		
-		// Initialize parameters
+		// Initialize parameters, painter is created with first game state
 		width = 0;
 		height = 0;
-		margin = 5;
-		tiles = game2048.getTiles();
+		tiles = 0;
 		tile_size = 0;
-		text_scale = 0.55f;
-		
-		// Begin new game
-		game2048.begin_game();
-	}
-	
-	/**
-	 * Get game object.
-	 * @return Game object.
-	 */
-	public Game2048 getGame2048()
-	{
-		return game2048;
-	}
-	
-	/**
-	 * Set game object
-	 * @param game2048 Game object to be set.
-	 */
-	public void setGame2048(Game2048 game2048)
-	{
-		this.game2048 = game2048;
 	}
 	
 	@Override
@@ -113,7 +85,12 @@ public class GameView extends View
 	{		Log.i(TAG, "Size Changed");
 		width = w;
 		height = h;
-		tile_size = (width < height ? width : height) / tiles;
+		
+		if (painter != null)
+		{
+			painter.set_size(width, height);
+			tile_size = painter.getTileSize();
+		}
 		
 		super.onSizeChanged(w, h, oldw, oldh);
 	}
@@ -121,126 +98,94 @@ public class GameView extends View
 	@Override
 	protected void onDraw(Canvas canvas)
 	{
-		// Draw Background
-		background_paint = new Paint();
-		background_paint.setColor(getResources().getColor(R.color.background));
-		canvas.drawRect(0.0f, 0.0f, width, height, background_paint);
-		
-		// Draw tiles
-		for (int i = 0; i < tiles; i++)
-			for (int j = 0; j < tiles; j++)
-			{
-				switch(game2048.get_tile(j, i))
-				{
-					case 8:
-						background_paint.setColor(getResources().getColor(R.color.tile_8));
-						break;
-					case 16:
-						background_paint.setColor(getResources().getColor(R.color.tile_16));
-						break;
-					case 32:
-						background_paint.setColor(getResources().getColor(R.color.tile_32));
-						break;
-					case 64:
-						background_paint.setColor(getResources().getColor(R.color.tile_64));
-						break;
-					case 128:
-						background_paint.setColor(getResources().getColor(R.color.tile_128));
-						break;
-					case 256:
-						background_paint.setColor(getResources().getColor(R.color.tile_256));
-						break;
-					case 512:
-						background_paint.setColor(getResources().getColor(R.color.tile_512));
-						break;
-					case 1024:
-						background_paint.setColor(getResources().getColor(R.color.tile_1024));
-						break;
-					case 2048:
-						background_paint.setColor(getResources().getColor(R.color.tile_2048));
-						break;
-					default:
-						background_paint.setColor(getResources().getColor(R.color.tile_normal));
-						break;
-				}
-				
-				canvas.drawRect(tile_size * i + margin, tile_size * j + margin, 
-						tile_size * (i+1) - margin, tile_size * (j+1) - margin, background_paint);
-			}
-		
-		/* 
-		 * Let's draw the numbers!! 
-		 * Define default color and style for numbers
-		 */
-		numbers_paint = new Paint(Paint.ANTI_ALIAS_FLAG);
-		numbers_paint.setColor(getResources().getColor(R.color.text_normal));
-		numbers_paint.setStyle(Style.FILL);
-		numbers_paint.setTextSize(tile_size * text_scale);
-		numbers_paint.setTextScaleX(tile_size / tile_size);
-		numbers_paint.setTextAlign(Paint.Align.CENTER);
-
-		// Set number in center of the tile
-		FontMetrics fontMetrics = numbers_paint.getFontMetrics();
-		
-		// Centering in X: use alignment (and X at midpoint)
-		float x = tile_size / 2;
-		
-		// Centering in Y: measure ascent/descent first
-		float y = tile_size / 2 - (fontMetrics.ascent + fontMetrics.descent) / 2;
+		// Nothing to show or nothing measured yet.
+		if (snapshot == null || !painter.isReady())
+			return;
 		
-		// Let's display those numbers on screen
-		for (int i = 0; i < tiles; i++)
-			for (int j = 0; j < tiles; j++)
-				if (game2048.get_tile(j, i) != 0)
-				{					
-					// Apply unique text color on new number added to game grid.
-					if (j == game2048.get_last_num_row() && i == game2048.get_last_num_col())
-						numbers_paint.setColor(getResources().getColor(R.color.new_number));
-					else
-						numbers_paint.setColor(getResources().getColor(R.color.text_normal));
-					
-					// Draw number on screen
-					canvas.drawText(String.valueOf(game2048.get_tile(j, i)), i * tile_size + x, j * tile_size + y, numbers_paint);
-				}
+		// Only tiles inside invalidated area need drawing.
+		canvas.getClipBounds(clip_bounds);
 		
-		// Display Score board
-		float board_height = height - (tile_size * tiles + margin * (tiles + 1));
-		float board_width = width - (tile_size * tiles + margin * (tiles + 1));
+		int first_column = Math.max(0, clip_bounds.left / tile_size);
+		int last_column = Math.min(tiles, (clip_bounds.right + tile_size - 1) / tile_size);
+		int first_row = Math.max(0, clip_bounds.top / tile_size);
+		int last_row = Math.min(tiles, (clip_bounds.bottom + tile_size - 1) / tile_size);
 		
-		// Define color and style for numbers
-		board_text_paint = new Paint(Paint.ANTI_ALIAS_FLAG);
-		board_text_paint.setColor(Color.BLACK); // #### Must be added to resources
-		board_text_paint.setStyle(Style.FILL);
-		board_text_paint.setTextSize(tile_size * board_scale);
-		board_text_paint.setTextScaleX(1.0f);
-		board_text_paint.setTextAlign(Paint.Align.CENTER);
-		
-		FontMetrics board_fontMetrics = board_text_paint.getFontMetrics();
-		
-		// Centering in X: use alignment (and X at midpoint)
-		float board_x = (width < height ? (width / 2) 
-				: ((width - board_width * 2 / 3) - (board_fontMetrics.ascent + board_fontMetrics.descent) / 2) );
+		// Draw Background
+		painter.draw_background(canvas, clip_bounds);
 		
-		// Centering in Y: measure ascent/descent first
-		float board_y = (width < height ? (height - board_height * 2 / 3) - (board_fontMetrics.ascent + board_fontMetrics.descent) / 2
-				: (height / 3));
+		// Draw tiles, applying unique text color on new number added to game grid.
+		for (int i = first_column; i < last_column; i++)
+			for (int j = first_row; j < last_row; j++)
+				painter.draw_tile(canvas, tile_size * i, tile_size * j, snapshot.get_tile(j, i),
+						j == snapshot.get_last_num_row() && i == snapshot.get_last_num_col(), 1.0f);
 		
 		// Draw Score Text
-		canvas.drawText("Score: " + game2048.getScore(), 
-				board_x, board_y, board_text_paint);
-		
-		// Draw Best Score Text
-		board_y = (width < height ? (height - board_height / 3) - (board_fontMetrics.ascent + board_fontMetrics.descent) / 2
-				: height * 2 / 3);
-		canvas.drawText("Best Score: " + game2048.getBestScore(), board_x, board_y, board_text_paint);
+		if (Rect.intersects(clip_bounds, painter.getScoreBounds()))
+			painter.draw_scores(canvas, snapshot.getScore(), snapshot.getBestScore());
 	}
 	
 	/**
-	 *	This function is called when re-drawing is required to update game screen. 
+	 *	This function is called when re-drawing is required to update game screen.
+	 *	Only tiles changed since previous state and score board (when scores changed) are redrawn.
 	 */
-	public void call_invalidate()
+	public void show(GameSnapshot snapshot)
+	{
+		// First state, or grid size or reachable tiles changed: new painter, whole view redrawn.
+		if (painter == null || snapshot.getTiles() != tiles || snapshot.getWinningNumber() != winning_number)
+		{
+			tiles = snapshot.getTiles();
+			winning_number = snapshot.getWinningNumber();
+			painter = new BoardPainter(getResources(), tiles, winning_number);
+			painter.set_size(width, height);
+			tile_size = painter.getTileSize();
+			isFullRedraw = true;
+		}
+		
+		this.snapshot = snapshot;
+		
+		int new_number = snapshot.get_last_num_row() * tiles + snapshot.get_last_num_col();
+		
+		if (isFullRedraw || tile_size == 0)
+		{
+			isFullRedraw = false;
+			invalidate();
+		}
+		else
+		{
+			for (int k = 0; k < snapshot.getChangedCount(); k++)
+				invalidate_tile(snapshot.getChangedCell(k));
+			
+			// New number's highlight moves to another tile.
+			if (new_number != drawn_new_number)
+			{
+				invalidate_tile(drawn_new_number);
+				invalidate_tile(new_number);
+			}
+			
+			if (snapshot.getScore() != drawn_score || snapshot.getBestScore() != drawn_best_score)
+				invalidate(painter.getScoreBounds());
+		}
+		
+		drawn_score = snapshot.getScore();
+		drawn_best_score = snapshot.getBestScore();
+		drawn_new_number = new_number;
+	}
+	
+	/**
+	 * Request redrawing one tile.
+	 * @param cell Tile stored as (row * tiles + column).
+	 */
+	private void invalidate_tile(int cell)
+	{
+		int left = (cell % tiles) * tile_size;
+		int top = (cell / tiles) * tile_size;
+		
+		invalidate(left, top, left + tile_size, top + tile_size);
+	}
+	
+	public View getView()
 	{
-		invalidate();
+		return this;
 	}
 	
 	/**
@@ -251,4 +196,4 @@ public class GameView extends View
 	{
 		this.screen_orientation = orientation;
 	}
-}
\ No newline at end of file
+}
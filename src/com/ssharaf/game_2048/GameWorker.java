@@ -0,0 +1,386 @@
+package com.ssharaf.game_2048;
+
+import java.io.File;
+import java.io.IOException;
+
+import android.util.Log;
+
+/**
+ * Game logic thread. Swipes are queued by the UI thread and played here:
+ * move, new number, best score saving, win/loss checks and AI hints. After
+ * each batch of queued commands, one immutable snapshot of the game is
+ * handed to a listener for drawing.
+ *
+ * The queue is bounded. When the player swipes faster than moves are
+ * played, the oldest waiting swipe is dropped, and swipes waiting together
+ * are played as one batch with a single snapshot. Other commands (new game,
+ * refresh, undo, redo, hint) are never dropped for a swipe: when the queue
+ * only holds such commands, the incoming command is dropped instead.
+ *
+ * @author SAMEH SHARAF
+ *
+ */
+
+public class GameWorker
+{
+	// Tag name for debugging.
+	private static final String TAG = "2048 GameWorker";
+	
+	// Commands besides move directions (Game2048.MOVE_UP .. MOVE_RIGHT).
+	public final static int COMMAND_HINT = 5;
+	public final static int COMMAND_NEW_GAME = 6;
+	public final static int COMMAND_REFRESH = 7;
+	public final static int COMMAND_UNDO = 8;
+	public final static int COMMAND_REDO = 9;
+	
+	// Most commands waiting at once.
+	private final static int QUEUE_SIZE = 4;
+	
+	/**
+	 * Receiver of game snapshots.
+	 */
+	public interface Listener
+	{
+		/**
+		 * Called on worker thread after each batch of commands changing the game.
+		 * @param snapshot Game state after batch.
+		 */
+		public void on_snapshot(GameSnapshot snapshot);
+	}
+	
+	// Waiting commands, a ring buffer of queue_count items starting at queue_head.
+	private int[] queue = new int[QUEUE_SIZE];
+	private int queue_head;
+	private int queue_count;
+	
+	// Guards queue and running flag.
+	private final Object lock = new Object();
+	
+	// Held while game is played or saved.
+	private final Object game_lock = new Object();
+	
+	// Save game encoder, used under game_lock.
+	private SaveGame save_game = new SaveGame();
+	
+	// Flag indicates worker should keep running.
+	private boolean isRunning;
+	
+	// Thread playing commands.
+	private Thread thread;
+	
+	// Game, AI player, best score file and snapshot receiver. Only used by worker thread.
+	private Game2048 game2048;
+	private ExpectimaxSolver solver;
+	private Tablebase tablebase;
+	private FileManager fileManager;
+	private Listener listener;
+	
+	// Game end as decided by last move, no more moves are played until new game.
+	private boolean isLost;
+	private boolean isWin;
+	
+	/**
+	 * Constructor for game worker.
+	 * @param game2048 Game to be played, owned by worker from now on.
+	 * @param fileManager File manager keeping best score.
+	 * @param listener Receiver of game snapshots.
+	 */
+	public GameWorker(Game2048 game2048, FileManager fileManager, Listener listener)
+	{
+		this.game2048 = game2048;
+		this.fileManager = fileManager;
+		this.listener = listener;
+		
+		// AI player, searching up to one frame per hint.
+		this.solver = new ExpectimaxSolver();
+	}
+	
+	/**
+	 * Set tablebase giving perfect hints for games it covers, call before start().
+	 * @param tablebase Tablebase, or null to only use AI search.
+	 */
+	public void setTablebase(Tablebase tablebase)
+	{
+		this.tablebase = tablebase;
+	}
+	
+	/**
+	 * Set learned value function used by AI search instead of its heuristic, call before start().
+	 * @param network N-tuple network, or null to use heuristic.
+	 */
+	public void setNetwork(NTupleNetwork network)
+	{
+		solver.setNetwork(network);
+	}
+	
+	/**
+	 * Start worker thread.
+	 */
+	public void start()
+	{
+		synchronized (lock)
+		{
+			isRunning = true;
+		}
+		
+		thread = new Thread("2048 game")
+		{
+			@Override
+			public void run()
+			{
+				run_loop();
+			}
+		};
+		thread.start();
+	}
+	
+	/**
+	 * Stop worker thread, dropping waiting commands, and wait for it to end.
+	 */
+	public void stop()
+	{
+		synchronized (lock)
+		{
+			isRunning = false;
+			queue_count = 0;
+			lock.notifyAll();
+		}
+		
+		try
+		{
+			thread.join();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	/**
+	 * Save game to a file, between two moves. Called on UI thread (onPause), waits
+	 * for move being played if any.
+	 * @param file Save file.
+	 */
+	public void save(File file)
+	{
+		synchronized (game_lock)
+		{
+			try
+			{
+				save_game.save(game2048, file);
+			}
+			catch (IOException e)
+			{
+				Log.e(TAG, "Can't save game: " + e.getMessage());
+			}
+		}
+	}
+	
+	/**
+	 * Write a move journal to storage, between two moves. Called on UI thread (onPause),
+	 * waits for move being played if any, as moves remap the journal.
+	 * @param journal Journal of worker's game.
+	 */
+	public void flush(MoveJournal journal)
+	{
+		synchronized (game_lock)
+		{
+			journal.flush();
+		}
+	}
+	
+	/**
+	 * Queue a command. Returns at once, never blocks UI thread.
+	 * @param command Move direction, COMMAND_HINT, COMMAND_NEW_GAME, COMMAND_REFRESH, COMMAND_UNDO or COMMAND_REDO.
+	 */
+	public void submit(int command)
+	{
+		synchronized (lock)
+		{
+			// Moves waiting for old game are meaningless for new one.
+			if (command == COMMAND_NEW_GAME)
+				queue_count = 0;
+			
+			// Queue full: drop oldest swipe, latest swipes matter most.
+			if (queue_count == QUEUE_SIZE && !drop_oldest_move())
+			{
+				Log.i(TAG, "Command dropped: " + command);
+				return;
+			}
+			
+			queue[(queue_head + queue_count) % QUEUE_SIZE] = command;
+			queue_count++;
+			lock.notifyAll();
+		}
+	}
+	
+	/**
+	 * Remove oldest waiting move direction from queue, keeping other commands in order.
+	 * @return Flag indicates a move was removed, false when queue holds no move.
+	 */
+	private boolean drop_oldest_move()
+	{
+		for (int k = 0; k < queue_count; k++)
+		{
+			if (queue[(queue_head + k) % QUEUE_SIZE] > Game2048.MOVE_RIGHT)
+				continue;
+			
+			Log.i(TAG, "Swipe dropped");
+			
+			// Close the gap: later commands move one place forward.
+			for (; k + 1 < queue_count; k++)
+				queue[(queue_head + k) % QUEUE_SIZE] = queue[(queue_head + k + 1) % QUEUE_SIZE];
+			
+			queue_count--;
+			return true;
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Take next command, waiting for one if needed.
+	 * @param isWaiting Flag indicates to wait while queue is empty.
+	 * @return Command, or 0 when queue is empty (not waiting) or worker is stopped.
+	 */
+	private int take(boolean isWaiting)
+	{
+		synchronized (lock)
+		{
+			try
+			{
+				while (isWaiting && isRunning && queue_count == 0)
+					lock.wait();
+			}
+			catch (InterruptedException e)
+			{
+				return 0;
+			}
+			
+			if (!isRunning || queue_count == 0)
+				return 0;
+			
+			int command = queue[queue_head];
+			queue_head = (queue_head + 1) % QUEUE_SIZE;
+			queue_count--;
+			
+			return command;
+		}
+	}
+	
+	/**
+	 * Play commands until worker is stopped.
+	 */
+	private void run_loop()
+	{
+		int command;
+		
+		while ((command = take(true)) != 0)
+		{
+			synchronized (game_lock)
+			{
+				boolean isChanged = play(command);
+				
+				// Play commands queued meanwhile as same batch, up to a queue's worth so snapshots keep coming.
+				for (int k = 1; k < QUEUE_SIZE && (command = take(false)) != 0; k++)
+					isChanged = play(command) || isChanged;
+				
+				if (isChanged)
+					listener.on_snapshot(new GameSnapshot(game2048, isLost, isWin));
+			}
+		}
+	}
+	
+	/**
+	 * Play one command.
+	 * @param command Move direction, COMMAND_HINT, COMMAND_NEW_GAME, COMMAND_REFRESH, COMMAND_UNDO or COMMAND_REDO.
+	 * @return Flag indicates game changed.
+	 */
+	private boolean play(int command)
+	{
+		if (command == COMMAND_NEW_GAME)
+		{
+			game2048.begin_game();
+			isLost = false;
+			isWin = false;
+			
+			return true;
+		}
+		
+		// Publish game as it is (resumed game), with its end if it is over.
+		if (command == COMMAND_REFRESH)
+		{
+			isLost = game2048.isLost();
+			isWin = !isLost && game2048.isWin();
+			
+			return true;
+		}
+		
+		// Step back or forward in game's history, even out of a game that is over.
+		if (command == COMMAND_UNDO || command == COMMAND_REDO)
+		{
+			if (!(command == COMMAND_UNDO ? game2048.undo() : game2048.redo()))
+				return false;
+			
+			isLost = game2048.isLost();
+			isWin = !isLost && game2048.isWin();
+			
+			return true;
+		}
+		
+		// Game is over, wait for new game.
+		if (isLost || isWin)
+			return false;
+		
+		int direction = command;
+		
+		// AI plays its best move for the user: perfect move when tablebase covers game, else search.
+		if (command == COMMAND_HINT)
+		{
+			direction = tablebase != null && tablebase.covers(game2048) ? tablebase.best_move(game2048) : 0;
+			
+			if (direction == 0)
+				direction = solver.best_move(game2048);
+			
+			if (direction == 0)
+				return false;
+		}
+		
+		// Move tiles towards user's swipe direction (both use same direction values).
+		boolean isChanged = game2048.move(direction);
+		
+		// Check if user breaks best score
+		if (game2048.getScore() > game2048.getBestScore())
+		{
+			Log.i(TAG, "New best score! New score is: " + game2048.getScore());
+			
+			// Raise new best score.
+			game2048.setBestScore(game2048.getScore());
+			
+			// Write new best score to log file, in background and at most every few seconds.
+			fileManager.saveBestScore(game2048.getScore());
+		}
+		
+		// Check if user lost the game
+		if (game2048.isLost())
+		{
+			// Keep the moves that led here in LogCat when debugging.
+			if (GameTrace.ENABLED)
+				GameTrace.dump();
+			
+			isLost = true;
+		}
+		// Didn't lose yet? Then let's check if he wins
+		else if (game2048.isWin())
+		{
+			isWin = true;
+		}
+		// OK then, game still on. Insert a new number to the game grid!
+		else if (isChanged)
+		{
+			game2048.insert_new_number();
+		}
+		
+		return isChanged || isLost || isWin;
+	}
+}
@@ -1,12 +1,18 @@
 package com.ssharaf.game_2048;
 
+import java.io.File;
+import java.io.IOException;
+
 import com.ssharaf.game_2048.SimpleGestureFilter.SimpleGestureListener;
 import android.app.Activity;
 import android.app.AlertDialog;
 import android.content.DialogInterface;
 import android.content.res.Configuration;
 import android.os.Bundle;
+import android.os.Handler;
 import android.util.Log;
+import android.view.Menu;
+import android.view.MenuItem;
 import android.view.MotionEvent;
 
 /**
@@ -16,13 +22,20 @@ import android.view.MotionEvent;
  *
  */
 
-public class Game_2048Activity extends Activity implements SimpleGestureListener
+public class Game_2048Activity extends Activity implements SimpleGestureListener, GameWorker.Listener
 {
 	// Activity Debugging Tag
 	private static final String TAG = "Game 2048 Activity";
 	
+	// Draw game on a SurfaceView with animated moves, instead of a plain View.
+	private static final boolean ANIMATED = true;
+	
+	// Options menu items.
+	private static final int MENU_UNDO = 1;
+	private static final int MENU_REDO = 2;
+	
 	// Game view object
-	private GameView gameView;
+	private GameDisplay gameView;
 	
 	// Gesture detector for swipe direction
 	private SimpleGestureFilter detector;
@@ -33,20 +46,98 @@ public class Game_2048Activity extends Activity implements SimpleGestureListener
 	// User's best score
 	private int best_score;
 	
+	// Game logic thread, playing swipes and hints.
+	private GameWorker worker;
+	
+	// Handler posting game snapshots to UI thread.
+	private Handler handler;
+	
+	// Journal of game's moves, for replaying reported games (null when it can't be opened).
+	private MoveJournal journal;
+    
     @Override
     public void onCreate(Bundle savedInstanceState) 
     {
         super.onCreate(savedInstanceState);
+        
+        // Read best score from log file.
+        fileManager = new FileManager();
+        best_score = Integer.parseInt(fileManager.readFile().get(0));
+        
+        // Resume game saved when activity was paused, or play a new one.
+        Game2048 game2048 = load_game();
+        boolean isResumed = game2048 != null;
+        
+        if (!isResumed)
+        	game2048 = new Game2048();
+        
+        // Record moves in journal, going on with a resumed game's journal.
+        open_journal(game2048);
+        
+        // Keep moves for undo, in a bounded history.
+        game2048.setHistory(new GameHistory(game2048.getTiles()));
+        
+        // Play game on its own thread, starting with best score read from log file.
+        game2048.setBestScore(best_score);
+        handler = new Handler();
+        worker = new GameWorker(game2048, fileManager, this);
+        worker.setTablebase(open_tablebase(game2048));
+        worker.setNetwork(open_network());
+        worker.start();
 
         // Display game interface view by creating an object and set content view.
         setView();
+        worker.submit(isResumed ? GameWorker.COMMAND_REFRESH : GameWorker.COMMAND_NEW_GAME);
         
         // Detect touched area 
         detector = new SimpleGestureFilter(this,this);
         
-        // Read best score from log file.
-        fileManager = new FileManager();
-        best_score = Integer.parseInt(fileManager.readFile().get(0));
+        // Send engine trace output to LogCat.
+        if (GameTrace.ENABLED)
+        {
+        	GameTrace.setSink(new GameTrace.Sink()
+        	{
+        		@Override
+        		public void write(String message)
+        		{
+        			Log.d(TAG, message);
+        		}
+        	});
+        }
+    }
+    
+    @Override
+    protected void onPause()
+    {
+    	// Keep game in progress, and don't lose a best score waiting to be written, if app is killed in background.
+    	worker.save(fileManager.getSaveFile());
+    	fileManager.flush();
+    	
+    	if (journal != null)
+    		worker.flush(journal);
+    	
+    	super.onPause();
+    }
+    
+    @Override
+    protected void onDestroy()
+    {
+    	worker.stop();
+    	fileManager.close();
+    	
+    	if (journal != null)
+    	{
+    		try
+    		{
+    			journal.close();
+    		}
+    		catch (IOException e)
+    		{
+    			Log.e(TAG, "Can't close move journal: " + e.getMessage());
+    		}
+    	}
+    	
+    	super.onDestroy();
     }
     
     @Override
@@ -62,8 +153,121 @@ public class Game_2048Activity extends Activity implements SimpleGestureListener
      */
     public void setView()
     {
-    	gameView = new GameView(getApplicationContext());
-        setContentView(gameView);
+    	if (ANIMATED)
+    		gameView = new GameSurfaceView(getApplicationContext());
+    	else
+    		gameView = new GameView(getApplicationContext());
+    	
+        setContentView(gameView.getView());
+    }
+    
+    /**
+     * Load game saved by last onPause().
+     * @return Saved game, or null when there is none or it can't be read.
+     */
+    private Game2048 load_game()
+    {
+    	File file = fileManager.getSaveFile();
+    	
+    	if (!file.exists())
+    		return null;
+    	
+    	try
+    	{
+    		return new SaveGame().load(file);
+    	}
+    	catch (IOException e)
+    	{
+    		Log.e(TAG, "Can't resume saved game: " + e.getMessage());
+    		return null;
+    	}
+    }
+    
+    /**
+     * Open tablebase for game's grid dimension and target number, when one was copied to application folder.
+     * @param game2048 Game to be hinted.
+     * @return Tablebase, or null when there is none.
+     */
+    private Tablebase open_tablebase(Game2048 game2048)
+    {
+    	File file = fileManager.getTablebaseFile(game2048.getTiles(), game2048.getWinningNumber());
+    	
+    	if (!file.exists())
+    		return null;
+    	
+    	try
+    	{
+    		return Tablebase.open(file);
+    	}
+    	catch (IOException e)
+    	{
+    		Log.e(TAG, "Can't open tablebase: " + e.getMessage());
+    		return null;
+    	}
+    }
+    
+    /**
+     * Map n-tuple network for AI hints, when one was copied to application folder.
+     * @return Network, or null when there is none.
+     */
+    private NTupleNetwork open_network()
+    {
+    	File file = fileManager.getNetworkFile();
+    	
+    	if (!file.exists())
+    		return null;
+    	
+    	try
+    	{
+    		return NTupleNetwork.open(file);
+    	}
+    	catch (IOException e)
+    	{
+    		Log.e(TAG, "Can't open n-tuple network: " + e.getMessage());
+    		return null;
+    	}
+    }
+    
+    /**
+     * Open move journal and attach it to game.
+     * @param game2048 Game to be recorded.
+     */
+    private void open_journal(Game2048 game2048)
+    {
+    	try
+    	{
+    		journal = new MoveJournal(fileManager.getJournalFile());
+    		game2048.setJournal(journal);
+    	}
+    	catch (IOException e)
+    	{
+    		Log.e(TAG, "Can't open move journal: " + e.getMessage());
+    		journal = null;
+    	}
+    }
+    
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu)
+    {
+    	menu.add(Menu.NONE, MENU_UNDO, Menu.NONE, "Undo");
+    	menu.add(Menu.NONE, MENU_REDO, Menu.NONE, "Redo");
+    	return true;
+    }
+    
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item)
+    {
+    	switch (item.getItemId())
+    	{
+    		case MENU_UNDO :
+    			worker.submit(GameWorker.COMMAND_UNDO);
+    			return true;
+    		case MENU_REDO :
+    			worker.submit(GameWorker.COMMAND_REDO);
+    			return true;
+    		default :
+    			return super.onOptionsItemSelected(item);
+    	}
     }
     
     @Override
@@ -75,122 +279,50 @@ public class Game_2048Activity extends Activity implements SimpleGestureListener
     }
     
     /**
-     * Called when swipe on screen is detected.
+     * Called when swipe on screen is detected. Swipe is only queued, game worker plays it.
      */
     @Override
 	public void onSwipe(int direction) 
     {
-    	// Get Game2048 object from GameView to process user's commands.
-    	Game2048 game2048 = gameView.getGame2048();
-    	
-    	// Flat indicates change in game grid.
-    	boolean isChanged = false;
-	 
-    	// Check user's swipe direction to modify game grid.
-    	switch (direction)
-    	{
-    		// When user swipes right on screen
-    		case SimpleGestureFilter.SWIPE_RIGHT :
-    			Log.i(TAG, "User swipes right.");
-    			
-    			// For each row in game grid:
-    			for (int i = 0; i < game2048.getTiles(); i++)
-				{
-    				// Sum each identical tiles from left to right
-    				isChanged = game2048.combine_tiles(game2048.getGameGridRow(i)) || isChanged; 
-				}
-    			
-    			break;
-    		// When user swipes left on screen
-    		case SimpleGestureFilter.SWIPE_LEFT :  
-    			Log.i(TAG, "User swipes left.");
-    			
-    			// For each row in game grid:
-    			for (int i = 0; i < game2048.getTiles(); i++)
-				{
-    				int[] temp = new int[game2048.getTiles()];
-    				Game2048.copyArray(game2048.getGameGridRow(i), temp, true);
-    				
-    				// Sum each identical tiles from right to left
-    				isChanged = game2048.combine_tiles(temp) || isChanged;
-    				
-					// After all the processing, time to move column to its place on game grid
-    				Game2048.copyArray(temp, game2048.getGameGridRow(i), true);
-				}
-    			
-    			break;
-    		// When user swipes up on screen
-    		case SimpleGestureFilter.SWIPE_DOWN :  
-    			Log.i(TAG, "User swipes down.");
-    			
-    			// For each column in game grid:
-    			for(int j = 0; j < game2048.getTiles(); j++)
-				{
-    				// First, let's move the column to individual array to process combination and concatenation
-    				// (Much easier this way!)
-					int[] temp = new int[game2048.getTiles()];
-					game2048.copyFromColumn(temp, j, false);
-					
-					// Here, we treat up swipe as right swipe, so it passes the same path of merging and concatenation. 
-					isChanged = game2048.combine_tiles(temp) || isChanged;
-					
-					// After all the processing, time to move column to its place on game grid
-					game2048.copyToColumn(temp, j, false);
-				}
-    			break;
-    		// Finally, when user swipes down on screen
-    		case SimpleGestureFilter.SWIPE_UP :
-    			Log.i(TAG, "User swipes up.");
-    			
-    			for(int j = 0; j < game2048.getTiles(); j++)
-				{
-    				// Same as down swipe, we move the column to individual array, but in reverse way
-					int[] temp = new int[game2048.getTiles()];
-					game2048.copyFromColumn(temp, j, true);
-					
-					// Then calling for combination.
-					isChanged = game2048.combine_tiles(temp) || isChanged;
-					
-					// Finally move it back to game grid
-					game2048.copyToColumn(temp, j, true);
-				}
-    			break;
-    	}
-    	
-    	// Check if user breaks best score
-    	if (game2048.getScore() > game2048.getBestScore())
+    	// Move tiles towards user's swipe direction (both use same direction values).
+    	worker.submit(direction);
+    }
+    
+    /**
+     * Called on game worker thread with game state after each batch of moves.
+     */
+    @Override
+    public void on_snapshot(final GameSnapshot snapshot)
+    {
+    	handler.post(new Runnable()
     	{
-    		Log.i(TAG, "New best score! New score is: " + game2048.getScore());
-    		
-    		// Raise new best score.
-    		game2048.setBestScore(game2048.getScore());
-    		
-    		// Write new best score to log file.
-    		fileManager.writeFile(String.valueOf(game2048.getScore()), false);
-    	}
-    	
-    	// Refresh game screen by re-drawing the changes made.
-    	gameView.call_invalidate();
+    		@Override
+    		public void run()
+    		{
+    			show_snapshot(snapshot);
+    		}
+    	});
+    }
+    
+    /**
+     * Show a game state on UI thread, with a dialog when game is over.
+     * @param snapshot Game state to be shown.
+     */
+    private void show_snapshot(GameSnapshot snapshot)
+    {
+    	// Refresh game screen by re-drawing the changes made (moves and new numbers at once).
+    	gameView.show(snapshot);
     	
     	// Check if user lost the game
-    	if (game2048.isLost())
+    	if (snapshot.isLost())
     	{
     		showDialog(this, "Dead End..", "Sorry.. You lost. Try again?", "Another round!", "Nah.. I'm done");
     	}	
     	// Didn't lose yet? Then let's check if he wins
-    	else if (game2048.isWin())
+    	else if (snapshot.isWin())
     	{
     		showDialog(this, "Bravo!", "Congrats.. You win!", "Another round!", "Nah.. I'm done");
     	}
-    	// OK then, game still on. Insert a new number to the game grid!
-    	else if (isChanged)
-    	{
-    		Log.i(TAG, "Change detected.");
-    		game2048.insert_new_number();
-    	}
-    	
-    	gameView.call_invalidate();
-    	game2048.print_grid();
     }
     
     /**
@@ -217,6 +349,7 @@ public class Game_2048Activity extends Activity implements SimpleGestureListener
             {
             	// Begin new game by setting new content view
             	setView();
+            	worker.submit(GameWorker.COMMAND_NEW_GAME);
             }
         });
         
@@ -233,9 +366,12 @@ public class Game_2048Activity extends Activity implements SimpleGestureListener
         builder.show();
     }
     	
+	/**
+	 * Called when double tap on screen is detected: AI plays its best move for the user.
+	 */
 	@Override
  	public void onDoubleTap() 
 	{
-		
+		worker.submit(GameWorker.COMMAND_HINT);
  	}
 }
\ No newline at end of file
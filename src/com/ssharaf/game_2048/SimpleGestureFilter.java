@@ -8,10 +8,10 @@ import android.view.MotionEvent;
 
 public class SimpleGestureFilter extends SimpleOnGestureListener
 {	 
-	public final static int SWIPE_UP    = 1;
-	public final static int SWIPE_DOWN  = 2;
-	public final static int SWIPE_LEFT  = 3;
-	public final static int SWIPE_RIGHT = 4;
+	public final static int SWIPE_UP    = Game2048.MOVE_UP;
+	public final static int SWIPE_DOWN  = Game2048.MOVE_DOWN;
+	public final static int SWIPE_LEFT  = Game2048.MOVE_LEFT;
+	public final static int SWIPE_RIGHT = Game2048.MOVE_RIGHT;
 	 
 	public final static int MODE_TRANSPARENT = 0;
 	public final static int MODE_SOLID       = 1;